@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.service.ApproximatePopularity;
+import ru.yandex.practicum.filmorate.service.CoLikeIndex;
+import ru.yandex.practicum.filmorate.service.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.service.FriendshipGraph;
+import ru.yandex.practicum.filmorate.service.PopularityIndex;
+import ru.yandex.practicum.filmorate.service.TrendingIndex;
+
+import java.util.UUID;
+
+final class BenchmarkContexts {
+
+    private BenchmarkContexts() {
+    }
+
+    /**
+     * Starts the application on a fresh in-memory database seeded with the dataset.
+     */
+    static ConfigurableApplicationContext start(WebApplicationType type, BenchmarkDataset dataset) {
+        var context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(type)
+                .properties("spring.datasource.url=jdbc:h2:mem:benchmark-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                        "server.port=0",
+                        "logging.level.root=warn",
+                        "logging.level.ru.yandex.practicum.filmorate.controllers.*=warn")
+                .run();
+        dataset.seed(context.getBean(JdbcTemplate.class));
+        // the indexes have been loaded from the empty database on startup
+        context.getBean(PopularityIndex.class).reload();
+        context.getBean(ApproximatePopularity.class).reload();
+        context.getBean(CoLikeIndex.class).reload();
+        context.getBean(FilmSearchIndex.class).reload();
+        context.getBean(TrendingIndex.class).reload();
+        context.getBean(FriendshipGraph.class).reload();
+        return context;
+    }
+}
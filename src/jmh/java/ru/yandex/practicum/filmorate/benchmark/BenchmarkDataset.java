@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+
+/**
+ * A synthetic catalog of the given size. Film {@code x} has {@code x * 7 % (2 * likesPerFilm)} likes, so films
+ * differ in popularity, and every user is friends with the {@code friendsPerUser} users that follow them by id,
+ * so users next to each other have many friends in common. The same dataset can be seeded into the database
+ * and into the in-memory storages.
+ */
+class BenchmarkDataset {
+
+    private final int users;
+    private final int films;
+    private final int likesPerFilm;
+    private final int friendsPerUser;
+
+    BenchmarkDataset(int users, int films, int likesPerFilm, int friendsPerUser) {
+        if (2 * likesPerFilm > users || friendsPerUser >= users) {
+            throw new IllegalArgumentException("there are not enough users for " + likesPerFilm +
+                    " likes per film and " + friendsPerUser + " friends per user");
+        }
+        this.users = users;
+        this.films = films;
+        this.likesPerFilm = likesPerFilm;
+        this.friendsPerUser = friendsPerUser;
+    }
+
+    int getUsers() {
+        return users;
+    }
+
+    int getFilms() {
+        return films;
+    }
+
+    /**
+     * Seeds an empty database, the users and the films get ids from 1 up in the order they are inserted.
+     */
+    void seed(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("insert into users (name, email, birthday, login) " +
+                "select 'user' || x, 'user' || x || '@mail.com', date '1990-01-01', 'login' || x " +
+                "from system_range(1, ?)", users);
+        jdbcTemplate.update("insert into films (name, description, release_date, duration, mpa_id, like_count) " +
+                "select 'film' || x, 'a generated film number ' || x, date '2000-01-01', 90, mod(x, 5) + 1, " +
+                "mod(x * 7, ?) from system_range(1, ?)", 2 * likesPerFilm, films);
+        jdbcTemplate.update("insert into likes (film_id, user_id) " +
+                "select f.x, mod(f.x * 31 + l.x, ?) + 1 from system_range(1, ?) f " +
+                "join system_range(0, ?) l on l.x < mod(f.x * 7, ?)", users, films, 2 * likesPerFilm, 2 * likesPerFilm);
+        jdbcTemplate.update("insert into friendship_requests (from_id, to_id) " +
+                "select u.x, mod(u.x - 1 + f.x, ?) + 1 from system_range(1, ?) u " +
+                "join system_range(1, ?) f on true", users, users, friendsPerUser);
+    }
+
+    /**
+     * Seeds empty storages, the film storage must check users against the user storage.
+     */
+    void seed(UserStorage userStorage, FilmStorage filmStorage) {
+        for (int x = 1; x <= users; x++) {
+            userStorage.addUser(User.builder()
+                    .name("user" + x)
+                    .email("user" + x + "@mail.com")
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .login("login" + x)
+                    .build());
+        }
+        for (int x = 1; x <= films; x++) {
+            filmStorage.addFilm(Film.builder()
+                    .name("film" + x)
+                    .description("a generated film number " + x)
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .duration(90)
+                    .mpa(new Mpa(x % 5 + 1, null))
+                    .build());
+            for (int l = 0; l < x * 7 % (2 * likesPerFilm); l++) {
+                filmStorage.addLike(x, (x * 31 + l) % users + 1);
+            }
+        }
+        for (int x = 1; x <= users; x++) {
+            for (int f = 1; f <= friendsPerUser; f++) {
+                userStorage.addFriend(x, (x - 1 + f) % users + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Whole requests through MockMvc: routing, the controller, the services, the storages and JSON serialization.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerBenchmark {
+
+    @Param("10000")
+    private int users;
+
+    @Param("10000")
+    private int films;
+
+    @Param("20")
+    private int likesPerFilm;
+
+    @Param("50")
+    private int friendsPerUser;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+
+    @Setup
+    public void seed() {
+        context = BenchmarkContexts.start(WebApplicationType.SERVLET,
+                new BenchmarkDataset(users, films, likesPerFilm, friendsPerUser));
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+    }
+
+    @TearDown
+    public void close() {
+        context.close();
+    }
+
+    @Benchmark
+    public MvcResult getFilm() throws Exception {
+        return mockMvc.perform(get("/films/{id}", ThreadLocalRandom.current().nextInt(1, films + 1))).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult getMostPopular() throws Exception {
+        return mockMvc.perform(get("/films/popular").param("count", "10")).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult getCommonFriends() throws Exception {
+        var random = ThreadLocalRandom.current();
+        var userId = random.nextInt(1, users + 1);
+        var otherId = userId % users + 1;
+        return mockMvc.perform(get("/users/{id}/friends/common/{otherId}", userId, otherId)).andReturn();
+    }
+}
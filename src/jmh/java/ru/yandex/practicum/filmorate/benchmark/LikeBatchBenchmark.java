@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding likes to the database one by one and in a single batch. Every invocation adds a like to each of
+ * the first {@value #LIKES} films by the same user, the likes are deleted again after it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LikeBatchBenchmark {
+    private static final int LIKES = 1000;
+
+    private ConfigurableApplicationContext context;
+    private FilmStorage filmDbStorage;
+    private List<Like> likes;
+
+    @Setup
+    public void seed() {
+        var dataset = new BenchmarkDataset(LIKES, LIKES, 1, 1);
+        context = BenchmarkContexts.start(WebApplicationType.NONE, dataset);
+        filmDbStorage = context.getBean("filmDbStorage", FilmStorage.class);
+        var jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("delete from likes");
+        jdbcTemplate.update("update films set like_count = 0");
+        likes = new ArrayList<>(LIKES);
+        for (int filmId = 1; filmId <= LIKES; filmId++) {
+            likes.add(new Like(filmId, 1));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteLikes() {
+        filmDbStorage.deleteLikes(likes);
+    }
+
+    @TearDown
+    public void close() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LIKES)
+    public void addLikesOneByOne() {
+        likes.forEach(like -> filmDbStorage.addLike(like.getFilmId(), like.getUserId()));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LIKES)
+    public List<LikeResult> addLikesInBatch() {
+        return filmDbStorage.addLikes(likes);
+    }
+}
@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding the mutual friends of two users with the given number of friends each, picked from four times as many
+ * users, so that about a quarter of them are mutual: intersecting the friend sets as the service does and,
+ * for comparison, comparing every friend of one user against every friend of the other one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MutualFriendsBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int friends;
+
+    private UserService userService;
+    private User user;
+    private User user2;
+
+    @Setup
+    public void seed() {
+        userService = new UserService(null, null);
+        var random = new Random(42);
+        user = User.builder().friends(randomFriends(random)).build();
+        user2 = User.builder().friends(randomFriends(random)).build();
+    }
+
+    @Benchmark
+    public Collection<Integer> intersection() {
+        return userService.getMutualFriends(user, user2);
+    }
+
+    @Benchmark
+    public Collection<Integer> nestedLoop() {
+        Collection<Integer> mutualFriends = new HashSet<>();
+        for (int u : user.getFriends()) {
+            for (int u2 : user2.getFriends()) {
+                if (u == u2) {
+                    mutualFriends.add(u);
+                }
+            }
+        }
+        return mutualFriends;
+    }
+
+    private Set<Integer> randomFriends(Random random) {
+        var friendIds = new IntSet();
+        while (friendIds.size() < friends) {
+            friendIds.addInt(1 + random.nextInt(4 * friends));
+        }
+        return friendIds;
+    }
+}
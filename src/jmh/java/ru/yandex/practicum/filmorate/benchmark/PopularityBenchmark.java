@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.service.ApproximatePopularity;
+import ru.yandex.practicum.filmorate.service.PopularityIndex;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counting likes from many threads at once, with the exact popularity index and with the approximate one,
+ * and reading the top films meanwhile. Only counting is measured, the likes aren't stored.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class PopularityBenchmark {
+
+    @Param("10000")
+    private int users;
+
+    @Param("10000")
+    private int films;
+
+    @Param("20")
+    private int likesPerFilm;
+
+    @Param("50")
+    private int friendsPerUser;
+
+    private ConfigurableApplicationContext context;
+    private PopularityIndex popularityIndex;
+    private ApproximatePopularity approximatePopularity;
+
+    @Setup
+    public void seed() {
+        context = BenchmarkContexts.start(WebApplicationType.NONE,
+                new BenchmarkDataset(users, films, likesPerFilm, friendsPerUser));
+        popularityIndex = context.getBean(PopularityIndex.class);
+        approximatePopularity = context.getBean(ApproximatePopularity.class);
+    }
+
+    @TearDown
+    public void close() {
+        context.close();
+    }
+
+    @Benchmark
+    public void addLikeIndex() {
+        popularityIndex.addLike(randomFilm());
+    }
+
+    @Benchmark
+    public void addLikeApproximate() {
+        approximatePopularity.addLike(randomFilm());
+    }
+
+    @Benchmark
+    public List<Integer> getTopIndex() {
+        return popularityIndex.getTop(10);
+    }
+
+    @Benchmark
+    public List<Integer> getTopApproximate() {
+        return approximatePopularity.getTop(10);
+    }
+
+    /**
+     * A film picked with a skew towards low ids, as likes go to popular films more often.
+     */
+    private int randomFilm() {
+        var random = ThreadLocalRandom.current();
+        return 1 + Math.min(random.nextInt(films), random.nextInt(films));
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Listing all users whole and only with the fields a list of names needs, for users with few and with many
+ * friends: the friends are neither queried nor serialized in the second case.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    @Param("2000")
+    private int users;
+
+    @Param("100")
+    private int films;
+
+    @Param("5")
+    private int likesPerFilm;
+
+    @Param({"10", "1000"})
+    private int friendsPerUser;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+
+    @Setup
+    public void seed() {
+        context = BenchmarkContexts.start(WebApplicationType.SERVLET,
+                new BenchmarkDataset(users, films, likesPerFilm, friendsPerUser));
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+    }
+
+    @TearDown
+    public void close() {
+        context.close();
+    }
+
+    @Benchmark
+    public MvcResult getAllUsers() throws Exception {
+        return mockMvc.perform(get("/users")).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult getAllUsersNames() throws Exception {
+        return mockMvc.perform(get("/users").param("fields", "id,name")).andReturn();
+    }
+}
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.metrics.QueryMetrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost query metrics add to a logical query of two statements, to be compared with the time of the query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryMetricsBenchmark {
+
+    private QueryMetrics queryMetrics;
+
+    @Setup
+    public void createMetrics() {
+        queryMetrics = new QueryMetrics(new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public void recordQuery() {
+        var enclosing = queryMetrics.startQuery();
+        var start = System.nanoTime();
+        queryMetrics.statementIssued();
+        queryMetrics.statementIssued();
+        queryMetrics.endQuery("FilmDbStorage.getById", start, true, enclosing);
+    }
+}
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.service.FilmSearchIndex;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding films by the beginning of a word of the name and a word of the description, with the search index
+ * and with a LIKE query scanning the films table, both ranked and limited to the same count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int COUNT = 10;
+    private static final String LIKE_QUERY = "select id from films " +
+            "where (lower(name) like ? or lower(description) like ?) and lower(description) like ? " +
+            "order by like_count desc, id limit ?";
+
+    @Param("10000")
+    private int users;
+
+    @Param({"10000", "100000"})
+    private int films;
+
+    @Param("20")
+    private int likesPerFilm;
+
+    @Param("50")
+    private int friendsPerUser;
+
+    private ConfigurableApplicationContext context;
+    private FilmSearchIndex searchIndex;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup
+    public void seed() {
+        context = BenchmarkContexts.start(WebApplicationType.NONE,
+                new BenchmarkDataset(users, films, likesPerFilm, friendsPerUser));
+        searchIndex = context.getBean(FilmSearchIndex.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+
+    @TearDown
+    public void close() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Integer> searchIndex() {
+        return searchIndex.search(randomPrefix() + " generated", COUNT);
+    }
+
+    @Benchmark
+    public List<Integer> searchLike() {
+        var prefix = randomPrefix();
+        return jdbcTemplate.queryForList(LIKE_QUERY, Integer.class,
+                prefix + "%", "% " + prefix + "%", "%generated%", COUNT);
+    }
+
+    /**
+     * The beginning of a film name matching a few dozen films.
+     */
+    private String randomPrefix() {
+        return "film" + ThreadLocalRandom.current().nextInt(1, Math.max(2, films / 100));
+    }
+}
@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.ApproximatePopularity;
+import ru.yandex.practicum.filmorate.service.CoLikeIndex;
+import ru.yandex.practicum.filmorate.service.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.PopularityIndex;
+import ru.yandex.practicum.filmorate.service.PopularitySource;
+import ru.yandex.practicum.filmorate.service.TrendingIndex;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+    private static final int USER_PAIRS = 1024;
+
+    @Param("10000")
+    private int users;
+
+    @Param("10000")
+    private int films;
+
+    @Param("20")
+    private int likesPerFilm;
+
+    @Param("50")
+    private int friendsPerUser;
+
+    @Param({"INDEX", "DATABASE", "APPROXIMATE"})
+    private PopularitySource popularitySource;
+
+    private ConfigurableApplicationContext context;
+    private FilmService filmService;
+    private UserService userService;
+    // users are loaded up front, so that only finding the mutual friends is measured
+    private User[][] userPairs;
+
+    @Setup
+    public void seed() {
+        context = BenchmarkContexts.start(WebApplicationType.NONE,
+                new BenchmarkDataset(users, films, likesPerFilm, friendsPerUser));
+        filmService = new FilmService(context.getBean("filmStorage", FilmStorage.class),
+                context.getBean(PopularityIndex.class), popularitySource, context.getBean(ApproximatePopularity.class),
+                context.getBean(CoLikeIndex.class), context.getBean(FilmSearchIndex.class),
+                context.getBean(TrendingIndex.class));
+        userService = context.getBean(UserService.class);
+        var userStorage = context.getBean("userStorage", UserStorage.class);
+        var random = ThreadLocalRandom.current();
+        userPairs = new User[USER_PAIRS][];
+        for (int i = 0; i < USER_PAIRS; i++) {
+            var userId = random.nextInt(1, users + 1);
+            var otherId = (userId - 1 + random.nextInt(1, friendsPerUser + 1)) % users + 1;
+            userPairs[i] = new User[]{userStorage.getById(userId), userStorage.getById(otherId)};
+        }
+    }
+
+    @TearDown
+    public void close() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Film> getMostPopular() {
+        return filmService.getMostPopular(10).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Film> getSimilar() {
+        return filmService.getSimilar(ThreadLocalRandom.current().nextInt(1, films + 1), 10);
+    }
+
+    @Benchmark
+    public Collection<Integer> getMutualFriends() {
+        var pair = userPairs[ThreadLocalRandom.current().nextInt(USER_PAIRS)];
+        return userService.getMutualFriends(pair[0], pair[1]);
+    }
+
+    @Benchmark
+    public List<User> getSuggestions() {
+        return userService.getSuggestions(ThreadLocalRandom.current().nextInt(1, users + 1), 10);
+    }
+}
@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of the database storages, mapping of rows included, next to the same reads of the in-memory storages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+
+    @Param("10000")
+    private int users;
+
+    @Param("10000")
+    private int films;
+
+    @Param("20")
+    private int likesPerFilm;
+
+    @Param("50")
+    private int friendsPerUser;
+
+    private ConfigurableApplicationContext context;
+    private FilmStorage filmDbStorage;
+    private UserStorage userDbStorage;
+    private FilmStorage inMemoryFilmStorage;
+    private UserStorage inMemoryUserStorage;
+
+    @Setup
+    public void seed() {
+        var dataset = new BenchmarkDataset(users, films, likesPerFilm, friendsPerUser);
+        context = BenchmarkContexts.start(WebApplicationType.NONE, dataset);
+        filmDbStorage = context.getBean("filmDbStorage", FilmStorage.class);
+        userDbStorage = context.getBean("userDbStorage", UserStorage.class);
+        inMemoryFilmStorage = context.getBean(InMemoryFilmStorage.class);
+        inMemoryUserStorage = context.getBean(InMemoryUserStorage.class);
+        dataset.seed(inMemoryUserStorage, inMemoryFilmStorage);
+    }
+
+    @TearDown
+    public void close() {
+        context.close();
+    }
+
+    @Benchmark
+    public Film filmDbGetById() {
+        return filmDbStorage.getById(randomFilm());
+    }
+
+    @Benchmark
+    public List<Film> filmDbGetFilmsPage() {
+        return filmDbStorage.getFilmsPage(randomFilm(), 100);
+    }
+
+    @Benchmark
+    public List<Film> filmDbGetMostPopular() {
+        return filmDbStorage.getMostPopular(10);
+    }
+
+    @Benchmark
+    public User userDbGetById() {
+        return userDbStorage.getById(randomUser());
+    }
+
+    @Benchmark
+    public List<User> userDbGetUsersPage() {
+        return userDbStorage.getUsersPage(randomUser(), 100);
+    }
+
+    @Benchmark
+    public Film inMemoryGetFilmById() {
+        return inMemoryFilmStorage.getById(randomFilm());
+    }
+
+    @Benchmark
+    public List<Film> inMemoryGetMostPopular() {
+        return inMemoryFilmStorage.getMostPopular(10);
+    }
+
+    @Benchmark
+    public User inMemoryGetUserById() {
+        return inMemoryUserStorage.getById(randomUser());
+    }
+
+    private int randomFilm() {
+        return ThreadLocalRandom.current().nextInt(1, films + 1);
+    }
+
+    private int randomUser() {
+        return ThreadLocalRandom.current().nextInt(1, users + 1);
+    }
+}
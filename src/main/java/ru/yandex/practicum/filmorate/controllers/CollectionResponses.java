@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Responses for endpoints that return many entities: keyset pages and NDJSON streams, plain or gzipped.
+ */
+final class CollectionResponses {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int DEFAULT_PAGE_LIMIT = 100;
+    static final int MAX_PAGE_LIMIT = 1000;
+    static final MediaType APPLICATION_GZIP = MediaType.valueOf("application/gzip");
+
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
+
+    private CollectionResponses() {
+    }
+
+    static int pageLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_LIMIT;
+        }
+        if (limit < 1 || limit > MAX_PAGE_LIMIT) {
+            throw new ValidationException("The page limit should be between 1 and " + MAX_PAGE_LIMIT);
+        }
+        return limit;
+    }
+
+    /**
+     * Returns the page and, if it is full, the id to pass as {@code after} to get the next one.
+     */
+    static <T> ResponseEntity<Collection<T>> page(List<T> page, int limit, ToIntFunction<T> id) {
+        var response = ResponseEntity.ok();
+        if (page.size() == limit) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(id.applyAsInt(page.get(page.size() - 1))));
+        }
+        return response.body(page);
+    }
+
+    /**
+     * Writes every item the source produces as a separate JSON line while the source is still running.
+     */
+    static <T> ResponseEntity<StreamingResponseBody> ndjson(ObjectMapper objectMapper, Consumer<Consumer<T>> source) {
+        StreamingResponseBody body = outputStream -> {
+            writeLines(objectMapper, source, outputStream);
+            outputStream.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * Same as {@link #ndjson}, compressed with gzip and sent as a file to download.
+     */
+    static <T> ResponseEntity<StreamingResponseBody> gzippedNdjson(ObjectMapper objectMapper,
+                                                                  Consumer<Consumer<T>> source, String filename) {
+        StreamingResponseBody body = outputStream -> {
+            var gzip = new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE);
+            writeLines(objectMapper, source, gzip);
+            gzip.finish();
+            outputStream.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_GZIP)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(filename)
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
+    private static <T> void writeLines(ObjectMapper objectMapper, Consumer<Consumer<T>> source,
+                                       OutputStream outputStream) {
+        source.accept(item -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(item));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
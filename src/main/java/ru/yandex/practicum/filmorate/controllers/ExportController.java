@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.controllers;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.ExportRecord;
+import ru.yandex.practicum.filmorate.storage.ExportDbStorage;
+
+@Slf4j
+@RestController
+@RequestMapping("/export")
+public class ExportController {
+
+    static final String FILENAME = "filmorate.ndjson.gz";
+
+    private final ExportDbStorage exportStorage;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public ExportController(ExportDbStorage exportStorage, ObjectMapper objectMapper) {
+        this.exportStorage = exportStorage;
+        // films and users are exported without their likes and friends, so those are left out instead of null
+        this.objectMapper = objectMapper.copy().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    }
+
+    /**
+     * Streams the whole database as gzipped NDJSON: users, then films, likes and friendships, a record per line.
+     */
+    @GetMapping
+    private ResponseEntity<StreamingResponseBody> export() {
+        log.debug("exporting the database");
+        return CollectionResponses.<ExportRecord>gzippedNdjson(objectMapper, exportStorage::export, FILENAME);
+    }
+}
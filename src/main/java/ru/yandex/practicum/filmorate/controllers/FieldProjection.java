@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The properties a client has asked for with {@code fields=}, a comma separated list of JSON property names.
+ * Endpoints ask the storages to skip relations, such as likes and friends, that aren't asked for, so they are
+ * never queried; the other properties are read anyway and only left out of the response.
+ * Without {@code fields} entities are returned whole.
+ */
+final class FieldProjection {
+
+    static final String PARAMETER = "fields";
+
+    private final ObjectMapper objectMapper;
+    // null when every property is asked for
+    private final Set<String> fields;
+
+    private FieldProjection(ObjectMapper objectMapper, Set<String> fields) {
+        this.objectMapper = objectMapper;
+        this.fields = fields;
+    }
+
+    /**
+     * Parses the parameter, every property must be one the type is serialized with.
+     */
+    static FieldProjection of(ObjectMapper objectMapper, String fields, Class<?> type) {
+        if (fields == null) {
+            return new FieldProjection(objectMapper, null);
+        }
+        var known = objectMapper.getSerializationConfig()
+                .introspect(objectMapper.constructType(type))
+                .findProperties()
+                .stream()
+                .map(BeanPropertyDefinition::getName)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        var asked = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (asked.isEmpty()) {
+            throw new ValidationException("The fields should name at least one of " + known);
+        }
+        for (var field : asked) {
+            if (!known.contains(field)) {
+                throw new ValidationException("Unknown field " + field + ", the fields are " + known);
+            }
+        }
+        return new FieldProjection(objectMapper, asked);
+    }
+
+    boolean includes(String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    Object apply(Object entity) {
+        if (fields == null) {
+            return entity;
+        }
+        ObjectNode node = objectMapper.valueToTree(entity);
+        return node.retain(fields);
+    }
+
+    Collection<?> apply(Collection<?> entities) {
+        if (fields == null) {
+            return entities;
+        }
+        return entities.stream()
+                .map(this::apply)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Projects the entities of the response, keeping its status and headers.
+     */
+    ResponseEntity<Collection<?>> apply(ResponseEntity<? extends Collection<?>> response) {
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .body(apply(response.getBody()));
+    }
+}
@@ -1,18 +1,32 @@
 package ru.yandex.practicum.filmorate.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeResult;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ImportService;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
 import java.util.Collection;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.stream.Collectors;
 
@@ -21,30 +35,82 @@ import java.util.stream.Collectors;
 @RequestMapping("/films")
 public class FilmController {
 
+    private static final int MAX_LIKES_BATCH = 1000;
+
     private final FilmStorage filmStorage;
     private final FilmService service;
+    private final ImportService importService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public FilmController(@Qualifier("FilmDbStorage") FilmStorage filmStorage, FilmService service) {
+    public FilmController(@Qualifier("FilmStorage") FilmStorage filmStorage, FilmService service,
+                          ImportService importService, ObjectMapper objectMapper) {
         this.filmStorage = filmStorage;
         this.service = service;
+        this.importService = importService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    private Collection<Film> getAllFilms() {
-        return filmStorage.getAllFilms();
+    private ResponseEntity<Collection<?>> getAllFilms(@RequestParam(name = "after", required = false) Integer after,
+                                                      @RequestParam(name = "limit", required = false) Integer limit,
+                                                      @RequestParam(name = FieldProjection.PARAMETER, required = false)
+                                                              String fields) {
+        var projection = FieldProjection.of(objectMapper, fields, Film.class);
+        var withLikes = projection.includes("likes");
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(projection.apply(filmStorage.getAllFilms(withLikes)));
+        }
+        var pageLimit = CollectionResponses.pageLimit(limit);
+        var page = filmStorage.getFilmsPage(after == null ? 0 : after, pageLimit, withLikes);
+        return projection.apply(CollectionResponses.page(page, pageLimit, Film::getId));
+    }
+
+    @GetMapping("stream")
+    private ResponseEntity<StreamingResponseBody> streamAllFilms() {
+        return CollectionResponses.ndjson(objectMapper, filmStorage::forEachFilm);
     }
 
     @PostMapping
     private Film addFilm(@Valid @RequestBody Film film) {
-        var filmId = filmStorage.addFilm(film);
+        var filmId = service.addFilm(film);
         return filmStorage.getById(filmId);
     }
 
+    @PostMapping(value = "import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    private ImportResult importFilms(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                     InputStream body) throws IOException {
+        return importService.importFilms(body, contentType);
+    }
+
+    @GetMapping("trending")
+    private Collection<Film> getTrending(@RequestParam(name = "window", defaultValue = "PT24H") Duration window,
+                                         @RequestParam(name = "count", defaultValue = "10") int count) {
+        return service.getTrending(window, count);
+    }
+
+    @GetMapping("search")
+    private Collection<Film> search(@RequestParam("q") String query,
+                                    @RequestParam(name = "count", defaultValue = "10") int count) {
+        return service.search(query, count);
+    }
+
     @GetMapping("/{id}")
-    private Film getFilm(@PathVariable("id") Integer id) {
+    private Object getFilm(@PathVariable("id") Integer id,
+                           @RequestParam(name = FieldProjection.PARAMETER, required = false) String fields) {
+        var projection = FieldProjection.of(objectMapper, fields, Film.class);
         try {
-            return filmStorage.getById(id);
+            return projection.apply(filmStorage.getById(id, projection.includes("likes")));
+        } catch (NoSuchElementException | EmptyResultDataAccessException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @GetMapping("/{id}/similar")
+    private Collection<Film> getSimilar(@PathVariable("id") Integer id,
+                                        @RequestParam(name = "count", defaultValue = "10") int count) {
+        try {
+            return service.getSimilar(id, count);
         } catch (NoSuchElementException | EmptyResultDataAccessException e) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND);
         }
@@ -53,7 +119,7 @@ public class FilmController {
     @PutMapping
     private Film updateFilm(@Valid @RequestBody Film film) {
         try {
-            filmStorage.updateFilm(film);
+            service.updateFilm(film);
             return filmStorage.getById(film.getId());
         } catch (NoSuchElementException | EmptyResultDataAccessException e) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND);
@@ -65,6 +131,14 @@ public class FilmController {
         service.addLike(filmId, userId);
     }
 
+    @PutMapping("likes")
+    private List<LikeResult> addLikes(@RequestBody List<Like> likes) {
+        if (likes.size() > MAX_LIKES_BATCH) {
+            throw new ValidationException("No more than " + MAX_LIKES_BATCH + " likes can be added at once");
+        }
+        return service.addLikes(likes);
+    }
+
     @DeleteMapping("{id}/like/{userId}")
     private void deleteLike(@PathVariable("id") Integer filmId, @PathVariable("userId") Integer userId) {
         try {
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.controllers;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+
+import java.util.Collection;
+import java.util.NoSuchElementException;
+
+@Slf4j
+@RestController
+@RequestMapping("/mpa")
+public class MpaController {
+
+    private final MpaStorage mpaStorage;
+
+    @Autowired
+    public MpaController(@Qualifier("MpaDbStorage") MpaStorage mpaStorage) {
+        this.mpaStorage = mpaStorage;
+    }
+
+    @GetMapping
+    private Collection<Mpa> getAllMpa() {
+        return mpaStorage.getAll();
+    }
+
+    @GetMapping("/{id}")
+    private Mpa getMpa(@PathVariable("id") Integer id) {
+        try {
+            return mpaStorage.getById(id);
+        } catch (NoSuchElementException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @PostMapping("reload")
+    private Collection<Mpa> reload() {
+        mpaStorage.reload();
+        log.debug("mpa rates have been reloaded");
+        return mpaStorage.getAll();
+    }
+}
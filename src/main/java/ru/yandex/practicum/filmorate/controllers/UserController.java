@@ -1,21 +1,31 @@
 package ru.yandex.practicum.filmorate.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.ImportResult;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.ImportService;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
+import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -26,10 +36,15 @@ public class UserController {
 
     private final UserStorage userStorage;
     private final UserService service;
+    private final ImportService importService;
+    private final ObjectMapper objectMapper;
 
-    public UserController(UserStorage userDbStorage, UserService service) {
-        this.userStorage = userDbStorage;
+    public UserController(@Qualifier("UserStorage") UserStorage userStorage, UserService service,
+                          ImportService importService, ObjectMapper objectMapper) {
+        this.userStorage = userStorage;
         this.service = service;
+        this.importService = importService;
+        this.objectMapper = objectMapper;
     }
 
 
@@ -40,14 +55,31 @@ public class UserController {
 
 
     @GetMapping
-    private Collection<User> getAllUsers() {
-        return userStorage.getAllUsers();
+    private ResponseEntity<Collection<?>> getAllUsers(@RequestParam(name = "after", required = false) Integer after,
+                                                      @RequestParam(name = "limit", required = false) Integer limit,
+                                                      @RequestParam(name = FieldProjection.PARAMETER, required = false)
+                                                              String fields) {
+        var projection = FieldProjection.of(objectMapper, fields, User.class);
+        var withFriends = projection.includes("friends");
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(projection.apply(userStorage.getAllUsers(withFriends)));
+        }
+        var pageLimit = CollectionResponses.pageLimit(limit);
+        var page = userStorage.getUsersPage(after == null ? 0 : after, pageLimit, withFriends);
+        return projection.apply(CollectionResponses.page(page, pageLimit, User::getId));
+    }
+
+    @GetMapping("stream")
+    private ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        return CollectionResponses.ndjson(objectMapper, userStorage::forEachUser);
     }
 
     @GetMapping("/{id}")
-    private User getUser(@PathVariable("id") Integer id) {
+    private Object getUser(@PathVariable("id") Integer id,
+                           @RequestParam(name = FieldProjection.PARAMETER, required = false) String fields) {
+        var projection = FieldProjection.of(objectMapper, fields, User.class);
         try {
-            return userStorage.getById(id);
+            return projection.apply(userStorage.getById(id, projection.includes("friends")));
         } catch (NoSuchElementException | EmptyResultDataAccessException e) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND);
         }
@@ -58,6 +90,12 @@ public class UserController {
         return userStorage.addUser(user);
     }
 
+    @PostMapping(value = "import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    private ImportResult importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                     InputStream body) throws IOException {
+        return importService.importUsers(body, contentType);
+    }
+
     @PutMapping
     private User updateUser(@RequestBody User user) {
         try {
@@ -71,7 +109,7 @@ public class UserController {
     @PutMapping("{id}/friends/{friendId}")
     private User addFriend(@PathVariable("id") Integer userId, @PathVariable("friendId") Integer friendId) {
         try {
-            userStorage.addFriend(userId, friendId);
+            service.addFriend(userId, friendId);
             return userStorage.getById(userId);
         } catch (NoSuchElementException | DataIntegrityViolationException e) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND);
@@ -84,7 +122,7 @@ public class UserController {
     @DeleteMapping("{id}/friends/{friendId}")
     private User deleteFriend(@PathVariable("id") Integer userId, @PathVariable("friendId") Integer friendId) {
         try {
-            userStorage.deleteFriend(userId, friendId);
+            service.deleteFriend(userId, friendId);
             return userStorage.getById(userId);
         } catch (NoSuchElementException | EmptyResultDataAccessException e) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND);
@@ -92,24 +130,40 @@ public class UserController {
     }
 
     @GetMapping("{id}/friends")
-    private Set<User> friends(@PathVariable("id") Integer userId) {
+    private List<User> friends(@PathVariable("id") Integer userId) {
         try {
             var user = userStorage.getById(userId);
-            var friends = user.getFriends();
-            return friends.stream().map(userStorage::getById).collect(Collectors.toSet());
+            return userStorage.getByIds(sortedIds(user.getFriends()));
         } catch (NoSuchElementException e) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND);
         }
     }
 
     @GetMapping("{id}/friends/common/{otherId}")
-    private Collection<User> commonFriends(@PathVariable("id") Integer userId, @PathVariable("otherId") Integer otherId) {
+    private List<User> commonFriends(@PathVariable("id") Integer userId, @PathVariable("otherId") Integer otherId) {
         try {
             var user1 = userStorage.getById(userId);
             var user2 = userStorage.getById(otherId);
-            return service.getMutualFriends(user1, user2).stream().map(userStorage::getById).collect(Collectors.toSet());
+            return userStorage.getByIds(sortedIds(service.getMutualFriends(user1, user2)));
         } catch (NoSuchElementException e) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND);
         }
     }
+
+    @GetMapping("{id}/suggestions")
+    private List<User> suggestions(@PathVariable("id") Integer userId,
+                                   @RequestParam(name = "count", defaultValue = "10") int count) {
+        try {
+            return service.getSuggestions(userId, count);
+        } catch (NoSuchElementException | EmptyResultDataAccessException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+    }
+
+    /**
+     * Lists the ids in ascending order, so that users come in the same order on every request.
+     */
+    private static List<Integer> sortedIds(Collection<Integer> ids) {
+        return ids.stream().sorted().collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import ru.yandex.practicum.filmorate.storage.CacheStats;
+
+import java.util.function.Function;
+
+/**
+ * Publishes the counters of a storage cache, read from its {@link CacheStats} whenever the meters are.
+ * The meters only hold a weak reference to the storage, which is expected to be kept by the application.
+ * <p>
+ * Meters, all tagged by {@code cache}:
+ * <ul>
+ *     <li>{@code filmorate.cache.gets} - lookups, tagged by {@code result}, {@code hit} or {@code miss}</li>
+ *     <li>{@code filmorate.cache.evictions} - entities dropped for lack of room or for being too old</li>
+ *     <li>{@code filmorate.cache.size} - entities cached now</li>
+ * </ul>
+ */
+public final class CacheMetrics {
+
+    private CacheMetrics() {
+    }
+
+    public static <T> void register(MeterRegistry registry, String cache, T storage, Function<T, CacheStats> stats) {
+        FunctionCounter.builder("filmorate.cache.gets", storage, s -> stats.apply(s).getHits())
+                .tags("cache", cache, "result", "hit")
+                .description("Lookups of cached entities")
+                .register(registry);
+        FunctionCounter.builder("filmorate.cache.gets", storage, s -> stats.apply(s).getMisses())
+                .tags("cache", cache, "result", "miss")
+                .description("Lookups of cached entities")
+                .register(registry);
+        FunctionCounter.builder("filmorate.cache.evictions", storage, s -> stats.apply(s).getEvictions())
+                .tags("cache", cache)
+                .description("Entities dropped from the cache")
+                .register(registry);
+        Gauge.builder("filmorate.cache.size", storage, s -> stats.apply(s).getSize())
+                .tags("cache", cache)
+                .description("Entities in the cache")
+                .register(registry);
+    }
+}
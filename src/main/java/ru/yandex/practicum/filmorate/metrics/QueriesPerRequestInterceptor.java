@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Counts statements of a request from the moment it reaches a handler until the handler is done, or until
+ * the handler hands the response over to another thread.
+ */
+public class QueriesPerRequestInterceptor implements AsyncHandlerInterceptor {
+
+    private final QueryMetrics queryMetrics;
+
+    public QueriesPerRequestInterceptor(QueryMetrics queryMetrics) {
+        this.queryMetrics = queryMetrics;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // async and error dispatches belong to a request that has been counted already
+        if (request.getDispatcherType() == DispatcherType.REQUEST) {
+            queryMetrics.startRequest();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        end(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        end(request);
+    }
+
+    private void end(HttpServletRequest request) {
+        if (request.getDispatcherType() != DispatcherType.REQUEST || !queryMetrics.isRequestStarted()) {
+            return;
+        }
+        var pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        queryMetrics.endRequest(request.getMethod(), pattern == null ? "UNKNOWN" : pattern.toString());
+    }
+}
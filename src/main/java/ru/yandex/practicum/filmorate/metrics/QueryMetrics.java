@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long every logical query takes and how many JDBC statements it and every HTTP request issue.
+ * Statements are counted per thread, so statements issued on other threads, like the ones of streamed
+ * responses, are counted for their query but not for the request.
+ * <p>
+ * Meters:
+ * <ul>
+ *     <li>{@code filmorate.query} - time of a logical query, tagged by {@code query} and {@code outcome}</li>
+ *     <li>{@code filmorate.query.statements} - statements per logical query, tagged by {@code query}</li>
+ *     <li>{@code filmorate.http.queries} - statements per request, tagged by {@code method} and {@code uri}</li>
+ * </ul>
+ */
+public class QueryMetrics implements StatementCountingDataSource.Listener {
+
+    private final MeterRegistry registry;
+    private final ThreadLocal<int[]> queryStatements = new ThreadLocal<>();
+    private final ThreadLocal<int[]> requestStatements = new ThreadLocal<>();
+    private final Map<List<String>, Timer> timers = new ConcurrentHashMap<>();
+    // keyed by tag values, a query has one tag and a request two, so their keys never clash
+    private final Map<List<String>, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    public QueryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void statementIssued() {
+        var query = queryStatements.get();
+        if (query != null) {
+            query[0]++;
+        }
+        var request = requestStatements.get();
+        if (request != null) {
+            request[0]++;
+        }
+    }
+
+    /**
+     * Starts counting statements of a query.
+     *
+     * @return the counter of the enclosing query, to be passed to {@link #endQuery}
+     */
+    public int[] startQuery() {
+        var enclosing = queryStatements.get();
+        queryStatements.set(new int[1]);
+        return enclosing;
+    }
+
+    public void endQuery(String query, long startNanos, boolean succeeded, int[] enclosing) {
+        var statements = queryStatements.get()[0];
+        if (enclosing == null) {
+            queryStatements.remove();
+        } else {
+            enclosing[0] += statements;
+            queryStatements.set(enclosing);
+        }
+        timers.computeIfAbsent(List.of(query, succeeded ? "success" : "error"), this::registerQueryTimer)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        summaries.computeIfAbsent(List.of(query), key -> registerSummary("filmorate.query.statements",
+                        "JDBC statements issued by a logical storage query", "query", query))
+                .record(statements);
+    }
+
+    public void startRequest() {
+        requestStatements.set(new int[1]);
+    }
+
+    public boolean isRequestStarted() {
+        return requestStatements.get() != null;
+    }
+
+    public void endRequest(String method, String uri) {
+        var statements = requestStatements.get()[0];
+        requestStatements.remove();
+        summaries.computeIfAbsent(List.of(method, uri), key -> registerSummary("filmorate.http.queries",
+                        "JDBC statements issued while handling a request", "method", method, "uri", uri))
+                .record(statements);
+    }
+
+    private Timer registerQueryTimer(List<String> tags) {
+        return Timer.builder("filmorate.query")
+                .description("Time of a logical storage query")
+                .tags("query", tags.get(0), "outcome", tags.get(1))
+                .register(registry);
+    }
+
+    private DistributionSummary registerSummary(String name, String description, String... tags) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .tags(tags)
+                .register(registry);
+    }
+}
@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+
+/**
+ * Query metrics, on unless {@code filmorate.metrics.queries.enabled} is false. They are served by the actuator
+ * under {@code /actuator/metrics}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "filmorate.metrics.queries.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryMetricsConfiguration implements WebMvcConfigurer {
+
+    private final ObjectProvider<QueryMetrics> queryMetrics;
+
+    public QueryMetricsConfiguration(ObjectProvider<QueryMetrics> queryMetrics) {
+        this.queryMetrics = queryMetrics;
+    }
+
+    @Bean
+    public static BeanPostProcessor statementCountingDataSourcePostProcessor(
+            ObjectProvider<QueryMetrics> queryMetrics) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource) {
+                    return new StatementCountingDataSource((DataSource) bean, queryMetrics::getObject);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public QueryMetrics queryMetrics(MeterRegistry registry) {
+        return new QueryMetrics(registry);
+    }
+
+    @Bean
+    public StorageQueryAspect storageQueryAspect(QueryMetrics queryMetrics) {
+        return new StorageQueryAspect(queryMetrics);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new QueriesPerRequestInterceptor(queryMetrics.getObject()));
+    }
+}
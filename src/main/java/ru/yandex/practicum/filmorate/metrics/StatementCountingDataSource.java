@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Reports every statement prepared or created on its connections to a {@link Listener}, such as
+ * {@link QueryMetrics}. Data sources can be wrapped several times to report to several listeners.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+    private static final Set<String> STATEMENT_METHODS = Set.of("createStatement", "prepareStatement", "prepareCall");
+
+    // the data source may be created before the listener, which may depend on beans that need the data source
+    private final Supplier<? extends Listener> listenerSupplier;
+    private volatile Listener listener;
+
+    public StatementCountingDataSource(DataSource dataSource, Supplier<? extends Listener> listenerSupplier) {
+        super(dataSource);
+        this.listenerSupplier = listenerSupplier;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return countStatements(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return countStatements(super.getConnection(username, password));
+    }
+
+    private Connection countStatements(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (STATEMENT_METHODS.contains(method.getName())) {
+                        listener().statementIssued();
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    private Listener listener() {
+        if (listener == null) {
+            listener = listenerSupplier.get();
+        }
+        return listener;
+    }
+
+    public interface Listener {
+
+        /**
+         * Called on the thread that has prepared or created a statement.
+         */
+        void statementIssued();
+    }
+}
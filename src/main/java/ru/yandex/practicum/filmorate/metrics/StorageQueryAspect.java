@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+
+/**
+ * Every data access method of the database storages is a logical query named after the class and the method,
+ * like {@code FilmDbStorage.getById}; validation doesn't touch the database and isn't one. Calls a storage
+ * makes to its own methods are part of the outer query.
+ */
+@Aspect
+public class StorageQueryAspect {
+
+    private final QueryMetrics queryMetrics;
+
+    public StorageQueryAspect(QueryMetrics queryMetrics) {
+        this.queryMetrics = queryMetrics;
+    }
+
+    // matched by bean name, the storage beans composed from these ones may be the very same objects
+    @Pointcut("bean(filmDbStorage) || bean(userDbStorage)")
+    void databaseStorages() {
+    }
+
+    @Pointcut("execution(public * ru.yandex.practicum.filmorate.storage.film.FilmStorage.*(..))"
+            + " || execution(public * ru.yandex.practicum.filmorate.storage.user.UserStorage.*(..))")
+    void storageMethods() {
+    }
+
+    @Pointcut("execution(* validate(..))")
+    void validation() {
+    }
+
+    @Around("databaseStorages() && storageMethods() && !validation()")
+    public Object recordQuery(ProceedingJoinPoint joinPoint) throws Throwable {
+        var signature = joinPoint.getSignature();
+        var enclosing = queryMetrics.startQuery();
+        var start = System.nanoTime();
+        var succeeded = false;
+        try {
+            var result = joinPoint.proceed();
+            succeeded = true;
+            return result;
+        } finally {
+            queryMetrics.endQuery(signature.getDeclaringType().getSimpleName() + "." + signature.getName(),
+                    start, succeeded, enclosing);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -17,6 +18,7 @@ public class Film {
 
     private int id;
 
+    @JsonDeserialize(as = IntSet.class)
     private Set<Integer> likes;
     @NotNull
     @NotBlank
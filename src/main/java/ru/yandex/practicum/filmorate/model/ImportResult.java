@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The outcome of an import: how many lines have been imported or rejected, and why the first rejected
+ * lines have been, up to a limit.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportResult {
+    private int imported;
+    private int rejected;
+    private List<ImportError> errors;
+}
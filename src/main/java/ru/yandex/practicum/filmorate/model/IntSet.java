@@ -0,0 +1,454 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.*;
+
+/**
+ * A set of non-negative ints that stores values without boxing them. Values are split into chunks by their
+ * upper 16 bits. A chunk with few values keeps their lower 16 bits in a sorted {@code char[]} (2 bytes per
+ * value), a chunk with more than {@link #ARRAY_MAX} values switches to a fixed 8 KB bitmap, which is smaller
+ * from that point on. Iteration goes in ascending order.
+ * <p>
+ * The set serializes to a plain JSON array like any other {@link Set}. It is not thread-safe.
+ */
+public final class IntSet extends AbstractSet<Integer> {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+    // an array this many times shorter than the other one is looked up in it instead of being merged with it
+    private static final int GALLOP_RATIO = 32;
+    private static final char[] NO_KEYS = new char[0];
+
+    private char[] keys = NO_KEYS;
+    private Object[] containers = new Object[0];
+    private int[] cardinalities = new int[0];
+    private int chunks;
+    private int size;
+
+    public IntSet() {
+    }
+
+    public IntSet(Collection<Integer> values) {
+        if (values instanceof IntSet) {
+            var other = (IntSet) values;
+            keys = Arrays.copyOf(other.keys, other.chunks);
+            cardinalities = Arrays.copyOf(other.cardinalities, other.chunks);
+            containers = new Object[other.chunks];
+            for (int i = 0; i < other.chunks; i++) {
+                var container = other.containers[i];
+                containers[i] = container instanceof long[]
+                        ? ((long[]) container).clone()
+                        : Arrays.copyOf((char[]) container, other.cardinalities[i]);
+            }
+            chunks = other.chunks;
+            size = other.size;
+        } else {
+            values.forEach(this::add);
+        }
+    }
+
+    public static IntSet of(int... values) {
+        var set = new IntSet();
+        for (var value : values) {
+            set.addInt(value);
+        }
+        return set;
+    }
+
+    /**
+     * Returns a new set of the values found in both sets. Chunks are matched by their upper bits, two bitmaps
+     * are intersected a word at a time, a sorted array and a bitmap by probing the bitmap, and two sorted
+     * arrays by merging them or, when one is much shorter, by looking its values up in the other one.
+     */
+    public static IntSet intersection(IntSet first, IntSet second) {
+        var result = new IntSet();
+        var i = 0;
+        var j = 0;
+        while (i < first.chunks && j < second.chunks) {
+            if (first.keys[i] < second.keys[j]) {
+                i++;
+            } else if (first.keys[i] > second.keys[j]) {
+                j++;
+            } else {
+                result.appendIntersection(first.keys[i], first.containers[i], first.cardinalities[i],
+                        second.containers[j], second.cardinalities[j]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public boolean containsInt(int value) {
+        if (value < 0) {
+            return false;
+        }
+        var i = chunkIndex(high(value));
+        if (i < 0) {
+            return false;
+        }
+        var low = low(value);
+        var container = containers[i];
+        if (container instanceof long[]) {
+            return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, cardinalities[i], low) >= 0;
+    }
+
+    public boolean addInt(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("IntSet can't hold negative values: " + value);
+        }
+        var high = high(value);
+        var low = low(value);
+        var i = chunkIndex(high);
+        if (i < 0) {
+            insertChunk(-i - 1, high, new char[]{low});
+        } else if (containers[i] instanceof long[]) {
+            var bitmap = (long[]) containers[i];
+            var bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) != 0) {
+                return false;
+            }
+            bitmap[low >>> 6] |= bit;
+            cardinalities[i]++;
+        } else {
+            var array = (char[]) containers[i];
+            var cardinality = cardinalities[i];
+            var position = Arrays.binarySearch(array, 0, cardinality, low);
+            if (position >= 0) {
+                return false;
+            }
+            position = -position - 1;
+            if (cardinality == ARRAY_MAX) {
+                var bitmap = toBitmap(array, cardinality);
+                bitmap[low >>> 6] |= 1L << low;
+                containers[i] = bitmap;
+            } else {
+                if (cardinality == array.length) {
+                    array = Arrays.copyOf(array, Math.min(ARRAY_MAX, cardinality + (cardinality >> 1) + 1));
+                    containers[i] = array;
+                }
+                System.arraycopy(array, position, array, position + 1, cardinality - position);
+                array[position] = low;
+            }
+            cardinalities[i]++;
+        }
+        size++;
+        return true;
+    }
+
+    public boolean removeInt(int value) {
+        if (value < 0) {
+            return false;
+        }
+        var i = chunkIndex(high(value));
+        if (i < 0) {
+            return false;
+        }
+        var low = low(value);
+        if (containers[i] instanceof long[]) {
+            var bitmap = (long[]) containers[i];
+            var bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) == 0) {
+                return false;
+            }
+            bitmap[low >>> 6] &= ~bit;
+            // converting back only at half the threshold keeps a chunk near the threshold from flipping on every change
+            if (--cardinalities[i] <= ARRAY_MAX / 2) {
+                containers[i] = toArray(bitmap, cardinalities[i]);
+            }
+        } else {
+            var array = (char[]) containers[i];
+            var cardinality = cardinalities[i];
+            var position = Arrays.binarySearch(array, 0, cardinality, low);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(array, position + 1, array, position, cardinality - position - 1);
+            if (--cardinalities[i] == 0) {
+                removeChunk(i);
+            }
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Returns the smallest value in the set that is greater than or equal to {@code value}, or -1 if there is none.
+     */
+    public int ceiling(int value) {
+        if (value < 0) {
+            value = 0;
+        }
+        var i = chunkIndex(high(value));
+        var low = (int) low(value);
+        if (i < 0) {
+            i = -i - 1;
+            low = 0;
+        }
+        for (; i < chunks; i++, low = 0) {
+            var found = ceilingInChunk(i, low);
+            if (found >= 0) {
+                return keys[i] << 16 | found;
+            }
+        }
+        return -1;
+    }
+
+    public PrimitiveIterator.OfInt intIterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int next = ceiling(0);
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = last == Integer.MAX_VALUE ? -1 : ceiling(last + 1);
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                removeInt(last);
+                last = -1;
+            }
+        };
+    }
+
+    public int[] toIntArray() {
+        var result = new int[size];
+        var iterator = intIterator();
+        for (int i = 0; i < size; i++) {
+            result[i] = iterator.nextInt();
+        }
+        return result;
+    }
+
+    /**
+     * Estimates the bytes the set takes on the heap from the lengths of its arrays, assuming a 64-bit JVM with
+     * compressed references: 12-byte object headers, 16-byte array headers and 4-byte references.
+     */
+    long estimateHeapSize() {
+        // the header, three references and two ints
+        long bytes = 32;
+        bytes += align(16 + 2L * keys.length) + align(16 + 4L * containers.length)
+                + align(16 + 4L * cardinalities.length);
+        for (int i = 0; i < chunks; i++) {
+            var container = containers[i];
+            bytes += container instanceof long[]
+                    ? align(16 + 8L * ((long[]) container).length)
+                    : align(16 + 2L * ((char[]) container).length);
+        }
+        return bytes;
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return intIterator();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && containsInt((Integer) o);
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        return addInt(value);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Integer && removeInt((Integer) o);
+    }
+
+    @Override
+    public void clear() {
+        keys = NO_KEYS;
+        containers = new Object[0];
+        cardinalities = new int[0];
+        chunks = 0;
+        size = 0;
+    }
+
+    private void appendIntersection(char high, Object first, int firstCardinality,
+                                    Object second, int secondCardinality) {
+        if (first instanceof long[] && second instanceof long[]) {
+            var bitmap = new long[BITMAP_WORDS];
+            var cardinality = 0;
+            for (int word = 0; word < BITMAP_WORDS; word++) {
+                bitmap[word] = ((long[]) first)[word] & ((long[]) second)[word];
+                cardinality += Long.bitCount(bitmap[word]);
+            }
+            if (cardinality > ARRAY_MAX) {
+                appendChunk(high, bitmap, cardinality);
+            } else if (cardinality > 0) {
+                appendChunk(high, toArray(bitmap, cardinality), cardinality);
+            }
+            return;
+        }
+        if (first instanceof long[]) {
+            appendIntersection(high, second, secondCardinality, first, firstCardinality);
+            return;
+        }
+        var array = (char[]) first;
+        var common = new char[Math.min(firstCardinality, secondCardinality)];
+        var cardinality = 0;
+        if (second instanceof long[]) {
+            var bitmap = (long[]) second;
+            for (int k = 0; k < firstCardinality; k++) {
+                if ((bitmap[array[k] >>> 6] & (1L << array[k])) != 0) {
+                    common[cardinality++] = array[k];
+                }
+            }
+        } else if (firstCardinality * GALLOP_RATIO < secondCardinality
+                || secondCardinality * GALLOP_RATIO < firstCardinality) {
+            var shorter = firstCardinality < secondCardinality ? array : (char[]) second;
+            var longer = firstCardinality < secondCardinality ? (char[]) second : array;
+            var longerCardinality = Math.max(firstCardinality, secondCardinality);
+            var from = 0;
+            for (int k = 0; k < common.length && from < longerCardinality; k++) {
+                var position = Arrays.binarySearch(longer, from, longerCardinality, shorter[k]);
+                if (position >= 0) {
+                    common[cardinality++] = shorter[k];
+                    from = position + 1;
+                } else {
+                    from = -position - 1;
+                }
+            }
+        } else {
+            var other = (char[]) second;
+            var k = 0;
+            var l = 0;
+            while (k < firstCardinality && l < secondCardinality) {
+                if (array[k] < other[l]) {
+                    k++;
+                } else if (array[k] > other[l]) {
+                    l++;
+                } else {
+                    common[cardinality++] = array[k];
+                    k++;
+                    l++;
+                }
+            }
+        }
+        if (cardinality > 0) {
+            appendChunk(high, common, cardinality);
+        }
+    }
+
+    private int ceilingInChunk(int i, int low) {
+        var container = containers[i];
+        if (container instanceof long[]) {
+            var bitmap = (long[]) container;
+            var word = low >>> 6;
+            var bits = bitmap[word] & (-1L << low);
+            while (bits == 0) {
+                if (++word == BITMAP_WORDS) {
+                    return -1;
+                }
+                bits = bitmap[word];
+            }
+            return word << 6 | Long.numberOfTrailingZeros(bits);
+        }
+        var array = (char[]) container;
+        var position = Arrays.binarySearch(array, 0, cardinalities[i], (char) low);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        return position < cardinalities[i] ? array[position] : -1;
+    }
+
+    private int chunkIndex(char high) {
+        return Arrays.binarySearch(keys, 0, chunks, high);
+    }
+
+    private void insertChunk(int i, char high, char[] array) {
+        if (chunks == keys.length) {
+            var capacity = Math.max(4, chunks * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            cardinalities = Arrays.copyOf(cardinalities, capacity);
+        }
+        System.arraycopy(keys, i, keys, i + 1, chunks - i);
+        System.arraycopy(containers, i, containers, i + 1, chunks - i);
+        System.arraycopy(cardinalities, i, cardinalities, i + 1, chunks - i);
+        keys[i] = high;
+        containers[i] = array;
+        cardinalities[i] = array.length;
+        chunks++;
+    }
+
+    /**
+     * Adds a chunk after the last one, its upper bits must be greater than those of the chunks already kept.
+     */
+    private void appendChunk(char high, Object container, int cardinality) {
+        if (chunks == keys.length) {
+            var capacity = Math.max(4, chunks * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            cardinalities = Arrays.copyOf(cardinalities, capacity);
+        }
+        keys[chunks] = high;
+        containers[chunks] = container;
+        cardinalities[chunks] = cardinality;
+        chunks++;
+        size += cardinality;
+    }
+
+    private void removeChunk(int i) {
+        System.arraycopy(keys, i + 1, keys, i, chunks - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, chunks - i - 1);
+        System.arraycopy(cardinalities, i + 1, cardinalities, i, chunks - i - 1);
+        containers[--chunks] = null;
+    }
+
+    private static long[] toBitmap(char[] array, int cardinality) {
+        var bitmap = new long[BITMAP_WORDS];
+        for (int i = 0; i < cardinality; i++) {
+            bitmap[array[i] >>> 6] |= 1L << array[i];
+        }
+        return bitmap;
+    }
+
+    private static char[] toArray(long[] bitmap, int cardinality) {
+        var array = new char[cardinality];
+        var position = 0;
+        for (int word = 0; word < BITMAP_WORDS; word++) {
+            var bits = bitmap[word];
+            while (bits != 0) {
+                array[position++] = (char) (word << 6 | Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return array;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static char high(int value) {
+        return (char) (value >>> 16);
+    }
+
+    private static char low(int value) {
+        return (char) value;
+    }
+}
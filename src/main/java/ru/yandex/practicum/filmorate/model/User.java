@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -16,6 +17,7 @@ import java.util.Set;
 @AllArgsConstructor
 public class User {
 
+    @JsonDeserialize(as = IntSet.class)
     private Set<Integer> friends;
 
     private int id;
@@ -0,0 +1,190 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Approximate ranking of films by like count for {@link PopularitySource#APPROXIMATE}, meant for like rates
+ * at which the lock of {@link PopularityIndex} holds likes up. Its memory depends on the configuration only,
+ * not on the number of films. It is seeded from the storage on creation and then kept up to date by
+ * {@link FilmService}.
+ * <p>
+ * Like counts are kept in a Count-Min sketch: {@code depth} rows of {@code width} counters, a like changes
+ * a counter in every row, picked by the row's hash of the film id, and the count of a film is estimated as
+ * the smallest of its counters. Counters are changed atomically without locking. An estimate is never below
+ * the true count and, with a probability of at least {@code 1 - e^-depth}, it is above it by no more than
+ * {@code e / width} of all the likes: with the default 8192 x 5 counters, by no more than 0.033% of the likes
+ * with a probability of 99.3%.
+ * <p>
+ * Only the {@code candidates} films with the highest estimates can be returned. A like that brings a film's
+ * estimate above the smallest estimate among them makes it a candidate in place of that film, and a candidate
+ * whose likes are all deleted stops being one. A like takes a lock only then, a deleted like takes it every
+ * time to keep the smallest estimate up to date. Candidates are ranked by their estimates when read, so a film
+ * whose count exceeds the count of the n-th film by more than the error above is ranked before it, though
+ * a film left out while the candidates were more liked only gets in with its next like.
+ */
+@Slf4j
+@Component
+public class ApproximatePopularity {
+    private static final long SEED = 0x5deece66dL;
+
+    private final FilmStorage filmStorage;
+    private final int depth;
+    private final int widthBits;
+    private final int maxCandidates;
+    private final long[] hashes;
+    private final AtomicIntegerArray counters;
+    private final Set<Integer> candidates = ConcurrentHashMap.newKeySet();
+    // no more than the smallest estimate among the candidates, no estimate at or below it can get a film in;
+    // zero while there is room for more candidates
+    private volatile int threshold;
+
+    @Autowired
+    public ApproximatePopularity(@Qualifier("FilmStorage") FilmStorage filmStorage,
+                                 @Value("${filmorate.popularity.approximate.width}") int width,
+                                 @Value("${filmorate.popularity.approximate.depth}") int depth,
+                                 @Value("${filmorate.popularity.approximate.candidates}") int maxCandidates) {
+        if (Integer.bitCount(width) != 1 || width < 2) {
+            throw new IllegalArgumentException("The width of the sketch should be a power of two, not " + width);
+        }
+        this.filmStorage = filmStorage;
+        this.depth = depth;
+        this.widthBits = Integer.numberOfTrailingZeros(width);
+        this.maxCandidates = maxCandidates;
+        var random = new SplittableRandom(SEED);
+        hashes = new long[depth];
+        for (int row = 0; row < depth; row++) {
+            // multiply-shift hashing needs odd multipliers
+            hashes[row] = random.nextLong() | 1;
+        }
+        counters = new AtomicIntegerArray(depth * width);
+        reload();
+    }
+
+    /**
+     * Recounts the likes from the like counts kept by the storage.
+     */
+    public synchronized void reload() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+        candidates.clear();
+        threshold = 0;
+        var counts = filmStorage.getLikeCounts();
+        counts.forEach(this::change);
+        log.debug("approximate popularity has been loaded with {} films", counts.size());
+    }
+
+    public void addLike(int filmId) {
+        change(filmId, 1);
+    }
+
+    public void deleteLike(int filmId) {
+        change(filmId, -1);
+    }
+
+    public int getMaxCandidates() {
+        return maxCandidates;
+    }
+
+    /**
+     * Returns the estimated number of likes of the film.
+     */
+    public int getLikes(int filmId) {
+        var estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, filmId)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Returns ids of the candidates with the highest estimates, no more than the number of candidates,
+     * ties are broken by the smaller id.
+     */
+    public List<Integer> getTop(int count) {
+        var ranking = new ArrayList<long[]>(maxCandidates);
+        candidates.forEach(filmId -> ranking.add(new long[]{filmId, getLikes(filmId)}));
+        ranking.sort((a, b) -> a[1] != b[1] ? Long.compare(b[1], a[1]) : Long.compare(a[0], b[0]));
+        var top = new ArrayList<Integer>(Math.min(count, ranking.size()));
+        for (int i = 0; i < ranking.size() && top.size() < count; i++) {
+            top.add((int) ranking.get(i)[0]);
+        }
+        return top;
+    }
+
+    private void change(int filmId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        var estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.addAndGet(index(row, filmId), delta));
+        }
+        if (delta < 0) {
+            lower(filmId, estimate, -delta);
+        } else if (estimate > threshold && !candidates.contains(filmId)) {
+            admit(filmId, estimate);
+        }
+    }
+
+    /**
+     * Follows deleted likes, which lower by no more than their number every estimate they were counted in,
+     * the smallest candidate's included.
+     */
+    private synchronized void lower(int filmId, int estimate, int likes) {
+        if (estimate <= 0 && candidates.remove(filmId)) {
+            threshold = 0;
+        } else {
+            threshold = Math.max(0, threshold - likes);
+        }
+    }
+
+    private synchronized void admit(int filmId, int estimate) {
+        if (candidates.contains(filmId)) {
+            return;
+        }
+        if (candidates.size() < maxCandidates) {
+            candidates.add(filmId);
+            if (candidates.size() == maxCandidates) {
+                threshold = getLikes(smallestCandidate());
+            }
+            return;
+        }
+        var smallest = smallestCandidate();
+        if (getLikes(smallest) < estimate) {
+            candidates.remove(smallest);
+            candidates.add(filmId);
+            smallest = smallestCandidate();
+        }
+        threshold = getLikes(smallest);
+    }
+
+    private int smallestCandidate() {
+        var smallest = -1;
+        var smallestLikes = Integer.MAX_VALUE;
+        for (var candidate : candidates) {
+            var likes = getLikes(candidate);
+            if (likes < smallestLikes) {
+                smallest = candidate;
+                smallestLikes = likes;
+            }
+        }
+        return smallest;
+    }
+
+    private int index(int row, int filmId) {
+        return (row << widthBits) + (int) ((hashes[row] * filmId) >>> (Long.SIZE - widthBits));
+    }
+}
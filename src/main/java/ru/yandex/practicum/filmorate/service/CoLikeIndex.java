@@ -0,0 +1,291 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Counts how many users liked both films of a pair, to answer "users who liked this film also liked".
+ * It is seeded from the storage in the background once the application has started and then kept up to date
+ * by {@link FilmService}, so finding similar films doesn't touch the likes table; until the seeding is done
+ * only the likes added since the start are counted.
+ * <p>
+ * A film keeps counters for at most twice the number of neighbours it can be asked for. When a new film
+ * has to be counted and the counters are all taken, it takes over the smallest counter and goes on from
+ * its value (the Space-Saving algorithm): a count may be overestimated by the count it took over, but films
+ * liked together more often than that stay counted. The films every user liked are kept too, to know which
+ * pairs a new like makes, but at most {@code maxFilmsPerUser} of them: the films a user likes after that are
+ * not counted until some of the kept ones are unliked. It bounds both the memory and the pairs a like makes,
+ * which would otherwise grow with the square of the likes of the most active users.
+ */
+@Slf4j
+@Component
+public class CoLikeIndex {
+
+    private final FilmStorage filmStorage;
+    private final int maxNeighbours;
+    private final int maxFilmsPerUser;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // guarded by lock, replaced as a whole by reload
+    private Map<Integer, IntSet> filmsByUser = new HashMap<>();
+    private Map<Integer, Neighbours> neighbours = new HashMap<>();
+    // likes added (true) and deleted (false) while a reload reads the storage, replayed on what it has read;
+    // null when no reload is running
+    private List<Change> changesDuringReload;
+    private volatile Thread loader;
+
+    public CoLikeIndex(@Qualifier("FilmStorage") FilmStorage filmStorage,
+                       @Value("${filmorate.similar-films.max-count}") int maxNeighbours,
+                       @Value("${filmorate.similar-films.max-films-per-user}") int maxFilmsPerUser) {
+        this.filmStorage = filmStorage;
+        this.maxNeighbours = maxNeighbours;
+        this.maxFilmsPerUser = maxFilmsPerUser;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reloadInBackground() {
+        var thread = new Thread(() -> {
+            try {
+                reload();
+            } catch (RuntimeException e) {
+                log.error("co-like index has failed to load, only new likes are counted", e);
+            }
+        }, "co-like-loader");
+        thread.setDaemon(true);
+        loader = thread;
+        thread.start();
+    }
+
+    /**
+     * Waits for the load started with the application to finish, for those who need the likes stored before
+     * the start counted or no statements run behind their back.
+     */
+    public void awaitLoad() throws InterruptedException {
+        var thread = loader;
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Recounts the pairs from the likes kept by the storage. The pairs are counted aside, the index goes on
+     * serving and counting the old ones meanwhile; the likes changed in between are applied again on top of
+     * the new counts, which is safe as applying a like twice changes nothing.
+     */
+    public void reload() {
+        lock.writeLock().lock();
+        try {
+            changesDuringReload = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        var films = new HashMap<Integer, IntSet>();
+        var pairs = new HashMap<Integer, Neighbours>();
+        try {
+            filmStorage.forEachFilm(film -> film.getLikes().forEach(userId -> {
+                var userFilms = films.computeIfAbsent(userId, id -> new IntSet());
+                if (userFilms.size() < maxFilmsPerUser && userFilms.addInt(film.getId())) {
+                    changePairs(pairs, film.getId(), userFilms, 1);
+                }
+            }));
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringReload = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            filmsByUser = films;
+            neighbours = pairs;
+            for (var change : changesDuringReload) {
+                apply(change.filmId, change.userId, change.added);
+            }
+            changesDuringReload = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("co-like index has been loaded with likes of {} users", films.size());
+    }
+
+    public int getMaxNeighbours() {
+        return maxNeighbours;
+    }
+
+    public void addLike(int filmId, int userId) {
+        change(filmId, userId, true);
+    }
+
+    public void deleteLike(int filmId, int userId) {
+        change(filmId, userId, false);
+    }
+
+    /**
+     * Returns ids of the films most often liked together with the film, ties are broken by the smaller id.
+     */
+    public List<Integer> getSimilar(int filmId, int count) {
+        lock.readLock().lock();
+        try {
+            var filmNeighbours = neighbours.get(filmId);
+            return filmNeighbours == null ? List.of() : filmNeighbours.top(Math.min(count, maxNeighbours));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Applies a like under the lock; a like makes at most {@code maxFilmsPerUser} pairs, so holding the lock
+     * of the whole index while counting them is bounded too.
+     */
+    private void change(int filmId, int userId, boolean added) {
+        lock.writeLock().lock();
+        try {
+            apply(filmId, userId, added);
+            if (changesDuringReload != null) {
+                changesDuringReload.add(new Change(filmId, userId, added));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(int filmId, int userId, boolean added) {
+        if (added) {
+            var films = filmsByUser.computeIfAbsent(userId, id -> new IntSet());
+            if (films.size() < maxFilmsPerUser && films.addInt(filmId)) {
+                changePairs(neighbours, filmId, films, 1);
+            }
+            return;
+        }
+        var films = filmsByUser.get(userId);
+        if (films == null || !films.removeInt(filmId)) {
+            return;
+        }
+        changePairs(neighbours, filmId, films, -1);
+        if (films.isEmpty()) {
+            filmsByUser.remove(userId);
+        }
+    }
+
+    private void changePairs(Map<Integer, Neighbours> neighbours, int filmId, IntSet otherFilms, int delta) {
+        var iterator = otherFilms.intIterator();
+        while (iterator.hasNext()) {
+            var otherFilmId = iterator.nextInt();
+            if (otherFilmId != filmId) {
+                changeNeighbour(neighbours, filmId, otherFilmId, delta);
+                changeNeighbour(neighbours, otherFilmId, filmId, delta);
+            }
+        }
+    }
+
+    private void changeNeighbour(Map<Integer, Neighbours> neighbours, int filmId, int neighbourId, int delta) {
+        if (delta > 0) {
+            neighbours.computeIfAbsent(filmId, id -> new Neighbours(2 * maxNeighbours)).increment(neighbourId);
+            return;
+        }
+        var filmNeighbours = neighbours.get(filmId);
+        if (filmNeighbours != null && filmNeighbours.decrement(neighbourId) && filmNeighbours.size == 0) {
+            neighbours.remove(filmId);
+        }
+    }
+
+    private static class Change {
+        private final int filmId;
+        private final int userId;
+        private final boolean added;
+
+        Change(int filmId, int userId, boolean added) {
+            this.filmId = filmId;
+            this.userId = userId;
+            this.added = added;
+        }
+    }
+
+    /**
+     * Counters of a film's neighbours in arrays, a few dozen of them are faster to scan than to hash.
+     */
+    private static class Neighbours {
+        private final int[] filmIds;
+        private final int[] counts;
+        private int size;
+
+        Neighbours(int capacity) {
+            filmIds = new int[capacity];
+            counts = new int[capacity];
+        }
+
+        void increment(int filmId) {
+            var i = indexOf(filmId);
+            if (i < 0) {
+                i = size < filmIds.length ? size++ : indexOfSmallest();
+                filmIds[i] = filmId;
+            }
+            counts[i]++;
+        }
+
+        /**
+         * Returns whether the film was counted.
+         */
+        boolean decrement(int filmId) {
+            var i = indexOf(filmId);
+            if (i < 0) {
+                return false;
+            }
+            if (--counts[i] == 0) {
+                size--;
+                filmIds[i] = filmIds[size];
+                counts[i] = counts[size];
+            }
+            return true;
+        }
+
+        List<Integer> top(int count) {
+            var order = new long[size];
+            for (int i = 0; i < size; i++) {
+                // the larger count first, then the smaller id
+                order[i] = (long) -counts[i] << 32 | filmIds[i] & 0xffffffffL;
+            }
+            Arrays.sort(order);
+            var top = new ArrayList<Integer>(Math.min(count, size));
+            for (int i = 0; i < size && top.size() < count; i++) {
+                top.add((int) order[i]);
+            }
+            return top;
+        }
+
+        private int indexOf(int filmId) {
+            for (int i = 0; i < size; i++) {
+                if (filmIds[i] == filmId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int indexOfSmallest() {
+            var smallest = 0;
+            for (int i = 1; i < size; i++) {
+                if (counts[i] < counts[smallest]) {
+                    smallest = i;
+                }
+            }
+            return smallest;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index of the words in film names and descriptions. It is seeded from the storage on creation
+ * and then kept up to date by {@link FilmService}, so searching doesn't scan the films table.
+ * <p>
+ * Every word of a query has to match a word of the film, as a whole word or as its beginning. A film scores
+ * for each query word with the best word it matched: a word of the name weighs {@link #NAME_WEIGHT} times
+ * a word of the description, a whole word twice a beginning. Films with the same score are ranked by likes.
+ */
+@Slf4j
+@Component
+public class FilmSearchIndex {
+
+    static final int NAME_WEIGHT = 3;
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final FilmStorage filmStorage;
+    private final PopularityIndex popularityIndex;
+    // word -> film id -> weight of the word in the film
+    private final NavigableMap<String, Map<Integer, Integer>> postings = new TreeMap<>();
+    // film id -> the words it is indexed under, to remove them when the film changes
+    private final Map<Integer, Map<String, Integer>> words = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public FilmSearchIndex(@Qualifier("FilmStorage") FilmStorage filmStorage, PopularityIndex popularityIndex) {
+        this.filmStorage = filmStorage;
+        this.popularityIndex = popularityIndex;
+        reload();
+    }
+
+    /**
+     * Rebuilds the index from the films kept by the storage.
+     */
+    public void reload() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            words.clear();
+            filmStorage.forEachFilm(this::index);
+            log.debug("search index has been loaded with {} films and {} words", words.size(), postings.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes a new film or reindexes a changed one.
+     */
+    public void addFilm(Film film) {
+        lock.writeLock().lock();
+        try {
+            remove(film.getId());
+            index(film);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns ids of the films matching every word of the query, the best matches first.
+     */
+    public List<Integer> search(String query, int count) {
+        var queryWords = new LinkedHashSet<>(tokenize(query));
+        if (queryWords.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Map<Integer, Integer> scores = null;
+            for (var queryWord : queryWords) {
+                var previous = scores;
+                scores = match(queryWord, previous);
+                if (previous != null) {
+                    scores.replaceAll((filmId, score) -> score + previous.get(filmId));
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            return rank(scores, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scores films by the best word starting with the query word, only the candidates if there are any.
+     */
+    private Map<Integer, Integer> match(String queryWord, Map<Integer, Integer> candidates) {
+        var scores = new HashMap<Integer, Integer>();
+        var matching = postings.subMap(queryWord, true, queryWord + Character.MAX_VALUE, false);
+        matching.forEach((word, films) -> {
+            var wholeWord = word.length() == queryWord.length();
+            films.forEach((filmId, weight) -> {
+                if (candidates == null || candidates.containsKey(filmId)) {
+                    scores.merge(filmId, wholeWord ? 2 * weight : weight, Math::max);
+                }
+            });
+        });
+        return scores;
+    }
+
+    private List<Integer> rank(Map<Integer, Integer> scores, int count) {
+        var likes = new HashMap<Integer, Integer>();
+        scores.keySet().forEach(filmId -> likes.put(filmId, popularityIndex.getLikes(filmId)));
+        var ranking = new ArrayList<>(scores.keySet());
+        ranking.sort(Comparator.comparing((Integer filmId) -> scores.get(filmId))
+                .thenComparing(likes::get)
+                .reversed()
+                .thenComparing(Comparator.naturalOrder()));
+        return ranking.size() > count ? List.copyOf(ranking.subList(0, count)) : ranking;
+    }
+
+    private void index(Film film) {
+        var filmWords = new HashMap<String, Integer>();
+        tokenize(film.getName()).forEach(word -> filmWords.merge(word, NAME_WEIGHT, Math::max));
+        tokenize(film.getDescription()).forEach(word -> filmWords.merge(word, 1, Math::max));
+        filmWords.forEach((word, weight) ->
+                postings.computeIfAbsent(word, w -> new HashMap<>()).put(film.getId(), weight));
+        words.put(film.getId(), filmWords);
+    }
+
+    private void remove(int filmId) {
+        var filmWords = words.remove(filmId);
+        if (filmWords == null) {
+            return;
+        }
+        filmWords.keySet().forEach(word -> {
+            var films = postings.get(word);
+            films.remove(filmId);
+            if (films.isEmpty()) {
+                postings.remove(word);
+            }
+        });
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        var tokens = new ArrayList<String>();
+        for (var token : NON_WORD.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
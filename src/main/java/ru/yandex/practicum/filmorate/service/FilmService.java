@@ -3,36 +3,157 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.stream.Stream;
 
 @Slf4j
 @Service
 public class FilmService {
 
+    static final int MAX_SEARCH_COUNT = 100;
+
     private final FilmStorage filmStorage;
+    private final PopularityIndex popularityIndex;
+    private final PopularitySource popularitySource;
+    private final ApproximatePopularity approximatePopularity;
+    private final CoLikeIndex coLikeIndex;
+    private final FilmSearchIndex searchIndex;
+    private final TrendingIndex trendingIndex;
 
     @Autowired
-    public FilmService(@Qualifier("FilmDbStorage") FilmStorage filmStorage) {
+    public FilmService(@Qualifier("FilmStorage") FilmStorage filmStorage,
+                       PopularityIndex popularityIndex,
+                       @Value("${filmorate.popularity.source}") PopularitySource popularitySource,
+                       ApproximatePopularity approximatePopularity,
+                       CoLikeIndex coLikeIndex,
+                       FilmSearchIndex searchIndex,
+                       TrendingIndex trendingIndex) {
         this.filmStorage = filmStorage;
+        this.popularityIndex = popularityIndex;
+        this.popularitySource = popularitySource;
+        this.approximatePopularity = approximatePopularity;
+        this.coLikeIndex = coLikeIndex;
+        this.searchIndex = searchIndex;
+        this.trendingIndex = trendingIndex;
     }
 
 
     public Stream<Film> getMostPopular(int count) {
-        return filmStorage.getAllFilms().stream()
-                .sorted((a, b) -> b.obtainLikesCount() - a.obtainLikesCount())
-                .limit(count);
+        if (popularitySource == PopularitySource.DATABASE) {
+            return filmStorage.getMostPopular(count).stream();
+        }
+        if (popularitySource == PopularitySource.APPROXIMATE) {
+            if (count > approximatePopularity.getMaxCandidates()) {
+                throw new ValidationException("The count should be no more than "
+                        + approximatePopularity.getMaxCandidates());
+            }
+            return filmStorage.getByIds(approximatePopularity.getTop(count)).stream();
+        }
+        return filmStorage.getByIds(popularityIndex.getTop(count)).stream();
+    }
+
+    /**
+     * Returns the films most liked during the window, which has to be one of {@link TrendingIndex#getWindows}.
+     */
+    public List<Film> getTrending(Duration window, int count) {
+        if (count < 1) {
+            throw new ValidationException("The count should be positive");
+        }
+        return filmStorage.getByIds(trendingIndex.getTop(window, count));
+    }
+
+    /**
+     * Returns the films most often liked by the users who liked the film.
+     */
+    public List<Film> getSimilar(int filmId, int count) {
+        if (count < 1 || count > coLikeIndex.getMaxNeighbours()) {
+            throw new ValidationException("The count should be between 1 and " + coLikeIndex.getMaxNeighbours());
+        }
+        filmStorage.getById(filmId);
+        return filmStorage.getByIds(coLikeIndex.getSimilar(filmId, count));
+    }
+
+    /**
+     * Returns the films best matching the words of the query, see {@link FilmSearchIndex}.
+     */
+    public List<Film> search(String query, int count) {
+        if (query.isBlank()) {
+            throw new ValidationException("The search query should not be blank");
+        }
+        if (count < 1 || count > MAX_SEARCH_COUNT) {
+            throw new ValidationException("The count should be between 1 and " + MAX_SEARCH_COUNT);
+        }
+        return filmStorage.getByIds(searchIndex.search(query, count));
+    }
+
+    public Integer addFilm(Film film) {
+        var filmId = filmStorage.addFilm(film);
+        popularityIndex.addFilm(filmId);
+        film.setId(filmId);
+        searchIndex.addFilm(film);
+        return filmId;
+    }
+
+    public List<Integer> addFilms(List<Film> films) {
+        var filmIds = filmStorage.addFilms(films);
+        for (int i = 0; i < films.size(); i++) {
+            popularityIndex.addFilm(filmIds.get(i));
+            films.get(i).setId(filmIds.get(i));
+            searchIndex.addFilm(films.get(i));
+        }
+        return filmIds;
+    }
+
+    public void updateFilm(Film film) {
+        filmStorage.updateFilm(film);
+        searchIndex.addFilm(film);
     }
 
     public void addLike(int filmId, int userId) {
         filmStorage.addLike(filmId, userId);
+        countLike(filmId);
+        coLikeIndex.addLike(filmId, userId);
+        trendingIndex.addLike(filmId, userId);
+    }
 
+    public List<LikeResult> addLikes(List<Like> likes) {
+        var results = filmStorage.addLikes(likes);
+        results.stream()
+                .filter(result -> result.getStatus() == LikeStatus.ADDED)
+                .forEach(result -> {
+                    countLike(result.getFilmId());
+                    coLikeIndex.addLike(result.getFilmId(), result.getUserId());
+                    trendingIndex.addLike(result.getFilmId(), result.getUserId());
+                });
+        return results;
     }
 
     public void deleteLike(int filmId, int userId) {
         filmStorage.deleteLike(filmId, userId);
+        if (popularitySource == PopularitySource.APPROXIMATE) {
+            approximatePopularity.deleteLike(filmId);
+        } else {
+            popularityIndex.deleteLike(filmId);
+        }
+        coLikeIndex.deleteLike(filmId, userId);
+        trendingIndex.deleteLike(filmId, userId);
+    }
+
+    private void countLike(int filmId) {
+        if (popularitySource == PopularitySource.APPROXIMATE) {
+            approximatePopularity.addLike(filmId);
+        } else {
+            popularityIndex.addLike(filmId);
+        }
     }
 }
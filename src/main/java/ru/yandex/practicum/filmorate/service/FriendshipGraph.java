@@ -0,0 +1,248 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The friends of every user, kept in memory to suggest users to befriend without going through
+ * the friendship table twice per request. It is built from the storage on creation and then kept up to date
+ * by {@link UserService}.
+ * <p>
+ * Friends are kept in compressed sparse row form: the friend ids of all users in one sorted-per-user array
+ * and, for every user id, the offset of the user's friends in it. Since such arrays can't be changed in place,
+ * users whose friends have changed since are kept aside with arrays of their own, in a slot per user id, and
+ * the whole graph is rebuilt once their number reaches an eighth of the size of the arrays, so a change takes
+ * constant time on average, rebuilds included. Readers take the current {@link Graph} without locking: its
+ * arrays never change, the friends of a changed user are swapped for a new array at once.
+ */
+@Slf4j
+@Component
+public class FriendshipGraph {
+    private static final int[] NO_FRIENDS = new int[0];
+    // users kept aside before rebuilding, at least this many and at least an eighth of the size of the arrays
+    private static final int MIN_CHANGED_USERS = 1024;
+
+    private final UserStorage userStorage;
+    private volatile Graph graph = new Graph(new int[1], NO_FRIENDS);
+
+    public FriendshipGraph(@Qualifier("UserStorage") UserStorage userStorage) {
+        this.userStorage = userStorage;
+        reload();
+    }
+
+    /**
+     * Rebuilds the graph from the friends kept by the storage.
+     */
+    public synchronized void reload() {
+        // users come in id order, so their rows are appended one after another
+        var rows = new Rows();
+        userStorage.forEachUser(user -> {
+            var friends = user.getFriends() instanceof IntSet
+                    ? ((IntSet) user.getFriends()).toIntArray()
+                    : user.getFriends().stream().mapToInt(Integer::intValue).sorted().toArray();
+            rows.append(user.getId(), friends, 0, friends.length);
+        });
+        graph = rows.build();
+        log.debug("friendship graph has been loaded with {} users and {} friendships", rows.users, rows.size);
+    }
+
+    public void addFriend(int userId, int friendId) {
+        changeFriend(userId, friendId, true);
+    }
+
+    public void deleteFriend(int userId, int friendId) {
+        changeFriend(userId, friendId, false);
+    }
+
+    /**
+     * Returns the user's friends in ascending order.
+     */
+    public int[] getFriends(int userId) {
+        var row = new Row();
+        graph.row(userId, row);
+        return Arrays.copyOfRange(row.array, row.from, row.to);
+    }
+
+    /**
+     * Returns ids of the users the user isn't friends with but the user's friends are, the users most of
+     * the user's friends are friends with first, ties are broken by the smaller id.
+     */
+    public List<Integer> getSuggestions(int userId, int count) {
+        var current = graph;
+        var friends = new Row();
+        current.row(userId, friends);
+        var friendsOfFriend = new Row();
+        var mutualFriends = new HashMap<Integer, Integer>();
+        for (int i = friends.from; i < friends.to; i++) {
+            current.row(friends.array[i], friendsOfFriend);
+            for (int j = friendsOfFriend.from; j < friendsOfFriend.to; j++) {
+                var candidateId = friendsOfFriend.array[j];
+                if (candidateId != userId
+                        && Arrays.binarySearch(friends.array, friends.from, friends.to, candidateId) < 0) {
+                    mutualFriends.merge(candidateId, 1, Integer::sum);
+                }
+            }
+        }
+        var ranking = new ArrayList<>(mutualFriends.entrySet());
+        ranking.sort(Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+        var suggestions = new ArrayList<Integer>(Math.min(count, ranking.size()));
+        for (int i = 0; i < ranking.size() && suggestions.size() < count; i++) {
+            suggestions.add(ranking.get(i).getKey());
+        }
+        return suggestions;
+    }
+
+    private synchronized void changeFriend(int userId, int friendId, boolean add) {
+        var friends = getFriends(userId);
+        var position = Arrays.binarySearch(friends, friendId);
+        if (add == position >= 0) {
+            return;
+        }
+        int[] changedFriends;
+        if (add) {
+            position = -position - 1;
+            changedFriends = new int[friends.length + 1];
+            System.arraycopy(friends, 0, changedFriends, 0, position);
+            changedFriends[position] = friendId;
+            System.arraycopy(friends, position, changedFriends, position + 1, friends.length - position);
+        } else {
+            changedFriends = new int[friends.length - 1];
+            System.arraycopy(friends, 0, changedFriends, 0, position);
+            System.arraycopy(friends, position + 1, changedFriends, position, friends.length - position - 1);
+        }
+        var current = graph;
+        if (userId >= current.changed.length()) {
+            // a user added since the graph was built, the slots grow by doubling
+            current = current.withSlots(Math.max(userId + 1, 2 * current.changed.length()));
+        }
+        if (current.changed.getAndSet(userId, changedFriends) == null) {
+            current.changedUsers++;
+        }
+        var limit = Math.max(MIN_CHANGED_USERS, (current.offsets.length + current.friends.length) / 8);
+        graph = current.changedUsers < limit ? current : current.rebuild();
+    }
+
+    /**
+     * The friends of all users: arrays never changed once built and the slots of users changed since.
+     */
+    private static final class Graph {
+        // the friends of user u are friends[offsets[u]] to friends[offsets[u + 1] - 1]
+        private final int[] offsets;
+        private final int[] friends;
+        // the current friends of users whose friends have changed since the arrays were built, by user id
+        private final AtomicReferenceArray<int[]> changed;
+        // the number of non-empty slots, only used by writers
+        private int changedUsers;
+
+        Graph(int[] offsets, int[] friends) {
+            this(offsets, friends, new AtomicReferenceArray<>(offsets.length));
+        }
+
+        private Graph(int[] offsets, int[] friends, AtomicReferenceArray<int[]> changed) {
+            this.offsets = offsets;
+            this.friends = friends;
+            this.changed = changed;
+        }
+
+        void row(int userId, Row row) {
+            var changedFriends = userId >= 0 && userId < changed.length() ? changed.get(userId) : null;
+            if (changedFriends != null) {
+                row.set(changedFriends, 0, changedFriends.length);
+            } else if (userId < 0 || userId + 1 >= offsets.length) {
+                row.set(NO_FRIENDS, 0, 0);
+            } else {
+                row.set(friends, offsets[userId], offsets[userId + 1]);
+            }
+        }
+
+        /**
+         * Builds the same graph with the changed users' friends moved into the arrays.
+         */
+        Graph rebuild() {
+            var users = offsets.length - 1;
+            for (int userId = changed.length() - 1; userId >= users; userId--) {
+                if (changed.get(userId) != null) {
+                    users = userId + 1;
+                    break;
+                }
+            }
+            var rows = new Rows();
+            var row = new Row();
+            for (int userId = 0; userId < users; userId++) {
+                row(userId, row);
+                rows.append(userId, row.array, row.from, row.to);
+            }
+            return rows.build();
+        }
+
+        /**
+         * Builds the same graph with the given number of slots.
+         */
+        Graph withSlots(int length) {
+            var slots = new AtomicReferenceArray<int[]>(length);
+            for (int userId = 0; userId < changed.length(); userId++) {
+                slots.set(userId, changed.get(userId));
+            }
+            var graph = new Graph(offsets, friends, slots);
+            graph.changedUsers = changedUsers;
+            return graph;
+        }
+    }
+
+    /**
+     * The friends of a user: {@code array[from]} to {@code array[to - 1]}.
+     */
+    private static final class Row {
+        private int[] array;
+        private int from;
+        private int to;
+
+        void set(int[] array, int from, int to) {
+            this.array = array;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * Builds the arrays of a graph from the rows of users appended in id order.
+     */
+    private static final class Rows {
+        private int[] offsets = new int[1024];
+        private int[] friends = new int[1024];
+        private int users;
+        private int size;
+
+        void append(int userId, int[] array, int from, int to) {
+            if (userId + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, Math.max(userId + 2, 2 * offsets.length));
+            }
+            // users without a row in between have no friends
+            for (int id = users + 1; id <= userId; id++) {
+                offsets[id] = size;
+            }
+            if (size + to - from > friends.length) {
+                friends = Arrays.copyOf(friends, Math.max(size + to - from, 2 * friends.length));
+            }
+            System.arraycopy(array, from, friends, size, to - from);
+            size += to - from;
+            offsets[userId + 1] = size;
+            users = userId + 1;
+        }
+
+        Graph build() {
+            return new Graph(Arrays.copyOf(offsets, users + 1), Arrays.copyOf(friends, size));
+        }
+    }
+}
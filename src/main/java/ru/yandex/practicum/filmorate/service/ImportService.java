@@ -0,0 +1,291 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.ImportError;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Imports films and users from NDJSON bodies, an entity per line, or CSV bodies, a header line naming
+ * the columns and an entity per line after it. The body is read a chunk of lines at a time: the lines
+ * of a chunk are parsed and validated in parallel and the valid ones are inserted with one batch,
+ * so memory use depends on the chunk size and not on the size of the body. Lines that can't be
+ * imported are skipped and reported with their numbers.
+ */
+@Slf4j
+@Service
+public class ImportService {
+
+    static final int CHUNK_SIZE = 1000;
+    static final int MAX_REPORTED_ERRORS = 1000;
+    static final MediaType TEXT_CSV = MediaType.valueOf("text/csv");
+
+    private static final List<String> FILM_COLUMNS = List.of("name", "description", "releaseDate", "duration", "mpa");
+    private static final List<String> USER_COLUMNS = List.of("email", "login", "name", "birthday");
+
+    private final FilmService filmService;
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public ImportService(FilmService filmService,
+                         @Qualifier("FilmStorage") FilmStorage filmStorage,
+                         @Qualifier("UserStorage") UserStorage userStorage,
+                         ObjectMapper objectMapper) {
+        this.filmService = filmService;
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.objectMapper = objectMapper;
+    }
+
+    public ImportResult importFilms(InputStream body, MediaType contentType) throws IOException {
+        try (var reader = reader(body, contentType)) {
+            if (!TEXT_CSV.isCompatibleWith(contentType)) {
+                return importLines(reader, 1, line -> json(line, Film.class), this::validate, filmService::addFilms);
+            }
+            var columns = csvColumns(reader.readLine(), FILM_COLUMNS);
+            return importLines(reader, 2, line -> {
+                var values = csvValues(line, columns);
+                return Film.builder()
+                        .name(values.get("name"))
+                        .description(values.get("description"))
+                        .releaseDate(LocalDate.parse(required(values.get("releaseDate"), "releaseDate")))
+                        .duration(Integer.parseInt(required(values.get("duration"), "duration")))
+                        .mpa(new Mpa(Integer.valueOf(required(values.get("mpa"), "mpa")), null))
+                        .build();
+            }, this::validate, filmService::addFilms);
+        }
+    }
+
+    public ImportResult importUsers(InputStream body, MediaType contentType) throws IOException {
+        try (var reader = reader(body, contentType)) {
+            if (!TEXT_CSV.isCompatibleWith(contentType)) {
+                return importLines(reader, 1, line -> json(line, User.class), this::validate, userStorage::addUsers);
+            }
+            var columns = csvColumns(reader.readLine(), USER_COLUMNS);
+            return importLines(reader, 2, line -> {
+                var values = csvValues(line, columns);
+                return User.builder()
+                        .email(values.get("email"))
+                        .login(values.get("login"))
+                        .name(values.get("name"))
+                        .birthday(LocalDate.parse(required(values.get("birthday"), "birthday")))
+                        .build();
+            }, this::validate, userStorage::addUsers);
+        }
+    }
+
+    private void validate(Film film) {
+        required(film.getName(), "name");
+        required(film.getDescription(), "description");
+        required(film.getReleaseDate(), "releaseDate");
+        filmStorage.validate(film);
+    }
+
+    private void validate(User user) {
+        required(user.getBirthday(), "birthday");
+        userStorage.validate(user);
+    }
+
+    private <T> ImportResult importLines(BufferedReader reader, int firstLine, Function<String, T> parser,
+                                         Consumer<T> validator, Function<List<T>, List<Integer>> inserter)
+            throws IOException {
+        var result = new ImportResult(0, 0, new ArrayList<>());
+        var lines = new ArrayList<String>(CHUNK_SIZE);
+        var lineNumbers = new int[CHUNK_SIZE];
+        var lineNumber = firstLine - 1;
+        String line;
+        do {
+            line = reader.readLine();
+            lineNumber++;
+            if (line != null && !line.isBlank()) {
+                lineNumbers[lines.size()] = lineNumber;
+                lines.add(line);
+            }
+            if (lines.size() == CHUNK_SIZE || line == null && !lines.isEmpty()) {
+                importChunk(lines, lineNumbers, parser, validator, inserter, result);
+                lines.clear();
+            }
+        } while (line != null);
+        log.info("{} lines have been imported, {} have been rejected", result.getImported(), result.getRejected());
+        return result;
+    }
+
+    private <T> void importChunk(List<String> lines, int[] lineNumbers, Function<String, T> parser,
+                                 Consumer<T> validator, Function<List<T>, List<Integer>> inserter,
+                                 ImportResult result) {
+        var items = new Object[lines.size()];
+        var errors = new String[lines.size()];
+        IntStream.range(0, lines.size()).parallel().forEach(i -> {
+            try {
+                var item = parser.apply(lines.get(i));
+                if (item == null) {
+                    errors[i] = "The line should hold a single entity";
+                    return;
+                }
+                validator.accept(item);
+                items[i] = item;
+            } catch (ValidationException e) {
+                errors[i] = e.getReason();
+            } catch (IllegalArgumentException | DateTimeException e) {
+                errors[i] = e.getMessage();
+            } catch (RuntimeException e) {
+                // anything else a line may cause is its own error too, the other lines are imported anyway
+                log.debug("line {} has been rejected", lineNumbers[i], e);
+                errors[i] = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            }
+        });
+
+        var valid = new ArrayList<T>(lines.size());
+        var validLines = new ArrayList<Integer>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            if (errors[i] == null) {
+                @SuppressWarnings("unchecked")
+                var item = (T) items[i];
+                valid.add(item);
+                validLines.add(lineNumbers[i]);
+            } else {
+                reject(result, lineNumbers[i], errors[i]);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+        try {
+            inserter.apply(valid);
+            result.setImported(result.getImported() + valid.size());
+        } catch (DataAccessException e) {
+            // the batch has been rolled back, inserting the lines one by one finds the ones the database refuses
+            for (int i = 0; i < valid.size(); i++) {
+                try {
+                    inserter.apply(List.of(valid.get(i)));
+                    result.setImported(result.getImported() + 1);
+                } catch (DataAccessException lineError) {
+                    reject(result, validLines.get(i), lineError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    private static void reject(ImportResult result, int line, String message) {
+        result.setRejected(result.getRejected() + 1);
+        if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+            result.getErrors().add(new ImportError(line, message));
+        }
+    }
+
+    private <T> T json(String line, Class<T> type) {
+        try {
+            return objectMapper.readValue(line, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e.getOriginalMessage(), e);
+        }
+    }
+
+    private static BufferedReader reader(InputStream body, MediaType contentType) {
+        var charset = contentType.getCharset() == null ? StandardCharsets.UTF_8 : contentType.getCharset();
+        return new BufferedReader(new InputStreamReader(body, charset));
+    }
+
+    private static <T> T required(T value, String field) {
+        if (value == null) {
+            throw new ValidationException(field + " is missing");
+        }
+        return value;
+    }
+
+    /**
+     * Maps the columns of the CSV header to their positions, the columns may come in any order.
+     */
+    private static Map<String, Integer> csvColumns(String header, List<String> known) {
+        if (header == null) {
+            throw new ValidationException("The CSV header is missing");
+        }
+        var columns = new HashMap<String, Integer>();
+        var names = parseCsv(header);
+        for (int i = 0; i < names.size(); i++) {
+            var name = names.get(i).trim();
+            if (!known.contains(name)) {
+                throw new ValidationException("Unknown CSV column " + name + ", the columns are " + known);
+            }
+            columns.put(name, i);
+        }
+        return columns;
+    }
+
+    private static Map<String, String> csvValues(String line, Map<String, Integer> columns) {
+        var values = parseCsv(line);
+        if (values.size() != columns.size()) {
+            throw new ValidationException("Expected " + columns.size() + " values, found " + values.size());
+        }
+        var byColumn = new HashMap<String, String>();
+        columns.forEach((name, i) -> byColumn.put(name, values.get(i)));
+        return byColumn;
+    }
+
+    /**
+     * Splits a CSV line into values. A value may be enclosed in double quotes to hold commas, a double quote
+     * inside such a value is written twice. An empty unquoted value is read as null.
+     */
+    static List<String> parseCsv(String line) {
+        var values = new ArrayList<String>();
+        var value = new StringBuilder();
+        var quoted = false;
+        var wasQuoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            var c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',') {
+                values.add(value.length() == 0 && !wasQuoted ? null : value.toString());
+                value.setLength(0);
+                wasQuoted = false;
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new ValidationException("A quoted value isn't closed");
+        }
+        values.add(value.length() == 0 && !wasQuoted ? null : value.toString());
+        return values;
+    }
+}
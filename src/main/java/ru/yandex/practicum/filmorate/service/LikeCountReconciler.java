@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+/**
+ * Periodically checks that {@code films.like_count} matches the {@code likes} table and repairs it if not,
+ * then does the same for the {@link PopularityIndex} against the like counts of the storage.
+ * Drift caused by a like racing with the repair itself is picked up by the next run.
+ */
+@Slf4j
+@Component
+public class LikeCountReconciler {
+
+    private final FilmDbStorage filmDbStorage;
+    private final FilmStorage filmStorage;
+    private final PopularityIndex popularityIndex;
+
+    public LikeCountReconciler(@Qualifier("FilmDbStorage") FilmDbStorage filmDbStorage,
+                               @Qualifier("FilmStorage") FilmStorage filmStorage,
+                               PopularityIndex popularityIndex) {
+        this.filmDbStorage = filmDbStorage;
+        this.filmStorage = filmStorage;
+        this.popularityIndex = popularityIndex;
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.like-count.reconcile-delay}",
+            fixedDelayString = "${filmorate.like-count.reconcile-delay}")
+    public void reconcile() {
+        var repaired = filmDbStorage.reconcileLikeCounts();
+        if (repaired.isEmpty()) {
+            log.debug("like counts are consistent");
+        } else {
+            log.warn("like counts of films {} have drifted and have been repaired", repaired);
+        }
+        var repairedInIndex = popularityIndex.repair(filmStorage.getLikeCounts());
+        if (repairedInIndex.isEmpty()) {
+            log.debug("popularity index is consistent");
+        } else {
+            log.warn("popularity index has drifted for films {} and has been repaired", repairedInIndex);
+        }
+    }
+}
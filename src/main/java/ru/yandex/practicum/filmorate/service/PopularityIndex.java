@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ranking of films by like count. It is seeded from the storage on creation and then kept up to date
+ * by {@link FilmService}, so reading the top films doesn't touch the likes table.
+ */
+@Slf4j
+@Component
+public class PopularityIndex {
+
+    private static final Comparator<Entry> RANKING_ORDER = Comparator.comparingInt((Entry e) -> e.likes)
+            .reversed()
+            .thenComparingInt(e -> e.filmId);
+
+    private final FilmStorage filmStorage;
+    private final Map<Integer, Integer> likes = new HashMap<>();
+    private final NavigableSet<Entry> ranking = new TreeSet<>(RANKING_ORDER);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public PopularityIndex(@Qualifier("FilmStorage") FilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+        reload();
+    }
+
+    /**
+     * Rebuilds the ranking from the like counts kept by the storage. The counts are read under the lock, so likes
+     * counted while they are read wait and are applied on top of them instead of being lost.
+     */
+    public void reload() {
+        Map<Integer, Integer> counts;
+        lock.writeLock().lock();
+        try {
+            counts = filmStorage.getLikeCounts();
+            likes.clear();
+            ranking.clear();
+            counts.forEach((filmId, count) -> {
+                likes.put(filmId, count);
+                ranking.add(new Entry(filmId, count));
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("popularity index has been loaded with {} films", counts.size());
+    }
+
+    public void addFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            if (likes.putIfAbsent(filmId, 0) == null) {
+                ranking.add(new Entry(filmId, 0));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addLike(int filmId) {
+        change(filmId, 1);
+    }
+
+    public void deleteLike(int filmId) {
+        change(filmId, -1);
+    }
+
+    /**
+     * Sets the likes of the films whose count differs from the given one. A like that has reached the storage
+     * but not yet the index shows up as a difference too, it is put right by the next repair.
+     *
+     * @return ids of the repaired films
+     */
+    public List<Integer> repair(Map<Integer, Integer> counts) {
+        var repaired = new ArrayList<Integer>();
+        lock.writeLock().lock();
+        try {
+            counts.forEach((filmId, count) -> {
+                var oldLikes = likes.get(filmId);
+                if (!count.equals(oldLikes)) {
+                    set(filmId, oldLikes, count);
+                    repaired.add(filmId);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return repaired;
+    }
+
+    public int getLikes(int filmId) {
+        lock.readLock().lock();
+        try {
+            return likes.getOrDefault(filmId, 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns ids of the most liked films, ties are broken by the smaller id.
+     */
+    public List<Integer> getTop(int count) {
+        lock.readLock().lock();
+        try {
+            var top = new ArrayList<Integer>(Math.min(count, ranking.size()));
+            var iterator = ranking.iterator();
+            while (top.size() < count && iterator.hasNext()) {
+                top.add(iterator.next().filmId);
+            }
+            return top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void change(int filmId, int delta) {
+        lock.writeLock().lock();
+        try {
+            var oldLikes = likes.get(filmId);
+            set(filmId, oldLikes, (oldLikes == null ? 0 : oldLikes) + delta);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void set(int filmId, Integer oldLikes, int newLikes) {
+        if (oldLikes != null) {
+            ranking.remove(new Entry(filmId, oldLikes));
+        }
+        likes.put(filmId, newLikes);
+        ranking.add(new Entry(filmId, newLikes));
+    }
+
+    private static class Entry {
+        private final int filmId;
+        private final int likes;
+
+        Entry(int filmId, int likes) {
+            this.filmId = filmId;
+            this.likes = likes;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.service;
+
+/**
+ * Where {@link FilmService#getMostPopular(int)} takes the ranking from.
+ */
+public enum PopularitySource {
+    /**
+     * The in-process {@link PopularityIndex}.
+     */
+    INDEX,
+    /**
+     * The storage, which orders films by the maintained like count.
+     */
+    DATABASE,
+    /**
+     * The {@link ApproximatePopularity} sketch, which counts likes without locking. {@link PopularityIndex}
+     * isn't kept up to date with likes then.
+     */
+    APPROXIMATE
+}
@@ -0,0 +1,316 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ranking of films by likes added during the last hour, day and so on, the windows are configured.
+ * It is seeded with the likes the storage has added during the longest window and then kept up to date
+ * by {@link FilmService}.
+ * <p>
+ * Time is split into buckets, a minute long by default. The likes of the buckets within the longest window
+ * are kept in a ring, and every window keeps a ranking of its own, so reading the top films of a window costs
+ * as much as the number of films read. When a bucket gets older than a window, the likes it holds are taken off
+ * the window's ranking and, once it is older than the longest window, the bucket is emptied and reused: a bucket
+ * at a time, so the work is spread over time instead of piling up. Likes removed while in the ring are taken off
+ * the rankings at once.
+ */
+@Slf4j
+@Component
+public class TrendingIndex {
+
+    private static final long REMOVED = -1;
+    private static final int INITIAL_BUCKET_CAPACITY = 16;
+
+    private static final Comparator<Entry> RANKING_ORDER = Comparator.comparingInt((Entry e) -> e.likes)
+            .reversed()
+            .thenComparingInt(e -> e.filmId);
+
+    private final FilmStorage filmStorage;
+    private final Clock clock;
+    private final long bucketMillis;
+    private final List<Duration> windows;
+    private final Window[] rankings;
+    // likes of the last buckets, the bucket with number n is kept at n % buckets.length
+    private final long[][] buckets;
+    private final int[] bucketSizes;
+    // where every like in the ring is kept
+    private final Map<Long, Position> positions = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile long currentBucket;
+
+    @Autowired
+    public TrendingIndex(@Qualifier("FilmStorage") FilmStorage filmStorage,
+                         @Value("${filmorate.trending.bucket}") Duration bucket,
+                         @Value("${filmorate.trending.windows}") List<Duration> windows) {
+        this(filmStorage, bucket, windows, Clock.systemDefaultZone());
+    }
+
+    TrendingIndex(FilmStorage filmStorage, Duration bucket, List<Duration> windows, Clock clock) {
+        this.filmStorage = filmStorage;
+        this.clock = clock;
+        this.bucketMillis = bucket.toMillis();
+        this.windows = List.copyOf(windows);
+        rankings = new Window[windows.size()];
+        var longest = 0;
+        for (int i = 0; i < rankings.length; i++) {
+            if (windows.get(i).toMillis() % bucketMillis != 0) {
+                throw new IllegalArgumentException("The window " + windows.get(i) + " isn't made of whole buckets");
+            }
+            rankings[i] = new Window((int) (windows.get(i).toMillis() / bucketMillis));
+            longest = Math.max(longest, rankings[i].buckets);
+        }
+        buckets = new long[longest][];
+        bucketSizes = new int[longest];
+        reload();
+    }
+
+    /**
+     * Rebuilds the rankings from the likes the storage has added during the longest window.
+     */
+    public void reload() {
+        lock.writeLock().lock();
+        try {
+            clear();
+            currentBucket = clock.millis() / bucketMillis;
+            var since = (currentBucket - buckets.length + 1) * bucketMillis;
+            var count = new int[1];
+            filmStorage.forEachLikeSince(toLocalDateTime(since), like -> {
+                // a like from a clock running ahead is counted as a like of now
+                var bucket = Math.min(toMillis(like.getCreatedAt()) / bucketMillis, currentBucket);
+                add(like.getFilmId(), like.getUserId(), bucket);
+                count[0]++;
+            });
+            log.debug("trending index has been loaded with {} likes", count[0]);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Duration> getWindows() {
+        return windows;
+    }
+
+    public void addLike(int filmId, int userId) {
+        lock.writeLock().lock();
+        try {
+            advance();
+            add(filmId, userId, currentBucket);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void deleteLike(int filmId, int userId) {
+        lock.writeLock().lock();
+        try {
+            advance();
+            var position = positions.remove(key(filmId, userId));
+            if (position == null) {
+                return;
+            }
+            buckets[slot(position.bucket)][position.index] = REMOVED;
+            for (var window : rankings) {
+                if (window.contains(position.bucket, currentBucket)) {
+                    window.change(filmId, -1);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns ids of the films most liked during the window, ties are broken by the smaller id.
+     */
+    public List<Integer> getTop(Duration window, int count) {
+        var i = windows.indexOf(window);
+        if (i < 0) {
+            throw new ValidationException("The window should be one of " + windows);
+        }
+        if (currentBucket < clock.millis() / bucketMillis) {
+            expire();
+        }
+        lock.readLock().lock();
+        try {
+            var top = new ArrayList<Integer>(Math.min(count, rankings[i].ranking.size()));
+            var iterator = rankings[i].ranking.iterator();
+            while (top.size() < count && iterator.hasNext()) {
+                top.add(iterator.next().filmId);
+            }
+            return top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the buckets that have got too old off the rankings, runs every bucket so that
+     * no more than one bucket has to be expired at a time.
+     */
+    @Scheduled(initialDelayString = "${filmorate.trending.bucket}", fixedDelayString = "${filmorate.trending.bucket}")
+    public void expire() {
+        lock.writeLock().lock();
+        try {
+            advance();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves to the bucket of the current time, must be called with the write lock held.
+     */
+    private void advance() {
+        var now = clock.millis() / bucketMillis;
+        if (now - currentBucket >= buckets.length) {
+            // nothing kept is within the windows any more
+            clear();
+            currentBucket = now;
+            return;
+        }
+        while (currentBucket < now) {
+            currentBucket++;
+            for (var window : rankings) {
+                var leaving = currentBucket - window.buckets;
+                var slot = slot(leaving);
+                for (int i = 0; i < bucketSizes[slot]; i++) {
+                    if (buckets[slot][i] != REMOVED) {
+                        window.change(filmId(buckets[slot][i]), -1);
+                    }
+                }
+            }
+            // the slot of the bucket that has left the longest window is the slot of the current one
+            var slot = slot(currentBucket);
+            for (int i = 0; i < bucketSizes[slot]; i++) {
+                if (buckets[slot][i] != REMOVED) {
+                    positions.remove(buckets[slot][i]);
+                }
+            }
+            bucketSizes[slot] = 0;
+            if (buckets[slot] != null && buckets[slot].length > INITIAL_BUCKET_CAPACITY) {
+                buckets[slot] = null;
+            }
+        }
+    }
+
+    private void add(int filmId, int userId, long bucket) {
+        var key = key(filmId, userId);
+        if (bucket <= currentBucket - buckets.length || positions.containsKey(key)) {
+            return;
+        }
+        var slot = slot(bucket);
+        if (buckets[slot] == null) {
+            buckets[slot] = new long[INITIAL_BUCKET_CAPACITY];
+        } else if (bucketSizes[slot] == buckets[slot].length) {
+            buckets[slot] = Arrays.copyOf(buckets[slot], 2 * bucketSizes[slot]);
+        }
+        buckets[slot][bucketSizes[slot]] = key;
+        positions.put(key, new Position(bucket, bucketSizes[slot]));
+        bucketSizes[slot]++;
+        for (var window : rankings) {
+            if (window.contains(bucket, currentBucket)) {
+                window.change(filmId, 1);
+            }
+        }
+    }
+
+    private void clear() {
+        for (var window : rankings) {
+            window.likes.clear();
+            window.ranking.clear();
+        }
+        Arrays.fill(buckets, null);
+        Arrays.fill(bucketSizes, 0);
+        positions.clear();
+    }
+
+    private int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) buckets.length);
+    }
+
+    private LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), clock.getZone());
+    }
+
+    private long toMillis(LocalDateTime time) {
+        return time.atZone(clock.getZone()).toInstant().toEpochMilli();
+    }
+
+    private static long key(int filmId, int userId) {
+        return (long) filmId << 32 | userId & 0xffffffffL;
+    }
+
+    private static int filmId(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static class Position {
+        private final long bucket;
+        private final int index;
+
+        Position(long bucket, int index) {
+            this.bucket = bucket;
+            this.index = index;
+        }
+    }
+
+    private static class Window {
+        private final int buckets;
+        private final Map<Integer, Integer> likes = new HashMap<>();
+        private final NavigableSet<Entry> ranking = new TreeSet<>(RANKING_ORDER);
+
+        Window(int buckets) {
+            this.buckets = buckets;
+        }
+
+        boolean contains(long bucket, long currentBucket) {
+            return bucket > currentBucket - buckets;
+        }
+
+        void change(int filmId, int delta) {
+            var oldLikes = likes.getOrDefault(filmId, 0);
+            if (oldLikes > 0) {
+                ranking.remove(new Entry(filmId, oldLikes));
+            }
+            var newLikes = oldLikes + delta;
+            if (newLikes > 0) {
+                likes.put(filmId, newLikes);
+                ranking.add(new Entry(filmId, newLikes));
+            } else {
+                likes.remove(filmId);
+            }
+        }
+    }
+
+    private static class Entry {
+        private final int filmId;
+        private final int likes;
+
+        Entry(int filmId, int likes) {
+            this.filmId = filmId;
+            this.likes = likes;
+        }
+    }
+}
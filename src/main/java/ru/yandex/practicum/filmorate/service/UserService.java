@@ -3,30 +3,78 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.IntSet;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 @Slf4j
 @Service
 public class UserService {
 
+    static final int MAX_SUGGESTIONS_COUNT = 100;
+    private static final int LOCK_STRIPES = 64;
+
     private final UserStorage userStorage;
+    private final FriendshipGraph friendshipGraph;
+    // a change of a friendship and the change of the graph that follows it are made under the lock of the pair,
+    // so that concurrent changes of the same pair reach the graph in the order they have reached the storage
+    private final Object[] locks = new Object[LOCK_STRIPES];
 
-    public UserService(@Qualifier("UserDbStorage") UserStorage userStorage) {
+    public UserService(@Qualifier("UserStorage") UserStorage userStorage, FriendshipGraph friendshipGraph) {
         this.userStorage = userStorage;
+        this.friendshipGraph = friendshipGraph;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public void addFriend(int userId, int friendId) {
+        synchronized (lockFor(userId, friendId)) {
+            userStorage.addFriend(userId, friendId);
+            friendshipGraph.addFriend(userId, friendId);
+        }
+    }
+
+    public void deleteFriend(int userId, int friendId) {
+        synchronized (lockFor(userId, friendId)) {
+            userStorage.deleteFriend(userId, friendId);
+            friendshipGraph.deleteFriend(userId, friendId);
+        }
+    }
+
+    /**
+     * Returns the users the user may know, see {@link FriendshipGraph#getSuggestions}.
+     */
+    public List<User> getSuggestions(int userId, int count) {
+        if (count < 1 || count > MAX_SUGGESTIONS_COUNT) {
+            throw new ValidationException("The count should be between 1 and " + MAX_SUGGESTIONS_COUNT);
+        }
+        userStorage.getById(userId);
+        return userStorage.getByIds(friendshipGraph.getSuggestions(userId, count));
     }
 
+    /**
+     * Returns ids of the friends the users have in common. Friends kept in {@link IntSet}s, as the storages
+     * keep them, are intersected chunk by chunk without boxing, other sets by looking up the friends of
+     * the user with fewer friends among the friends of the other one.
+     */
     public Collection<Integer> getMutualFriends(User user, User user2) {
-        Collection<Integer> mutualFriends = new HashSet<>();
-        for (int u : user.getFriends()) {
-            for (int u2 : user2.getFriends()) {
-                if (u == u2) {
-                    mutualFriends.add(u);
-                }
+        var friends = user.getFriends();
+        var friends2 = user2.getFriends();
+        if (friends instanceof IntSet && friends2 instanceof IntSet) {
+            return IntSet.intersection((IntSet) friends, (IntSet) friends2);
+        }
+        var fewer = friends.size() <= friends2.size() ? friends : friends2;
+        var more = fewer == friends ? friends2 : friends;
+        var mutualFriends = new IntSet();
+        for (int friendId : fewer) {
+            if (more.contains(friendId)) {
+                mutualFriends.addInt(friendId);
             }
         }
         return mutualFriends;
@@ -39,4 +87,8 @@ public class UserService {
         }
         user.getFriends().remove(user2.getId());
     }
+
+    private Object lockFor(int userId, int friendId) {
+        return locks[Math.floorMod(31 * userId + friendId, LOCK_STRIPES)];
+    }
 }
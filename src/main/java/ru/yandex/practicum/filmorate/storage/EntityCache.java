@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Entities by id, at most {@code maxSize} of them: when full, the least recently read entity is dropped.
+ * An entity cached longer than the time to live is loaded again. The cache keeps its own copies, callers
+ * are free to change what they get.
+ * <p>
+ * A value loaded while an invalidation was happening is returned but not cached, because it may have been
+ * read before the change that caused the invalidation.
+ */
+public class EntityCache<T> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final UnaryOperator<T> copier;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    // guarded by this
+    private final LinkedHashMap<Integer, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Entry<T>> eldest) {
+            if (size() <= maxSize) {
+                return false;
+            }
+            evictions.increment();
+            return true;
+        }
+    };
+    // guarded by this
+    private long invalidations;
+
+    public EntityCache(int maxSize, Duration ttl, UnaryOperator<T> copier) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.copier = copier;
+    }
+
+    /**
+     * Returns the cached entity, or loads it with the loader and caches it. Exceptions of the loader are passed
+     * to the caller and nothing is cached.
+     */
+    public T get(int id, IntFunction<T> loader) {
+        T cached = null;
+        long stamp;
+        synchronized (this) {
+            stamp = invalidations;
+            var entry = entries.get(id);
+            if (entry != null && System.nanoTime() - entry.loadedAt < ttlNanos) {
+                hits.increment();
+                cached = entry.value;
+            } else {
+                if (entry != null) {
+                    entries.remove(id);
+                    evictions.increment();
+                }
+                misses.increment();
+            }
+        }
+        if (cached != null) {
+            return copier.apply(cached);
+        }
+        var value = loader.apply(id);
+        var copy = copier.apply(value);
+        synchronized (this) {
+            if (invalidations == stamp) {
+                entries.put(id, new Entry<>(copy, System.nanoTime()));
+            }
+        }
+        return value;
+    }
+
+    public synchronized void invalidate(int id) {
+        invalidations++;
+        entries.remove(id);
+    }
+
+    public synchronized void invalidateAll() {
+        invalidations++;
+        entries.clear();
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+
+    private static class Entry<T> {
+        private final T value;
+        private final long loadedAt;
+
+        Entry(T value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.ExportRecord;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendshipRequest;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+/**
+ * Reads the whole database for an export: users, films, likes and friendships, a table after another.
+ * Rows are handed over while their result set is being read, so no table is collected in memory; films
+ * and users come without their likes and friends, those follow as rows of their own.
+ * <p>
+ * If {@code filmorate.likes.log.enabled} is set, the likes table is left behind by the like log, so the likes
+ * are taken from the log instead. If {@code filmorate.storage} is {@link StorageMode#MEMORY}, everything is
+ * taken from the in-memory storages.
+ */
+@Repository
+public class ExportDbStorage {
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MpaStorage mpaStorage;
+    private final FilmStorage likeLogFilmStorage;
+    private final boolean likeLog;
+    private final FilmStorage inMemoryFilmStorage;
+    private final UserStorage inMemoryUserStorage;
+    private final StorageMode storageMode;
+
+    public ExportDbStorage(JdbcTemplate jdbcTemplate, @Qualifier("MpaDbStorage") MpaStorage mpaStorage,
+                           @Lazy @Qualifier("LikeLogFilmStorage") FilmStorage likeLogFilmStorage,
+                           @Value("${filmorate.likes.log.enabled}") boolean likeLog,
+                           @Qualifier("InMemoryFilmStorage") FilmStorage inMemoryFilmStorage,
+                           @Qualifier("InMemoryUserStorage") UserStorage inMemoryUserStorage,
+                           @Value("${filmorate.storage}") StorageMode storageMode) {
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.mpaStorage = mpaStorage;
+        this.likeLogFilmStorage = likeLogFilmStorage;
+        this.likeLog = likeLog;
+        this.inMemoryFilmStorage = inMemoryFilmStorage;
+        this.inMemoryUserStorage = inMemoryUserStorage;
+        this.storageMode = storageMode;
+    }
+
+    /**
+     * All the tables are read in one read-only transaction. H2 gives a serializable transaction a snapshot
+     * of the whole database, so rows committed while the export runs don't show up in any of the tables.
+     * The like log isn't part of that snapshot, its likes of users and films that haven't been exported are
+     * skipped.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.SERIALIZABLE)
+    public void export(Consumer<ExportRecord> action) {
+        if (storageMode == StorageMode.MEMORY) {
+            exportInMemory(action);
+            return;
+        }
+        var userIds = new IntSet();
+        var filmIds = new IntSet();
+        jdbcTemplate.query("select * from users order by id", (RowCallbackHandler) rs -> {
+            if (likeLog) {
+                userIds.addInt(rs.getInt("id"));
+            }
+            action.accept(ExportRecord.builder()
+                    .user(User.builder()
+                            .id(rs.getInt("id"))
+                            .email(rs.getString("email"))
+                            .login(rs.getString("login"))
+                            .name(rs.getString("name"))
+                            .birthday(rs.getDate("birthday").toLocalDate())
+                            .build())
+                    .build());
+        });
+        jdbcTemplate.query("select * from films order by id", (RowCallbackHandler) rs -> {
+            if (likeLog) {
+                filmIds.addInt(rs.getInt("id"));
+            }
+            action.accept(ExportRecord.builder()
+                    .film(Film.builder()
+                            .id(rs.getInt("id"))
+                            .name(rs.getString("name"))
+                            .description(rs.getString("description"))
+                            .releaseDate(rs.getDate("release_date").toLocalDate())
+                            .duration(rs.getInt("duration"))
+                            .mpa(mpaStorage.getById(rs.getInt("mpa_id")))
+                            .build())
+                    .build());
+        });
+        if (likeLog) {
+            likeLogFilmStorage.forEachLikeSince(LocalDateTime.MIN, like -> {
+                if (filmIds.containsInt(like.getFilmId()) && userIds.containsInt(like.getUserId())) {
+                    action.accept(ExportRecord.builder().like(like).build());
+                }
+            });
+        } else {
+            jdbcTemplate.query("select * from likes order by film_id, user_id", (RowCallbackHandler) rs ->
+                    action.accept(ExportRecord.builder()
+                            .like(new Like(rs.getInt("film_id"), rs.getInt("user_id"),
+                                    rs.getTimestamp("created_at").toLocalDateTime()))
+                            .build()));
+        }
+        jdbcTemplate.query("select from_id, to_id from friendship_requests order by from_id, to_id",
+                (RowCallbackHandler) rs -> action.accept(ExportRecord.builder()
+                        .friendship(new FriendshipRequest(rs.getInt("from_id"), rs.getInt("to_id")))
+                        .build()));
+    }
+
+    /**
+     * The in-memory storages have no snapshot to read from, users and films are read one after another while
+     * they keep changing, so likes and friendships of users and films that haven't been exported are skipped.
+     */
+    private void exportInMemory(Consumer<ExportRecord> action) {
+        var userIds = new IntSet();
+        var filmIds = new IntSet();
+        inMemoryUserStorage.forEachUser(user -> {
+            userIds.addInt(user.getId());
+            user.setFriends(null);
+            action.accept(ExportRecord.builder().user(user).build());
+        });
+        inMemoryFilmStorage.forEachFilm(film -> {
+            filmIds.addInt(film.getId());
+            film.setLikes(null);
+            action.accept(ExportRecord.builder().film(film).build());
+        });
+        inMemoryFilmStorage.forEachFilm(film -> film.getLikes().stream()
+                .filter(userId -> filmIds.containsInt(film.getId()) && userIds.containsInt(userId))
+                .sorted()
+                .forEach(userId -> action.accept(ExportRecord.builder()
+                        .like(new Like(film.getId(), userId))
+                        .build())));
+        inMemoryUserStorage.forEachUser(user -> user.getFriends().stream()
+                .filter(friendId -> userIds.containsInt(user.getId()) && userIds.containsInt(friendId))
+                .sorted()
+                .forEach(friendId -> action.accept(ExportRecord.builder()
+                        .friendship(new FriendshipRequest(user.getId(), friendId))
+                        .build())));
+    }
+}
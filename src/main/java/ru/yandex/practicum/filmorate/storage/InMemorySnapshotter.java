@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Saves the in-memory storages to a binary snapshot file periodically and on shutdown, and restores them
+ * from it on startup, so a restart doesn't lose them. A snapshot is written to a temporary file first
+ * and moved over the previous one once complete, a crash while writing leaves the previous snapshot intact.
+ * <p>
+ * The storages keep serving requests while a snapshot is written, users are written before films, so a like
+ * or a friendship added in the meantime may refer to a user missing from the snapshot. Such likes and friends
+ * are dropped on restore.
+ * <p>
+ * The in-memory storages are only used if {@code filmorate.storage} is {@link StorageMode#MEMORY}, so enabling
+ * snapshots in any other mode is refused.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.snapshot.enabled", havingValue = "true")
+public class InMemorySnapshotter {
+    private static final int MAGIC = 0x464c534e;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryUserStorage userStorage;
+    private final Path path;
+
+    public InMemorySnapshotter(@Qualifier("InMemoryFilmStorage") InMemoryFilmStorage filmStorage,
+                               @Qualifier("InMemoryUserStorage") InMemoryUserStorage userStorage,
+                               @Value("${filmorate.snapshot.path}") Path path,
+                               @Value("${filmorate.storage}") StorageMode storageMode) {
+        if (storageMode != StorageMode.MEMORY) {
+            throw new IllegalArgumentException("filmorate.snapshot.enabled can only be set with "
+                    + "filmorate.storage=memory, the snapshot is taken of the in-memory storages");
+        }
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.path = path;
+    }
+
+    /**
+     * Restores the storages from the snapshot file if there is one.
+     */
+    @PostConstruct
+    public void restore() {
+        if (Files.notExists(path)) {
+            log.info("there is no snapshot {}, the in-memory storages start empty", path);
+            return;
+        }
+        var start = System.nanoTime();
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(path + " is not a snapshot");
+            }
+            var users = userStorage.readSnapshot(in);
+            var films = filmStorage.readSnapshot(in);
+            log.info("{} users and {} films have been restored from {} in {} ms", users, films, path,
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException("can't restore the snapshot " + path, e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.snapshot.interval}",
+            fixedDelayString = "${filmorate.snapshot.interval}")
+    public synchronized void snapshot() {
+        var start = System.nanoTime();
+        var written = path.resolveSibling(path.getFileName() + ".writing");
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(written),
+                    BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                userStorage.writeSnapshot(out);
+                filmStorage.writeSnapshot(out);
+            }
+            Files.move(written, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("the snapshot {} has been written in {} ms", path, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException("can't write the snapshot " + path, e);
+        }
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        snapshot();
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.IntSet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.function.IntPredicate;
+
+/**
+ * Reads and writes the values the in-memory storages are made of in snapshots. Strings and dates may be null.
+ */
+public final class Snapshots {
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private Snapshots() {
+    }
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        var length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        var bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void writeDate(DataOutput out, LocalDate value) throws IOException {
+        out.writeLong(value == null ? NO_DATE : value.toEpochDay());
+    }
+
+    public static LocalDate readDate(DataInput in) throws IOException {
+        var epochDay = in.readLong();
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    public static void writeInts(DataOutput out, IntSet values) throws IOException {
+        out.writeInt(values.size());
+        for (var iterator = values.intIterator(); iterator.hasNext(); ) {
+            out.writeInt(iterator.nextInt());
+        }
+    }
+
+    public static IntSet readInts(DataInput in) throws IOException {
+        return readInts(in, value -> true);
+    }
+
+    /**
+     * Same as {@link #readInts(DataInput)}, but only keeps the values {@code keep} accepts.
+     */
+    public static IntSet readInts(DataInput in, IntPredicate keep) throws IOException {
+        var values = new IntSet();
+        for (int i = in.readInt(); i > 0; i--) {
+            var value = in.readInt();
+            if (keep.test(value)) {
+                values.addInt(value);
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.storage;
+
+/**
+ * Where films and users are kept, set by {@code filmorate.storage}.
+ */
+public enum StorageMode {
+    /**
+     * The database. The MPA rates are kept there in either mode.
+     */
+    DATABASE,
+    /**
+     * {@link ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage} and
+     * {@link ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage}, which lose everything on restart
+     * unless {@code filmorate.snapshot.enabled} is set.
+     */
+    MEMORY
+}
@@ -0,0 +1,185 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.storage.CacheStats;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Serves {@link #getById} from a bounded cache. Every change of a film through this storage drops the film
+ * from the cache, changes made around it are picked up once the cached film expires.
+ */
+public class CachingFilmStorage implements FilmStorage, AutoCloseable {
+
+    private final FilmStorage delegate;
+    private final EntityCache<Film> cache;
+
+    public CachingFilmStorage(FilmStorage delegate, int maxSize, Duration ttl) {
+        this.delegate = delegate;
+        this.cache = new EntityCache<>(maxSize, ttl, CachingFilmStorage::copy);
+    }
+
+    @Override
+    public Collection<Film> getAllFilms() {
+        return delegate.getAllFilms();
+    }
+
+    @Override
+    public Collection<Film> getAllFilms(boolean withLikes) {
+        return delegate.getAllFilms(withLikes);
+    }
+
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        return delegate.getFilmsPage(afterId, limit);
+    }
+
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit, boolean withLikes) {
+        return delegate.getFilmsPage(afterId, limit, withLikes);
+    }
+
+    @Override
+    public void forEachFilm(Consumer<Film> action) {
+        delegate.forEachFilm(action);
+    }
+
+    @Override
+    public Integer addFilm(Film film) {
+        return delegate.addFilm(film);
+    }
+
+    @Override
+    public List<Integer> addFilms(List<Film> films) {
+        return delegate.addFilms(films);
+    }
+
+    @Override
+    public void validate(Film film) {
+        delegate.validate(film);
+    }
+
+    @Override
+    public void updateFilm(Film film) {
+        try {
+            delegate.updateFilm(film);
+        } finally {
+            cache.invalidate(film.getId());
+        }
+    }
+
+    @Override
+    public Film getById(int filmId) {
+        return cache.get(filmId, delegate::getById);
+    }
+
+    /**
+     * Films without likes aren't cached, only the whole film is.
+     */
+    @Override
+    public Film getById(int filmId, boolean withLikes) {
+        return withLikes ? getById(filmId) : delegate.getById(filmId, false);
+    }
+
+    @Override
+    public void addLike(int filmId, int userId) {
+        try {
+            delegate.addLike(filmId, userId);
+        } finally {
+            cache.invalidate(filmId);
+        }
+    }
+
+    @Override
+    public void deleteLike(int filmId, int userId) {
+        try {
+            delegate.deleteLike(filmId, userId);
+        } finally {
+            cache.invalidate(filmId);
+        }
+    }
+
+    @Override
+    public List<LikeResult> addLikes(List<Like> likes) {
+        var results = delegate.addLikes(likes);
+        results.stream()
+                .filter(result -> result.getStatus() == LikeStatus.ADDED)
+                .forEach(result -> cache.invalidate(result.getFilmId()));
+        return results;
+    }
+
+    @Override
+    public void deleteLikes(List<Like> likes) {
+        try {
+            delegate.deleteLikes(likes);
+        } finally {
+            likes.forEach(like -> cache.invalidate(like.getFilmId()));
+        }
+    }
+
+    @Override
+    public boolean hasLike(int filmId, int userId) {
+        return delegate.hasLike(filmId, userId);
+    }
+
+    @Override
+    public List<Film> getByIds(List<Integer> filmIds) {
+        return delegate.getByIds(filmIds);
+    }
+
+    @Override
+    public List<Film> getByIds(List<Integer> filmIds, boolean withLikes) {
+        return delegate.getByIds(filmIds, withLikes);
+    }
+
+    @Override
+    public List<Film> getMostPopular(int count) {
+        return delegate.getMostPopular(count);
+    }
+
+    @Override
+    public Map<Integer, Integer> getLikeCounts() {
+        return delegate.getLikeCounts();
+    }
+
+    @Override
+    public void forEachLikeSince(LocalDateTime since, Consumer<Like> action) {
+        delegate.forEachLikeSince(since, action);
+    }
+
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * Closes the underlying storage if it needs closing, since Spring only knows about this one.
+     */
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable) {
+            ((AutoCloseable) delegate).close();
+        }
+    }
+
+    private static Film copy(Film film) {
+        return Film.builder()
+                .id(film.getId())
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .mpa(film.getMpa())
+                .likes(film.getLikes() == null ? null : new IntSet(film.getLikes()))
+                .build();
+    }
+}
@@ -3,23 +3,33 @@ package ru.yandex.practicum.filmorate.storage.film;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
 
 import javax.validation.Valid;
+import java.sql.Connection;
 import java.sql.Date;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.sql.Statement;
 import java.time.LocalDate;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.NoSuchElementException;
-import java.util.Set;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Repository
@@ -27,22 +37,37 @@ import java.util.Set;
 public class FilmDbStorage implements FilmStorage {
 
 
+    private static final String SELECT_FILMS = "select f.* from films f";
+
+    private static final String UPDATE_LIKE_COUNT = "update films set like_count = like_count + ? where id = ?";
+
     private final JdbcTemplate jdbcTemplate;
+    private final MpaStorage mpaStorage;
 
     @Autowired
-    public FilmDbStorage(JdbcTemplate jdbcTemplate) {
+    public FilmDbStorage(JdbcTemplate jdbcTemplate, @Qualifier("MpaDbStorage") MpaStorage mpaStorage) {
         this.jdbcTemplate = jdbcTemplate;
+        this.mpaStorage = mpaStorage;
     }
 
     public Collection<Film> getAllFilms() {
-        return jdbcTemplate.query("select * from films", this::mapRowToFilm);
+        return getAllFilms(true);
+    }
+
+    @Override
+    public Collection<Film> getAllFilms(boolean withLikes) {
+        var films = jdbcTemplate.query(SELECT_FILMS + " order by f.id", this::mapRowToFilm);
+        if (!withLikes) {
+            return films;
+        }
+        var likes = loadAllLikes();
+        films.forEach(film -> film.setLikes(likes.getOrDefault(film.getId(), new IntSet())));
+        return films;
     }
 
     public Integer addFilm(@Valid Film film) {
         validate(film);
         final String sqlQuery = "insert into films(name, description, duration, release_date, mpa_id) values (?, ?, ?, ?, ?)";
-        System.out.println(film.getReleaseDate());
-        System.out.println(Date.valueOf(film.getReleaseDate()));
         var keyHolder = new GeneratedKeyHolder();
         jdbcTemplate.update(connection -> {
             var preparedStatement = connection.prepareStatement(sqlQuery, Statement.RETURN_GENERATED_KEYS);
@@ -57,6 +82,32 @@ public class FilmDbStorage implements FilmStorage {
         return (Integer) keyHolder.getKey();
     }
 
+    @Override
+    @Transactional
+    public List<Integer> addFilms(List<Film> films) {
+        final String sql = "insert into films(name, description, duration, release_date, mpa_id) values (?, ?, ?, ?, ?)";
+        return jdbcTemplate.execute((ConnectionCallback<List<Integer>>) connection -> {
+            try (var preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (var film : films) {
+                    preparedStatement.setString(1, film.getName());
+                    preparedStatement.setString(2, film.getDescription());
+                    preparedStatement.setInt(3, film.getDuration());
+                    preparedStatement.setDate(4, Date.valueOf(film.getReleaseDate()));
+                    preparedStatement.setInt(5, film.getMpa().getId());
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+                var ids = new ArrayList<Integer>();
+                try (var keys = preparedStatement.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.add(keys.getInt(1));
+                    }
+                }
+                return ids;
+            }
+        });
+    }
+
 
     public void updateFilm(Film film) {
         getById(film.getId());
@@ -76,17 +127,29 @@ public class FilmDbStorage implements FilmStorage {
 
     @Override
     public Film getById(int filmId) {
-        final String sql = "select * from films where id = ?";
-        return jdbcTemplate.queryForObject(sql, this::mapRowToFilm, filmId);
+        return getById(filmId, true);
     }
 
     @Override
+    public Film getById(int filmId, boolean withLikes) {
+        final String sql = SELECT_FILMS + " where f.id = ?";
+        var film = jdbcTemplate.queryForObject(sql, this::mapRowToFilm, filmId);
+        if (withLikes) {
+            film.setLikes(getLikes(filmId));
+        }
+        return film;
+    }
+
+    @Override
+    @Transactional
     public void addLike(int filmId, int userId) {
         final String sql = "insert into likes (film_id, user_id) values (?, ?)";
         jdbcTemplate.update(sql, filmId, userId);
+        jdbcTemplate.update(UPDATE_LIKE_COUNT, 1, filmId);
     }
 
     @Override
+    @Transactional
     public void deleteLike(int filmId, int userId) {
         final String sql = "delete from likes where film_id = ? and user_id  = ?";
         var rowsAffected = jdbcTemplate.update(sql,
@@ -94,42 +157,274 @@ public class FilmDbStorage implements FilmStorage {
         if (rowsAffected != 1) {
             throw new NoSuchElementException();
         }
+        jdbcTemplate.update(UPDATE_LIKE_COUNT, -1, filmId);
     }
 
-    private Film mapRowToFilm(ResultSet resultSet, int i) throws SQLException {
-        var filmId = resultSet.getInt("id");
-        var mpaId = resultSet.getInt("mpa_id");
+    @Override
+    @Transactional
+    public List<LikeResult> addLikes(List<Like> likes) {
+        if (likes.isEmpty()) {
+            return List.of();
+        }
+        var filmIds = likes.stream().map(Like::getFilmId).distinct().collect(Collectors.toList());
+        var userIds = likes.stream().map(Like::getUserId).distinct().collect(Collectors.toList());
+        var existingFilms = new HashSet<>(jdbcTemplate.queryForList(
+                "select id from films where id in (" + placeholders(filmIds.size()) + ")",
+                Integer.class, filmIds.toArray()));
+        var existingUsers = new HashSet<>(jdbcTemplate.queryForList(
+                "select id from users where id in (" + placeholders(userIds.size()) + ")",
+                Integer.class, userIds.toArray()));
+
+        var results = new ArrayList<LikeResult>(likes.size());
+        var inserts = new ArrayList<Object[]>();
+        var insertedResults = new ArrayList<LikeResult>();
+        for (var like : likes) {
+            var result = new LikeResult(like.getFilmId(), like.getUserId(), LikeStatus.NOT_FOUND);
+            if (existingFilms.contains(like.getFilmId()) && existingUsers.contains(like.getUserId())) {
+                inserts.add(new Object[]{like.getFilmId(), like.getUserId(), like.getFilmId(), like.getUserId()});
+                insertedResults.add(result);
+            }
+            results.add(result);
+        }
 
-        System.out.println(resultSet.getDate("release_date"));
-        System.out.println(resultSet.getDate("release_date").toLocalDate());
+        var insertedRows = insertLikes(inserts);
+        var likeCountChanges = new HashMap<Integer, Integer>();
+        for (int i = 0; i < insertedRows.length; i++) {
+            var result = insertedResults.get(i);
+            if (insertedRows[i] > 0) {
+                result.setStatus(LikeStatus.ADDED);
+                likeCountChanges.merge(result.getFilmId(), 1, Integer::sum);
+            } else {
+                result.setStatus(LikeStatus.DUPLICATE);
+            }
+        }
+        jdbcTemplate.batchUpdate(UPDATE_LIKE_COUNT, likeCountChanges.entrySet().stream()
+                .map(change -> new Object[]{change.getValue(), change.getKey()})
+                .collect(Collectors.toList()));
+        return results;
+    }
+
+    /**
+     * Inserts the likes in a batch and returns the number of rows every statement has inserted. A like that
+     * already exists, or was inserted earlier in the batch, makes its statement insert nothing. One inserted
+     * by another transaction after the check fails the batch with a duplicate key though, the batch is then
+     * rolled back and the likes are inserted one by one, each failing on its own.
+     */
+    private int[] insertLikes(List<Object[]> inserts) {
+        final String sql = "insert into likes (film_id, user_id) select ?, ? " +
+                "where not exists (select 1 from likes where film_id = ? and user_id = ?)";
+        // set on the connection of the transaction, the JPA transaction manager doesn't support savepoints
+        var savepoint = jdbcTemplate.execute((ConnectionCallback<Savepoint>) Connection::setSavepoint);
+        try {
+            var insertedRows = jdbcTemplate.batchUpdate(sql, inserts);
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                connection.releaseSavepoint(savepoint);
+                return null;
+            });
+            return insertedRows;
+        } catch (DuplicateKeyException e) {
+            log.debug("a like of the batch has been added concurrently, adding the likes one by one");
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                connection.rollback(savepoint);
+                return null;
+            });
+        }
+        var insertedRows = new int[inserts.size()];
+        for (int i = 0; i < inserts.size(); i++) {
+            try {
+                insertedRows[i] = jdbcTemplate.update(sql, inserts.get(i));
+            } catch (DuplicateKeyException e) {
+                insertedRows[i] = 0;
+            }
+        }
+        return insertedRows;
+    }
+
+    @Override
+    @Transactional
+    public void deleteLikes(List<Like> likes) {
+        final String sql = "delete from likes where film_id = ? and user_id = ?";
+        var deletedRows = jdbcTemplate.batchUpdate(sql, likes.stream()
+                .map(like -> new Object[]{like.getFilmId(), like.getUserId()})
+                .collect(Collectors.toList()));
+        var likeCountChanges = new HashMap<Integer, Integer>();
+        for (int i = 0; i < deletedRows.length; i++) {
+            if (deletedRows[i] > 0) {
+                likeCountChanges.merge(likes.get(i).getFilmId(), -1, Integer::sum);
+            }
+        }
+        jdbcTemplate.batchUpdate(UPDATE_LIKE_COUNT, likeCountChanges.entrySet().stream()
+                .map(change -> new Object[]{change.getValue(), change.getKey()})
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public boolean hasLike(int filmId, int userId) {
+        final String sql = "select (select count(*) from films where id = ?) as film_found, " +
+                "(select count(*) from users where id = ?) as user_found, " +
+                "(select count(*) from likes where film_id = ? and user_id = ?) as liked";
+        return jdbcTemplate.queryForObject(sql, (rs, i) -> {
+            if (rs.getInt("film_found") == 0 || rs.getInt("user_found") == 0) {
+                throw new NoSuchElementException();
+            }
+            return rs.getInt("liked") > 0;
+        }, filmId, userId, filmId, userId);
+    }
+
+    @Override
+    public List<Film> getByIds(List<Integer> filmIds) {
+        return getByIds(filmIds, true);
+    }
+
+    @Override
+    public List<Film> getByIds(List<Integer> filmIds, boolean withLikes) {
+        if (filmIds.isEmpty()) {
+            return List.of();
+        }
+        final String sql = SELECT_FILMS + " where f.id in (" + placeholders(filmIds.size()) + ")";
+        var found = jdbcTemplate.query(sql, this::mapRowToFilm, filmIds.toArray());
+        var films = (withLikes ? withLikes(found) : found).stream()
+                .collect(Collectors.toMap(Film::getId, film -> film));
+        return filmIds.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        return getFilmsPage(afterId, limit, true);
+    }
+
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit, boolean withLikes) {
+        final String sql = SELECT_FILMS + " where f.id > ? order by f.id limit ?";
+        var films = jdbcTemplate.query(sql, this::mapRowToFilm, afterId, limit);
+        return withLikes ? withLikes(films) : films;
+    }
+
+    /**
+     * Reads films together with their likes in one ordered query and hands each film over as soon as its
+     * last like row has been read, so only one film is held in memory at a time.
+     */
+    @Override
+    public void forEachFilm(Consumer<Film> action) {
+        final String sql = "select f.*, l.user_id as like_user_id from films f " +
+                "left join likes l on f.id = l.film_id " +
+                "order by f.id";
+        var current = new Film[1];
+        var currentLikes = new IntSet[1];
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            if (current[0] == null || current[0].getId() != rs.getInt("id")) {
+                if (current[0] != null) {
+                    action.accept(current[0]);
+                }
+                current[0] = mapRowToFilm(rs, 0);
+                currentLikes[0] = new IntSet();
+                current[0].setLikes(currentLikes[0]);
+            }
+            var userId = rs.getInt("like_user_id");
+            if (!rs.wasNull()) {
+                currentLikes[0].addInt(userId);
+            }
+        });
+        if (current[0] != null) {
+            action.accept(current[0]);
+        }
+    }
+
+    @Override
+    public List<Film> getMostPopular(int count) {
+        final String sql = "select id from films order by like_count desc, id limit ?";
+        return getByIds(jdbcTemplate.queryForList(sql, Integer.class, count));
+    }
+
+    @Override
+    public Map<Integer, Integer> getLikeCounts() {
+        final String sql = "select id, like_count from films";
+        var counts = new HashMap<Integer, Integer>();
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> counts.put(rs.getInt("id"), rs.getInt("like_count")));
+        return counts;
+    }
+
+    @Override
+    public void forEachLikeSince(LocalDateTime since, Consumer<Like> action) {
+        final String sql = "select film_id, user_id, created_at from likes where created_at >= ? order by created_at";
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> action.accept(new Like(rs.getInt("film_id"),
+                rs.getInt("user_id"), rs.getTimestamp("created_at").toLocalDateTime())), since);
+    }
+
+    /**
+     * Finds films whose {@code like_count} differs from the number of rows in {@code likes}
+     * and resets it to the actual number.
+     *
+     * @return ids of the repaired films
+     */
+    @Transactional
+    public List<Integer> reconcileLikeCounts() {
+        final String sql = "select f.id from films f left join likes l on f.id = l.film_id " +
+                "group by f.id, f.like_count having f.like_count <> count(l.user_id)";
+        var drifted = jdbcTemplate.queryForList(sql, Integer.class);
+        jdbcTemplate.batchUpdate("update films set like_count = (select count(*) from likes where film_id = ?) " +
+                        "where id = ?",
+                drifted.stream().map(id -> new Object[]{id, id}).collect(Collectors.toList()));
+        return drifted;
+    }
+
+    /**
+     * Maps a row of {@link #SELECT_FILMS}. The MPA rate comes from the in-memory dictionary. Likes are not
+     * loaded here, callers attach them in bulk so that mapping many rows doesn't issue a query per film.
+     */
+    private Film mapRowToFilm(ResultSet resultSet, int i) throws SQLException {
         return Film.builder()
-                .id(filmId)
+                .id(resultSet.getInt("id"))
                 .name(resultSet.getString("name"))
                 .description(resultSet.getString("description"))
                 .duration(resultSet.getInt("duration"))
                 .releaseDate(resultSet.getDate("release_date").toLocalDate())
-                .mpa(getMpaById(mpaId))
-                .likes(getLikes(filmId))
+                .mpa(mpaStorage.getById(resultSet.getInt("mpa_id")))
                 .build();
     }
 
-    private Set<Integer> getLikes(int filmId) {
-        final String sql = "select user_id from likes where film_id = ?";
-        var rows = jdbcTemplate.query(
-                sql,
-                (rs, i) -> rs.getInt("user_id"),
-                filmId);
-        return new HashSet<>(rows);
+    private List<Film> withLikes(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        final String sql = "select film_id, user_id from likes where film_id in (" + placeholders(films.size()) + ")";
+        var likes = new HashMap<Integer, IntSet>();
+        for (var film : films) {
+            var filmLikes = new IntSet();
+            film.setLikes(filmLikes);
+            likes.put(film.getId(), filmLikes);
+        }
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs ->
+                        likes.get(rs.getInt("film_id")).addInt(rs.getInt("user_id")),
+                likes.keySet().toArray());
+        return films;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private Map<Integer, IntSet> loadAllLikes() {
+        final String sql = "select film_id, user_id from likes";
+        var likes = new HashMap<Integer, IntSet>();
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs ->
+                likes.computeIfAbsent(rs.getInt("film_id"), id -> new IntSet()).addInt(rs.getInt("user_id")));
+        return likes;
     }
 
-    private Mpa getMpaById(int mpa_id) {
-        final String sql = "select * from mpa where id = ?";
-        return jdbcTemplate.queryForObject(sql,
-                (resultSet, i) -> new Mpa(resultSet.getInt("id"), resultSet.getString("name")), mpa_id);
+    private IntSet getLikes(int filmId) {
+        final String sql = "select user_id from likes where film_id = ?";
+        var likes = new IntSet();
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> likes.addInt(rs.getInt("user_id")), filmId);
+        return likes;
     }
 
 
-    private void validate(Film film) {
+    @Override
+    public void validate(Film film) {
         if (film.getName().equals("")) {
             throw new ValidationException("The film name should be added");
         }
@@ -148,5 +443,8 @@ public class FilmDbStorage implements FilmStorage {
         if (film.getMpa() == null) {
             throw new ValidationException("MPA rate is not provided");
         }
+        if (film.getMpa().getId() == null || !mpaStorage.contains(film.getMpa().getId())) {
+            throw new ValidationException("MPA rate " + film.getMpa().getId() + " doesn't exist");
+        }
     }
 }
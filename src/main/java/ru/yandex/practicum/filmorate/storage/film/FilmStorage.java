@@ -1,20 +1,115 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeResult;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
     Collection<Film> getAllFilms();
 
+    /**
+     * Same as {@link #getAllFilms()}, but the likes are only loaded if {@code withLikes} is set, otherwise
+     * they are left null.
+     */
+    Collection<Film> getAllFilms(boolean withLikes);
+
+    /**
+     * Returns up to {@code limit} films with ids greater than {@code afterId}, ordered by id.
+     */
+    List<Film> getFilmsPage(int afterId, int limit);
+
+    /**
+     * Same as {@link #getFilmsPage(int, int)}, but the likes are only loaded if {@code withLikes} is set,
+     * otherwise they are left null.
+     */
+    List<Film> getFilmsPage(int afterId, int limit, boolean withLikes);
+
+    /**
+     * Passes every film to the action in id order without collecting them in memory.
+     */
+    void forEachFilm(Consumer<Film> action);
+
     Integer addFilm(Film film);
 
+    /**
+     * Adds all the films at once. The films are expected to have passed {@link #validate}.
+     *
+     * @return ids of the films in the order of the list
+     */
+    List<Integer> addFilms(List<Film> films);
+
+    /**
+     * Checks the film against the rules {@link #addFilm} applies.
+     *
+     * @throws ru.yandex.practicum.filmorate.exceptions.ValidationException if the film breaks one of them
+     */
+    void validate(Film film);
+
     void updateFilm(Film film);
 
     Film getById(int filmId);
 
+    /**
+     * Same as {@link #getById(int)}, but the likes are only loaded if {@code withLikes} is set, otherwise
+     * they are left null.
+     */
+    Film getById(int filmId, boolean withLikes);
+
     void addLike(int filmId, int userId);
 
     void deleteLike(int filmId, int userId);
+
+    /**
+     * Adds all the likes at once. Likes that already exist, or repeat an earlier like of the list,
+     * are skipped, as well as likes of unknown films or users.
+     *
+     * @return the outcome of every like in the order of the list
+     */
+    List<LikeResult> addLikes(List<Like> likes);
+
+    /**
+     * Deletes all the likes at once, likes that don't exist are skipped.
+     */
+    void deleteLikes(List<Like> likes);
+
+    /**
+     * Tells whether the user likes the film.
+     *
+     * @throws java.util.NoSuchElementException if the film or the user doesn't exist
+     */
+    boolean hasLike(int filmId, int userId);
+
+    /**
+     * Returns films with the given ids in the order of the ids, skipping ids that don't exist.
+     */
+    List<Film> getByIds(List<Integer> filmIds);
+
+    /**
+     * Same as {@link #getByIds(List)}, but the likes are only loaded if {@code withLikes} is set, otherwise
+     * they are left null.
+     */
+    List<Film> getByIds(List<Integer> filmIds, boolean withLikes);
+
+    /**
+     * Returns the most liked films, ties are broken by the smaller id.
+     */
+    List<Film> getMostPopular(int count);
+
+    /**
+     * Returns the number of likes of every film, films without likes included.
+     */
+    Map<Integer, Integer> getLikeCounts();
+
+    /**
+     * Passes the likes added since the time to the action, with the time they were added, oldest first.
+     * Storages that don't keep the time of likes pass none.
+     */
+    void forEachLikeSince(LocalDateTime since, Consumer<Like> action);
 }
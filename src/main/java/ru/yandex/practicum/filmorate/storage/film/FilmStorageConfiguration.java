@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import ru.yandex.practicum.filmorate.metrics.CacheMetrics;
+import ru.yandex.practicum.filmorate.service.PopularitySource;
+import ru.yandex.practicum.filmorate.storage.StorageMode;
+
+import java.time.Duration;
+
+@Slf4j
+@Configuration
+public class FilmStorageConfiguration {
+
+    /**
+     * The storage the application works with: the in-memory storage if {@code filmorate.storage} is
+     * {@link StorageMode#MEMORY}, otherwise the database storage, or the like log in front of it
+     * if {@code filmorate.likes.log.enabled} is set, with likes buffered in front of that
+     * if {@code filmorate.likes.write-behind.enabled} is set, and films cached in front of that
+     * if {@code filmorate.cache.enabled} is set, with the cache counters published as {@link CacheMetrics}.
+     * The like log keeps the likes of the database storage, so it can't be used with the in-memory one, and
+     * leaves the like counts of the database behind, so it can't be used with {@link PopularitySource#DATABASE}.
+     */
+    @Bean
+    @Qualifier("FilmStorage")
+    public FilmStorage filmStorage(@Value("${filmorate.storage}") StorageMode storageMode,
+                                   @Qualifier("FilmDbStorage") FilmStorage filmDbStorage,
+                                   @Qualifier("InMemoryFilmStorage") FilmStorage inMemoryFilmStorage,
+                                   @Lazy @Qualifier("LikeLogFilmStorage") FilmStorage likeLogFilmStorage,
+                                   @Value("${filmorate.likes.log.enabled}") boolean likeLog,
+                                   @Value("${filmorate.popularity.source}") PopularitySource popularitySource,
+                                   @Value("${filmorate.likes.write-behind.enabled}") boolean writeBehind,
+                                   @Value("${filmorate.likes.write-behind.flush-interval}") Duration flushInterval,
+                                   @Value("${filmorate.likes.write-behind.max-pending}") int maxPending,
+                                   @Value("${filmorate.cache.enabled}") boolean cache,
+                                   @Value("${filmorate.cache.max-size}") int cacheSize,
+                                   @Value("${filmorate.cache.ttl}") Duration cacheTtl,
+                                   MeterRegistry meterRegistry) {
+        if (likeLog && storageMode == StorageMode.MEMORY) {
+            throw new IllegalArgumentException("filmorate.likes.log.enabled can't be set with "
+                    + "filmorate.storage=memory, the like log is kept for the database");
+        }
+        if (likeLog && popularitySource == PopularitySource.DATABASE) {
+            throw new IllegalArgumentException("filmorate.likes.log.enabled can't be set with "
+                    + "filmorate.popularity.source=database, the like counts of the database aren't kept");
+        }
+        var filmStorage = storageMode == StorageMode.MEMORY ? inMemoryFilmStorage
+                : likeLog ? likeLogFilmStorage : filmDbStorage;
+        if (writeBehind) {
+            log.info("likes are written behind every {} or every {} changes", flushInterval, maxPending);
+            filmStorage = new WriteBehindFilmStorage(filmStorage, flushInterval, maxPending);
+        }
+        if (cache) {
+            var cachingFilmStorage = new CachingFilmStorage(filmStorage, cacheSize, cacheTtl);
+            CacheMetrics.register(meterRegistry, "films", cachingFilmStorage, CachingFilmStorage::getStats);
+            filmStorage = cachingFilmStorage;
+        }
+        return filmStorage;
+    }
+}
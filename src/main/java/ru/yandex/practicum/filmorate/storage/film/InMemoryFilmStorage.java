@@ -1,86 +1,331 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
-import org.hibernate.cfg.NotYetImplementedException;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.validation.Valid;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.time.LocalDate;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.NoSuchElementException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+import static ru.yandex.practicum.filmorate.storage.Snapshots.*;
+
+/**
+ * Keeps films in a concurrent map and the likes of every film in a separate set. A like set is only read or
+ * changed while holding the lock of its stripe, so likes of different films rarely contend. Returned films
+ * are copies, changing them doesn't change the storage.
+ */
 @Component
 @Slf4j
 @Qualifier("InMemoryFilmStorage")
 public class InMemoryFilmStorage implements FilmStorage {
-    private Map<Integer, Film> films = new HashMap<>();
+    private static final int LOCK_STRIPES = 64;
+
+    private final Map<Integer, Film> films = new ConcurrentHashMap<>();
+    private final Map<Integer, IntSet> likes = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final AtomicInteger lastId = new AtomicInteger(1);
+    private final MpaStorage mpaStorage;
+    private final UserStorage userStorage;
 
-    public InMemoryFilmStorage() {
+    public InMemoryFilmStorage(@Qualifier("MpaDbStorage") MpaStorage mpaStorage,
+                               @Qualifier("InMemoryUserStorage") UserStorage userStorage) {
+        this.mpaStorage = mpaStorage;
+        this.userStorage = userStorage;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
     }
 
 
     public Collection<Film> getAllFilms() {
-        return films.values();
+        return getAllFilms(true);
+    }
+
+    @Override
+    public Collection<Film> getAllFilms(boolean withLikes) {
+        return films.values().stream()
+                .sorted(Comparator.comparingInt(Film::getId))
+                .map(film -> withLikes ? withLikes(film) : copy(film, null))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        return getFilmsPage(afterId, limit, true);
     }
 
-    public void setFilms(Map<Integer, Film> films) {
-        this.films = films;
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit, boolean withLikes) {
+        return films.values().stream()
+                .filter(film -> film.getId() > afterId)
+                .sorted(Comparator.comparingInt(Film::getId))
+                .limit(limit)
+                .map(film -> withLikes ? withLikes(film) : copy(film, null))
+                .collect(Collectors.toList());
     }
 
-    private int lastId = 1;
+    @Override
+    public void forEachFilm(Consumer<Film> action) {
+        films.values().stream()
+                .sorted(Comparator.comparingInt(Film::getId))
+                .map(this::withLikes)
+                .forEach(action);
+    }
 
     public int getLastId() {
-        return lastId;
+        return lastId.get();
     }
 
     public void setLastId(int lastId) {
-        this.lastId = lastId;
+        this.lastId.set(lastId);
     }
 
 
     public Integer addFilm(@Valid Film film) {
-        film.getMpa().setName("todo: remove");
         validate(film);
-        film.setId(lastId++);
-        films.put(film.getId(), film);
+        film.setMpa(mpaStorage.getById(film.getMpa().getId()));
+        film.setId(lastId.getAndIncrement());
+        likes.put(film.getId(), new IntSet());
+        films.put(film.getId(), copy(film, null));
         log.debug("film {} has been added", film.getName().toUpperCase());
         return film.getId();
     }
 
 
+    @Override
+    public List<Integer> addFilms(List<Film> films) {
+        return films.stream()
+                .map(this::addFilm)
+                .collect(Collectors.toList());
+    }
+
     public void updateFilm(Film film) {
-        film.getMpa().setName("todo: remove");
         getById(film.getId());
         validate(film);
-        films.put(film.getId(), film);
+        film.setMpa(mpaStorage.getById(film.getMpa().getId()));
+        if (films.replace(film.getId(), copy(film, null)) == null) {
+            throw new NoSuchElementException();
+        }
         log.debug("film {} has been updated", film.getName().toUpperCase());
     }
 
     @Override
     public Film getById(int filmId) {
-        if (!films.containsKey(filmId)) {
+        return getById(filmId, true);
+    }
+
+    @Override
+    public Film getById(int filmId, boolean withLikes) {
+        var film = films.get(filmId);
+        if (film == null) {
             throw new NoSuchElementException();
         }
-        return films.get(filmId);
+        return withLikes ? withLikes(film) : copy(film, null);
     }
 
     @Override
     public void addLike(int filmId, int userId) {
-        throw new NotYetImplementedException();
+        var filmLikes = likes.get(filmId);
+        if (filmLikes == null || !userStorage.exists(userId)) {
+            throw new NoSuchElementException();
+        }
+        synchronized (lockFor(filmId)) {
+            if (!filmLikes.addInt(userId)) {
+                throw new DuplicateKeyException("film " + filmId + " is already liked by user " + userId);
+            }
+        }
     }
 
     @Override
     public void deleteLike(int filmId, int userId) {
-        throw new NotYetImplementedException();
+        var filmLikes = likes.get(filmId);
+        if (filmLikes == null) {
+            throw new NoSuchElementException();
+        }
+        synchronized (lockFor(filmId)) {
+            if (!filmLikes.removeInt(userId)) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
 
+    @Override
+    public List<LikeResult> addLikes(List<Like> likes) {
+        var results = new ArrayList<LikeResult>(likes.size());
+        for (var like : likes) {
+            var result = new LikeResult(like.getFilmId(), like.getUserId(), LikeStatus.ADDED);
+            try {
+                addLike(like.getFilmId(), like.getUserId());
+            } catch (NoSuchElementException e) {
+                result.setStatus(LikeStatus.NOT_FOUND);
+            } catch (DuplicateKeyException e) {
+                result.setStatus(LikeStatus.DUPLICATE);
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    @Override
+    public void deleteLikes(List<Like> likes) {
+        for (var like : likes) {
+            try {
+                deleteLike(like.getFilmId(), like.getUserId());
+            } catch (NoSuchElementException e) {
+                log.debug("film {} is not liked by user {}", like.getFilmId(), like.getUserId());
+            }
+        }
     }
 
-    private void validate(Film film) {
+    @Override
+    public boolean hasLike(int filmId, int userId) {
+        var filmLikes = likes.get(filmId);
+        if (filmLikes == null || !userStorage.exists(userId)) {
+            throw new NoSuchElementException();
+        }
+        synchronized (lockFor(filmId)) {
+            return filmLikes.containsInt(userId);
+        }
+    }
+
+    @Override
+    public List<Film> getByIds(List<Integer> filmIds) {
+        return getByIds(filmIds, true);
+    }
+
+    @Override
+    public List<Film> getByIds(List<Integer> filmIds, boolean withLikes) {
+        return filmIds.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .map(film -> withLikes ? withLikes(film) : copy(film, null))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> getMostPopular(int count) {
+        var ids = getLikeCounts().entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        return getByIds(ids);
+    }
+
+    @Override
+    public Map<Integer, Integer> getLikeCounts() {
+        var counts = new HashMap<Integer, Integer>();
+        likes.forEach((filmId, filmLikes) -> {
+            synchronized (lockFor(filmId)) {
+                counts.put(filmId, filmLikes.size());
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * Passes no likes, the time of likes isn't kept.
+     */
+    @Override
+    public void forEachLikeSince(LocalDateTime since, Consumer<Like> action) {
+    }
+
+    /**
+     * Writes every film with its likes to the snapshot. Films are written one by one while the storage
+     * keeps serving requests, so every film is consistent on its own but films aren't taken at the same moment.
+     */
+    public void writeSnapshot(DataOutput out) throws IOException {
+        for (var film : films.values()) {
+            IntSet filmLikes;
+            synchronized (lockFor(film.getId())) {
+                filmLikes = new IntSet(likes.getOrDefault(film.getId(), new IntSet()));
+            }
+            out.writeBoolean(true);
+            out.writeInt(film.getId());
+            writeString(out, film.getName());
+            writeString(out, film.getDescription());
+            writeDate(out, film.getReleaseDate());
+            out.writeInt(film.getDuration());
+            out.writeInt(film.getMpa().getId());
+            writeString(out, film.getMpa().getName());
+            writeInts(out, filmLikes);
+        }
+        out.writeBoolean(false);
+        // taken after the films, so it's above the id of any film written
+        out.writeInt(lastId.get());
+    }
+
+    /**
+     * Replaces the films of the storage with the ones from a snapshot written by {@link #writeSnapshot}.
+     * The users are expected to have been restored already, likes of users they don't have are dropped.
+     *
+     * @return the number of films read
+     */
+    public int readSnapshot(DataInput in) throws IOException {
+        films.clear();
+        likes.clear();
+        while (in.readBoolean()) {
+            var film = Film.builder()
+                    .id(in.readInt())
+                    .name(readString(in))
+                    .description(readString(in))
+                    .releaseDate(readDate(in))
+                    .duration(in.readInt())
+                    .mpa(new Mpa(in.readInt(), readString(in)))
+                    .build();
+            likes.put(film.getId(), readInts(in, userStorage::exists));
+            films.put(film.getId(), film);
+        }
+        lastId.set(in.readInt());
+        return films.size();
+    }
+
+    private Object lockFor(int filmId) {
+        return locks[Math.floorMod(filmId, LOCK_STRIPES)];
+    }
+
+    private Film withLikes(Film film) {
+        IntSet filmLikes;
+        synchronized (lockFor(film.getId())) {
+            filmLikes = new IntSet(likes.getOrDefault(film.getId(), new IntSet()));
+        }
+        return copy(film, filmLikes);
+    }
+
+    private static Film copy(Film film, Set<Integer> likes) {
+        return Film.builder()
+                .id(film.getId())
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .mpa(film.getMpa())
+                .likes(likes)
+                .build();
+    }
+
+    @Override
+    public void validate(Film film) {
         if (film.getName().equals("")) {
             throw new ValidationException("The film name should be added");
         }
@@ -99,5 +344,8 @@ public class InMemoryFilmStorage implements FilmStorage {
         if (film.getMpa() == null) {
             throw new ValidationException("MPA rate is not provided");
         }
+        if (film.getMpa().getId() == null || !mpaStorage.contains(film.getMpa().getId())) {
+            throw new ValidationException("MPA rate " + film.getMpa().getId() + " doesn't exist");
+        }
     }
 }
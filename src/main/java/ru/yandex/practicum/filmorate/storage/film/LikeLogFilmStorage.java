@@ -0,0 +1,578 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps likes in an append-only log of fixed-width (film id, user id, time, operation) records and everything else
+ * in the underlying storage. The log file is memory-mapped, so a like costs a few stores into the page cache
+ * instead of a row insert, and it outlives a crash of the process, though not of the machine, before
+ * {@link #close()} or a compaction forces it to disk. The likes of every film are indexed in memory, the index
+ * is rebuilt by replaying the log on startup. A new log starts with the likes of the underlying storage.
+ * Records of films and users the underlying storage no longer has are dropped on replay. Logs of the first
+ * version, which had no time in their records, are rewritten on replay as if everything was liked at the epoch.
+ * <p>
+ * Every unlike leaves two records behind, so the log is compacted periodically: once it holds more dead
+ * records than live likes, it is rewritten with a single record per like and swapped in place of the old one.
+ * Films are read from the underlying storage with their likes replaced by the ones from the log.
+ */
+@Slf4j
+@Lazy
+@Component
+@Qualifier("LikeLogFilmStorage")
+public class LikeLogFilmStorage implements FilmStorage, AutoCloseable {
+    private static final int MAGIC = 0x464c4b4c;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 17;
+    private static final int V1_RECORD_SIZE = 9;
+    private static final byte LIKE = 1;
+    private static final byte UNLIKE = 2;
+    private static final int INITIAL_SIZE = 1 << 20;
+    private static final int LOCK_STRIPES = 64;
+    private static final int FILMS_PAGE = 1000;
+    private static final LocalDateTime EPOCH = toLocalDateTime(0);
+
+    private final FilmStorage delegate;
+    private final UserStorage userStorage;
+    private final Path path;
+    private final ScheduledExecutorService compactor;
+    private final Map<Integer, IntSet> likes = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    // shared by likes and unlikes, exclusive while the log is compacted or closed
+    private final ReadWriteLock logLock = new ReentrantReadWriteLock();
+    // the fields below are only changed by appends, which are serialized, or with the log locked exclusively
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int position;
+    private long records;
+    private int recordSize = RECORD_SIZE;
+
+    public LikeLogFilmStorage(@Qualifier("FilmDbStorage") FilmStorage delegate,
+                              @Qualifier("UserStorage") UserStorage userStorage,
+                              @Value("${filmorate.likes.log.path}") Path path,
+                              @Value("${filmorate.likes.log.compaction-interval}") Duration compactionInterval) {
+        this.delegate = delegate;
+        this.userStorage = userStorage;
+        this.path = path;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        try {
+            open();
+        } catch (IOException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw new UncheckedIOException("can't open the like log " + path, e);
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "like-log-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compactIfNeeded, compactionInterval.toMillis(),
+                compactionInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Collection<Film> getAllFilms() {
+        return getAllFilms(true);
+    }
+
+    @Override
+    public Collection<Film> getAllFilms(boolean withLikes) {
+        var films = delegate.getAllFilms(false);
+        return withLikes ? withLikes(films) : films;
+    }
+
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        return getFilmsPage(afterId, limit, true);
+    }
+
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit, boolean withLikes) {
+        var films = delegate.getFilmsPage(afterId, limit, false);
+        return withLikes ? withLikes(films) : films;
+    }
+
+    @Override
+    public void forEachFilm(Consumer<Film> action) {
+        // paged without likes, the underlying storage would stream its own stale ones along with every film
+        List<Film> page;
+        int afterId = 0;
+        do {
+            page = delegate.getFilmsPage(afterId, FILMS_PAGE, false);
+            for (var film : page) {
+                action.accept(withLikes(film));
+                afterId = film.getId();
+            }
+        } while (page.size() == FILMS_PAGE);
+    }
+
+    @Override
+    public Integer addFilm(Film film) {
+        var filmId = delegate.addFilm(film);
+        // a new film has no likes, even if a film with the same id had some before
+        likes.put(filmId, new IntSet());
+        return filmId;
+    }
+
+    @Override
+    public List<Integer> addFilms(List<Film> films) {
+        var filmIds = delegate.addFilms(films);
+        filmIds.forEach(filmId -> likes.put(filmId, new IntSet()));
+        return filmIds;
+    }
+
+    @Override
+    public void validate(Film film) {
+        delegate.validate(film);
+    }
+
+    @Override
+    public void updateFilm(Film film) {
+        delegate.updateFilm(film);
+    }
+
+    @Override
+    public Film getById(int filmId) {
+        return getById(filmId, true);
+    }
+
+    @Override
+    public Film getById(int filmId, boolean withLikes) {
+        var film = delegate.getById(filmId, false);
+        return withLikes ? withLikes(film) : film;
+    }
+
+    @Override
+    public void addLike(int filmId, int userId) {
+        var filmLikes = likesOf(filmId);
+        if (!userStorage.exists(userId)) {
+            throw new NoSuchElementException();
+        }
+        logLock.readLock().lock();
+        try {
+            synchronized (lockFor(filmId)) {
+                if (filmLikes.containsInt(userId)) {
+                    throw new DuplicateKeyException("film " + filmId + " is already liked by user " + userId);
+                }
+                append(filmId, userId, System.currentTimeMillis(), LIKE);
+                filmLikes.addInt(userId);
+            }
+        } finally {
+            logLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteLike(int filmId, int userId) {
+        var filmLikes = likesOf(filmId);
+        logLock.readLock().lock();
+        try {
+            synchronized (lockFor(filmId)) {
+                if (!filmLikes.containsInt(userId)) {
+                    throw new NoSuchElementException();
+                }
+                append(filmId, userId, System.currentTimeMillis(), UNLIKE);
+                filmLikes.removeInt(userId);
+            }
+        } finally {
+            logLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<LikeResult> addLikes(List<Like> likes) {
+        var results = new ArrayList<LikeResult>(likes.size());
+        for (var like : likes) {
+            var result = new LikeResult(like.getFilmId(), like.getUserId(), LikeStatus.ADDED);
+            try {
+                addLike(like.getFilmId(), like.getUserId());
+            } catch (NoSuchElementException e) {
+                result.setStatus(LikeStatus.NOT_FOUND);
+            } catch (DuplicateKeyException e) {
+                result.setStatus(LikeStatus.DUPLICATE);
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    @Override
+    public void deleteLikes(List<Like> likes) {
+        for (var like : likes) {
+            try {
+                deleteLike(like.getFilmId(), like.getUserId());
+            } catch (NoSuchElementException e) {
+                log.debug("film {} is not liked by user {}", like.getFilmId(), like.getUserId());
+            }
+        }
+    }
+
+    @Override
+    public boolean hasLike(int filmId, int userId) {
+        var filmLikes = likesOf(filmId);
+        if (!userStorage.exists(userId)) {
+            throw new NoSuchElementException();
+        }
+        synchronized (lockFor(filmId)) {
+            return filmLikes.containsInt(userId);
+        }
+    }
+
+    @Override
+    public List<Film> getByIds(List<Integer> filmIds) {
+        return getByIds(filmIds, true);
+    }
+
+    @Override
+    public List<Film> getByIds(List<Integer> filmIds, boolean withLikes) {
+        var films = delegate.getByIds(filmIds, false);
+        return withLikes ? withLikes(films) : films;
+    }
+
+    @Override
+    public List<Film> getMostPopular(int count) {
+        var ids = getLikeCounts().entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        return getByIds(ids);
+    }
+
+    @Override
+    public Map<Integer, Integer> getLikeCounts() {
+        var counts = new HashMap<Integer, Integer>();
+        likes.forEach((filmId, filmLikes) -> {
+            synchronized (lockFor(filmId)) {
+                counts.put(filmId, filmLikes.size());
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * Passes the likes newest first. They are collected from the log while likes and unlikes wait, and passed
+     * once those can go on.
+     */
+    @Override
+    public void forEachLikeSince(LocalDateTime since, Consumer<Like> action) {
+        LiveLikes found;
+        logLock.writeLock().lock();
+        try {
+            // nothing in the log is older than the epoch, and LocalDateTime.MIN doesn't fit in millis
+            found = collectLiveLikes(since.isAfter(EPOCH) ? toMillis(since) : Long.MIN_VALUE, 16);
+        } finally {
+            logLock.writeLock().unlock();
+        }
+        for (int i = 0; i < found.size; i++) {
+            action.accept(new Like(found.filmIds[i], found.userIds[i], toLocalDateTime(found.millis[i])));
+        }
+    }
+
+    /**
+     * Returns the number of records in the log, live or not.
+     */
+    public long getRecordCount() {
+        logLock.writeLock().lock();
+        try {
+            return records;
+        } finally {
+            logLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the log with the last record of every current like only, in the order they were written.
+     * Likes and unlikes wait until it's done.
+     */
+    public void compact() {
+        logLock.writeLock().lock();
+        try {
+            var live = collectLiveLikes(Long.MIN_VALUE, (int) likes.values().stream().mapToLong(IntSet::size).sum());
+            var compacted = path.resolveSibling(path.getFileName() + ".compacting");
+            Files.deleteIfExists(compacted);
+            try (var out = FileChannel.open(compacted, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                var outBuffer = out.map(FileChannel.MapMode.READ_WRITE, 0, capacityFor(live.size));
+                outBuffer.putInt(0, MAGIC).putInt(4, VERSION);
+                var outPosition = HEADER_SIZE;
+                for (int i = live.size - 1; i >= 0; i--) {
+                    put(outBuffer, outPosition, live.filmIds[i], live.userIds[i], live.millis[i], LIKE);
+                    outPosition += RECORD_SIZE;
+                }
+                outBuffer.force();
+            }
+            buffer.force();
+            channel.close();
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("the like log has been compacted from {} to {} records", records, live.size);
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            position = HEADER_SIZE + live.size * RECORD_SIZE;
+            records = live.size;
+            recordSize = RECORD_SIZE;
+        } catch (IOException e) {
+            throw new UncheckedIOException("can't compact the like log " + path, e);
+        } finally {
+            logLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stops the periodic compactions and forces the log to disk.
+     */
+    @Override
+    public void close() throws IOException, InterruptedException {
+        compactor.shutdown();
+        compactor.awaitTermination(1, TimeUnit.MINUTES);
+        logLock.writeLock().lock();
+        try {
+            if (channel.isOpen()) {
+                buffer.force();
+                channel.close();
+            }
+        } finally {
+            logLock.writeLock().unlock();
+        }
+    }
+
+    private void open() throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        var fresh = Files.notExists(path) || Files.size(path) == 0;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), INITIAL_SIZE));
+        position = HEADER_SIZE;
+        if (fresh) {
+            buffer.putInt(0, MAGIC).putInt(4, VERSION);
+            delegate.forEachLikeSince(EPOCH, like -> {
+                likes.computeIfAbsent(like.getFilmId(), id -> new IntSet()).addInt(like.getUserId());
+                append(like.getFilmId(), like.getUserId(), toMillis(like.getCreatedAt()), LIKE);
+            });
+            // likes the underlying storage keeps no time for are logged as liked at the epoch
+            delegate.forEachFilm(film -> {
+                var filmLikes = likes.computeIfAbsent(film.getId(), id -> new IntSet());
+                for (var userId : film.getLikes()) {
+                    if (filmLikes.addInt(userId)) {
+                        append(film.getId(), userId, 0, LIKE);
+                    }
+                }
+            });
+            log.info("a new like log {} has been started with {} likes", path, records);
+            return;
+        }
+        var version = buffer.getInt(4);
+        if (buffer.getInt(0) != MAGIC || version != VERSION && version != 1) {
+            throw new IOException(path + " is not a like log");
+        }
+        recordSize = version == VERSION ? RECORD_SIZE : V1_RECORD_SIZE;
+        delegate.getLikeCounts().keySet().forEach(filmId -> likes.put(filmId, new IntSet()));
+        var userIds = new IntSet();
+        userStorage.getAllUsers(false).forEach(user -> userIds.addInt(user.getId()));
+        // the underlying storage may have been recreated since, so records of films or users that are gone
+        // are skipped, they would otherwise pass to new films and users that got the same ids
+        long skipped = 0;
+        // the operation is written last, so a record torn by a crash has none and ends the log
+        while (position + recordSize <= buffer.capacity()) {
+            var op = buffer.get(position + recordSize - 1);
+            if (op != LIKE && op != UNLIKE) {
+                break;
+            }
+            var filmLikes = likes.get(buffer.getInt(position));
+            var userId = buffer.getInt(position + 4);
+            if (filmLikes == null || !userIds.containsInt(userId)) {
+                skipped++;
+            } else if (op == LIKE) {
+                filmLikes.addInt(userId);
+            } else {
+                filmLikes.removeInt(userId);
+            }
+            position += recordSize;
+            records++;
+        }
+        log.info("the like log {} has been replayed, {} records", path, records);
+        if (skipped > 0) {
+            log.info("{} records of films or users that no longer exist have been skipped", skipped);
+        }
+        if (version != VERSION) {
+            log.info("the like log {} of version {} is rewritten with the likes as of the epoch", path, version);
+        }
+        if (skipped > 0 || version != VERSION) {
+            compact();
+        }
+    }
+
+    private synchronized void append(int filmId, int userId, long millis, byte op) {
+        if (position + RECORD_SIZE > buffer.capacity()) {
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) buffer.capacity() * 2);
+            } catch (IOException e) {
+                throw new UncheckedIOException("can't grow the like log " + path, e);
+            }
+        }
+        put(buffer, position, filmId, userId, millis, op);
+        position += RECORD_SIZE;
+        records++;
+    }
+
+    private void compactIfNeeded() {
+        try {
+            long live = likes.values().stream().mapToLong(IntSet::size).sum();
+            if (getRecordCount() - live > Math.max(live, INITIAL_SIZE / RECORD_SIZE)) {
+                compact();
+            }
+        } catch (RuntimeException e) {
+            log.error("the like log hasn't been compacted", e);
+        }
+    }
+
+    /**
+     * Walks the log back from its end and collects the last record of every current like written no earlier
+     * than {@code sinceMillis}. The log has to be locked exclusively.
+     */
+    private LiveLikes collectLiveLikes(long sinceMillis, int expected) {
+        var remaining = new HashMap<Integer, IntSet>();
+        likes.forEach((filmId, filmLikes) -> {
+            synchronized (lockFor(filmId)) {
+                remaining.put(filmId, new IntSet(filmLikes));
+            }
+        });
+        var found = new LiveLikes(expected);
+        for (int p = position - recordSize; p >= HEADER_SIZE; p -= recordSize) {
+            var filmLikes = remaining.get(buffer.getInt(p));
+            var userId = buffer.getInt(p + 4);
+            // the first like of a current like met on the way back is the one it stands by
+            if (buffer.get(p + recordSize - 1) == LIKE && filmLikes != null && filmLikes.removeInt(userId)) {
+                var millis = recordSize == RECORD_SIZE ? buffer.getLong(p + 8) : 0;
+                if (millis >= sinceMillis) {
+                    found.add(buffer.getInt(p), userId, millis);
+                }
+            }
+        }
+        return found;
+    }
+
+    private IntSet likesOf(int filmId) {
+        var filmLikes = likes.get(filmId);
+        if (filmLikes == null) {
+            // the film may have been added to the underlying storage by other means
+            if (delegate.getByIds(List.of(filmId), false).isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            filmLikes = likes.computeIfAbsent(filmId, id -> new IntSet());
+        }
+        return filmLikes;
+    }
+
+    private <C extends Collection<Film>> C withLikes(C films) {
+        films.forEach(this::withLikes);
+        return films;
+    }
+
+    private Film withLikes(Film film) {
+        var filmLikes = likes.get(film.getId());
+        if (filmLikes == null) {
+            film.setLikes(new IntSet());
+            return film;
+        }
+        synchronized (lockFor(film.getId())) {
+            film.setLikes(new IntSet(filmLikes));
+        }
+        return film;
+    }
+
+    private Object lockFor(int filmId) {
+        return locks[Math.floorMod(filmId, LOCK_STRIPES)];
+    }
+
+    private static long capacityFor(long likes) {
+        return Math.max(INITIAL_SIZE, HEADER_SIZE + likes * RECORD_SIZE * 2);
+    }
+
+    private static void put(MappedByteBuffer buffer, int position, int filmId, int userId, long millis, byte op) {
+        buffer.putInt(position, filmId);
+        buffer.putInt(position + 4, userId);
+        buffer.putLong(position + 8, millis);
+        buffer.put(position + 16, op);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    /**
+     * Likes collected from the log, newest first.
+     */
+    private static final class LiveLikes {
+        private int size;
+        private int[] filmIds;
+        private int[] userIds;
+        private long[] millis;
+
+        LiveLikes(int capacity) {
+            filmIds = new int[Math.max(capacity, 1)];
+            userIds = new int[filmIds.length];
+            millis = new long[filmIds.length];
+        }
+
+        void add(int filmId, int userId, long time) {
+            if (size == filmIds.length) {
+                filmIds = Arrays.copyOf(filmIds, size * 2);
+                userIds = Arrays.copyOf(userIds, size * 2);
+                millis = Arrays.copyOf(millis, size * 2);
+            }
+            filmIds[size] = filmId;
+            userIds[size] = userId;
+            millis[size] = time;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Buffers likes and unlikes in memory and writes them to the underlying storage in batches, every flush
+ * interval or as soon as {@code maxPending} film/user pairs are waiting. Only the last state of a pair is kept,
+ * so a pair liked and unliked many times before the flush costs a single write. Reads put the buffered state
+ * over what the underlying storage returns, so callers see their own likes right away.
+ * <p>
+ * Likes and unlikes don't touch the underlying storage: a change is only refused right away if it repeats
+ * the buffered state of its pair. Likes of missing films or users and likes the underlying storage already has
+ * are found when they are flushed and dropped then, until that they show up in reads.
+ * <p>
+ * Likes that haven't been flushed are lost if the process dies, the flush interval bounds that window.
+ * {@link #close()} flushes the buffer, Spring calls it on an orderly shutdown.
+ */
+@Slf4j
+public class WriteBehindFilmStorage implements FilmStorage, AutoCloseable {
+    private static final int LOCK_STRIPES = 64;
+    private static final int WRITE_BATCH = 1000;
+    // a batch that fails this many flushes in a row is dropped
+    private static final int MAX_FLUSH_ATTEMPTS = 5;
+
+    private final FilmStorage delegate;
+    private final int maxPending;
+    private final ScheduledExecutorService flusher;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    // shared by everything that looks at the buffers, exclusive only for the moment the buffers are swapped
+    private final ReadWriteLock buffersLock = new ReentrantReadWriteLock();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    // film id -> user id -> whether the user should like the film; holds only pairs that will change on the
+    // next flush, a pair map is changed under the lock of the film's stripe
+    private volatile Map<Integer, Map<Integer, Boolean>> pending = new ConcurrentHashMap<>();
+    // pairs being written by the running flush, or left over by a failed one; never changed once published
+    private volatile Map<Integer, Map<Integer, Boolean>> flushing = Map.of();
+    // guarded by this
+    private int failedFlushes;
+
+    public WriteBehindFilmStorage(FilmStorage delegate, Duration flushInterval, int maxPending) {
+        this.delegate = delegate;
+        this.maxPending = maxPending;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "like-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushInterval.toMillis(), flushInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Collection<Film> getAllFilms() {
+        return read(() -> overlay(delegate.getAllFilms()));
+    }
+
+    @Override
+    public Collection<Film> getAllFilms(boolean withLikes) {
+        return withLikes ? getAllFilms() : delegate.getAllFilms(false);
+    }
+
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        return read(() -> overlay(delegate.getFilmsPage(afterId, limit)));
+    }
+
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit, boolean withLikes) {
+        return withLikes ? getFilmsPage(afterId, limit) : delegate.getFilmsPage(afterId, limit, false);
+    }
+
+    /**
+     * Films are completed with the buffered likes one by one, so a flush that happens while the films are
+     * being read may leave its likes out of the films read before it.
+     */
+    @Override
+    public void forEachFilm(Consumer<Film> action) {
+        delegate.forEachFilm(film -> action.accept(read(() -> overlay(film))));
+    }
+
+    @Override
+    public Integer addFilm(Film film) {
+        return delegate.addFilm(film);
+    }
+
+    @Override
+    public List<Integer> addFilms(List<Film> films) {
+        return delegate.addFilms(films);
+    }
+
+    @Override
+    public void validate(Film film) {
+        delegate.validate(film);
+    }
+
+    @Override
+    public void updateFilm(Film film) {
+        delegate.updateFilm(film);
+    }
+
+    @Override
+    public Film getById(int filmId) {
+        return read(() -> overlay(delegate.getById(filmId)));
+    }
+
+    @Override
+    public Film getById(int filmId, boolean withLikes) {
+        return withLikes ? getById(filmId) : delegate.getById(filmId, false);
+    }
+
+    @Override
+    public void addLike(int filmId, int userId) {
+        change(filmId, userId, true);
+    }
+
+    @Override
+    public void deleteLike(int filmId, int userId) {
+        change(filmId, userId, false);
+    }
+
+    @Override
+    public List<LikeResult> addLikes(List<Like> likes) {
+        var results = new ArrayList<LikeResult>(likes.size());
+        for (var like : likes) {
+            var result = new LikeResult(like.getFilmId(), like.getUserId(), LikeStatus.ADDED);
+            try {
+                addLike(like.getFilmId(), like.getUserId());
+            } catch (NoSuchElementException e) {
+                result.setStatus(LikeStatus.NOT_FOUND);
+            } catch (DuplicateKeyException e) {
+                result.setStatus(LikeStatus.DUPLICATE);
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    @Override
+    public void deleteLikes(List<Like> likes) {
+        for (var like : likes) {
+            try {
+                deleteLike(like.getFilmId(), like.getUserId());
+            } catch (NoSuchElementException e) {
+                log.debug("film {} is not liked by user {}", like.getFilmId(), like.getUserId());
+            }
+        }
+    }
+
+    @Override
+    public boolean hasLike(int filmId, int userId) {
+        var buffered = read(() -> {
+            synchronized (lockFor(filmId)) {
+                return bufferedState(filmId, userId);
+            }
+        });
+        // a pair that isn't buffered now can only be buffered later, by a change newer than this read
+        return buffered != null ? buffered : delegate.hasLike(filmId, userId);
+    }
+
+    @Override
+    public List<Film> getByIds(List<Integer> filmIds) {
+        return read(() -> overlay(delegate.getByIds(filmIds)));
+    }
+
+    @Override
+    public List<Film> getByIds(List<Integer> filmIds, boolean withLikes) {
+        return withLikes ? getByIds(filmIds) : delegate.getByIds(filmIds, false);
+    }
+
+    /**
+     * The films are ranked by the flushed likes only, buffered likes show up in the ranking after the next flush.
+     */
+    @Override
+    public List<Film> getMostPopular(int count) {
+        return read(() -> overlay(delegate.getMostPopular(count)));
+    }
+
+    /**
+     * Flushes the buffer first, so the counts can be taken from the underlying storage and only corrected
+     * by the likes buffered since, which are taken as valid.
+     */
+    @Override
+    public synchronized Map<Integer, Integer> getLikeCounts() {
+        flush();
+        buffersLock.writeLock().lock();
+        try {
+            var counts = new HashMap<>(delegate.getLikeCounts());
+            pending.forEach((filmId, users) -> users.values()
+                    .forEach(liked -> counts.merge(filmId, liked ? 1 : -1, Integer::sum)));
+            return counts;
+        } finally {
+            buffersLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes the buffered likes first, so that they are passed too.
+     */
+    @Override
+    public synchronized void forEachLikeSince(LocalDateTime since, Consumer<Like> action) {
+        flush();
+        delegate.forEachLikeSince(since, action);
+    }
+
+    /**
+     * Writes the buffered likes to the underlying storage. If the write fails, the likes stay buffered
+     * and are written again with the next flush, writing a pair twice doesn't change anything. A batch that
+     * has failed {@value #MAX_FLUSH_ATTEMPTS} times in a row is dropped.
+     */
+    public synchronized void flush() {
+        flushRequested.set(false);
+        Map<Integer, Map<Integer, Boolean>> batch;
+        buffersLock.writeLock().lock();
+        try {
+            if (pending.isEmpty() && flushing.isEmpty()) {
+                return;
+            }
+            batch = merge(flushing, pending);
+            flushing = batch;
+            pending = new ConcurrentHashMap<>();
+            pendingCount.set(0);
+        } finally {
+            buffersLock.writeLock().unlock();
+        }
+
+        var likes = new ArrayList<Like>();
+        var unlikes = new ArrayList<Like>();
+        batch.forEach((filmId, users) -> users.forEach((userId, liked) ->
+                (liked ? likes : unlikes).add(new Like(filmId, userId))));
+        var refused = 0;
+        try {
+            for (int from = 0; from < likes.size(); from += WRITE_BATCH) {
+                for (var result : delegate.addLikes(likes.subList(from, Math.min(from + WRITE_BATCH, likes.size())))) {
+                    if (result.getStatus() != LikeStatus.ADDED) {
+                        refused++;
+                    }
+                }
+            }
+            for (int from = 0; from < unlikes.size(); from += WRITE_BATCH) {
+                delegate.deleteLikes(unlikes.subList(from, Math.min(from + WRITE_BATCH, unlikes.size())));
+            }
+        } catch (RuntimeException e) {
+            if (++failedFlushes < MAX_FLUSH_ATTEMPTS) {
+                log.error("{} buffered likes haven't been flushed, they will be retried",
+                        likes.size() + unlikes.size(), e);
+                return;
+            }
+            log.error("{} buffered likes haven't been flushed {} times in a row, they are dropped",
+                    likes.size() + unlikes.size(), failedFlushes, e);
+        }
+        failedFlushes = 0;
+
+        buffersLock.writeLock().lock();
+        try {
+            flushing = Map.of();
+        } finally {
+            buffersLock.writeLock().unlock();
+        }
+        log.debug("{} likes and {} unlikes have been flushed, {} likes have been refused", likes.size(),
+                unlikes.size(), refused);
+    }
+
+    /**
+     * Stops the periodic flushes and writes what is left in the buffer.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(1, TimeUnit.MINUTES);
+        flush();
+    }
+
+    private void change(int filmId, int userId, boolean liked) {
+        var requestFlush = false;
+        buffersLock.readLock().lock();
+        try {
+            synchronized (lockFor(filmId)) {
+                if (Objects.equals(bufferedState(filmId, userId), liked)) {
+                    if (liked) {
+                        throw new DuplicateKeyException("film " + filmId + " is already liked by user " + userId);
+                    }
+                    throw new NoSuchElementException();
+                }
+                // the state of the pair in the underlying storage isn't known, so a change is never cancelled
+                // by the one buffered before, it replaces it
+                var filmPending = pending.computeIfAbsent(filmId, id -> new HashMap<>());
+                if (filmPending.put(userId, liked) == null) {
+                    requestFlush = pendingCount.incrementAndGet() >= maxPending;
+                }
+            }
+        } finally {
+            buffersLock.readLock().unlock();
+        }
+        if (requestFlush && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // the storage is being closed, the buffer is flushed right here instead
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Returns whether the user will like the film once the buffers are flushed, or {@code null} if the pair
+     * isn't buffered. Must be called with the buffers shared and the film's stripe locked.
+     */
+    private Boolean bufferedState(int filmId, int userId) {
+        for (var buffer : List.of(pending, flushing)) {
+            var filmBuffer = buffer.get(filmId);
+            var liked = filmBuffer == null ? null : filmBuffer.get(userId);
+            if (liked != null) {
+                return liked;
+            }
+        }
+        return null;
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        buffersLock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            buffersLock.readLock().unlock();
+        }
+    }
+
+    private <C extends Collection<Film>> C overlay(C films) {
+        films.forEach(this::overlay);
+        return films;
+    }
+
+    /**
+     * Must be called with the buffers shared.
+     */
+    private Film overlay(Film film) {
+        var filmFlushing = flushing.get(film.getId());
+        Map<Integer, Boolean> filmPending;
+        synchronized (lockFor(film.getId())) {
+            filmPending = pending.containsKey(film.getId()) ? new HashMap<>(pending.get(film.getId())) : null;
+        }
+        if (filmFlushing == null && filmPending == null) {
+            return film;
+        }
+        var likes = film.getLikes() == null ? new IntSet() : new IntSet(film.getLikes());
+        for (var buffer : Arrays.asList(filmFlushing, filmPending)) {
+            if (buffer != null) {
+                buffer.forEach((userId, liked) -> {
+                    if (liked) {
+                        likes.addInt(userId);
+                    } else {
+                        likes.removeInt(userId);
+                    }
+                });
+            }
+        }
+        film.setLikes(likes);
+        return film;
+    }
+
+    private Object lockFor(int filmId) {
+        return locks[Math.floorMod(filmId, LOCK_STRIPES)];
+    }
+
+    private static Map<Integer, Map<Integer, Boolean>> merge(Map<Integer, Map<Integer, Boolean>> older,
+                                                             Map<Integer, Map<Integer, Boolean>> newer) {
+        var merged = new HashMap<Integer, Map<Integer, Boolean>>();
+        for (var buffer : List.of(older, newer)) {
+            buffer.forEach((filmId, users) ->
+                    merged.computeIfAbsent(filmId, id -> new HashMap<>()).putAll(users));
+        }
+        return merged.entrySet().stream()
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, e -> Map.copyOf(e.getValue())));
+    }
+}
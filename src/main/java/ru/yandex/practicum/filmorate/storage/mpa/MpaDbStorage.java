@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.storage.mpa;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The {@code mpa} table is a small fixed dictionary, so it is read once on startup and then served from memory.
+ * Every lookup returns a copy, callers can't change the dictionary through the returned objects.
+ */
+@Slf4j
+@Repository
+@Qualifier("MpaDbStorage")
+public class MpaDbStorage implements MpaStorage {
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Map<Integer, Mpa> rates;
+
+    @Autowired
+    public MpaDbStorage(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        reload();
+    }
+
+    @Override
+    public Collection<Mpa> getAll() {
+        return rates.values().stream()
+                .map(MpaDbStorage::copy)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Mpa getById(int mpaId) {
+        var mpa = rates.get(mpaId);
+        if (mpa == null) {
+            throw new NoSuchElementException();
+        }
+        return copy(mpa);
+    }
+
+    @Override
+    public boolean contains(int mpaId) {
+        return rates.containsKey(mpaId);
+    }
+
+    @Override
+    public void reload() {
+        final String sql = "select id, name from mpa order by id";
+        var loaded = jdbcTemplate.query(sql, (rs, i) -> new Mpa(rs.getInt("id"), rs.getString("name").trim()));
+        rates = Collections.unmodifiableMap(loaded.stream()
+                .collect(Collectors.toMap(Mpa::getId, Function.identity(), (a, b) -> a, LinkedHashMap::new)));
+        log.debug("{} mpa rates have been loaded", rates.size());
+    }
+
+    private static Mpa copy(Mpa mpa) {
+        return new Mpa(mpa.getId(), mpa.getName());
+    }
+}
@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.storage.mpa;
+
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.util.Collection;
+
+public interface MpaStorage {
+
+    Collection<Mpa> getAll();
+
+    /**
+     * @throws java.util.NoSuchElementException if there is no rate with the id
+     */
+    Mpa getById(int mpaId);
+
+    boolean contains(int mpaId);
+
+    /**
+     * Re-reads the rates from the underlying source.
+     */
+    void reload();
+}
@@ -0,0 +1,137 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.CacheStats;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Serves {@link #getById} from a bounded cache. Every change of a user through this storage drops the user
+ * from the cache, changes made around it are picked up once the cached user expires.
+ */
+public class CachingUserStorage implements UserStorage {
+
+    private final UserStorage delegate;
+    private final EntityCache<User> cache;
+
+    public CachingUserStorage(UserStorage delegate, int maxSize, Duration ttl) {
+        this.delegate = delegate;
+        this.cache = new EntityCache<>(maxSize, ttl, CachingUserStorage::copy);
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        return delegate.getAllUsers();
+    }
+
+    @Override
+    public Collection<User> getAllUsers(boolean withFriends) {
+        return delegate.getAllUsers(withFriends);
+    }
+
+    @Override
+    public List<User> getUsersPage(int afterId, int limit) {
+        return delegate.getUsersPage(afterId, limit);
+    }
+
+    @Override
+    public List<User> getUsersPage(int afterId, int limit, boolean withFriends) {
+        return delegate.getUsersPage(afterId, limit, withFriends);
+    }
+
+    @Override
+    public void forEachUser(Consumer<User> action) {
+        delegate.forEachUser(action);
+    }
+
+    @Override
+    public User addUser(User user) {
+        return delegate.addUser(user);
+    }
+
+    @Override
+    public List<Integer> addUsers(List<User> users) {
+        return delegate.addUsers(users);
+    }
+
+    @Override
+    public void validate(User user) {
+        delegate.validate(user);
+    }
+
+    @Override
+    public void updateUser(User user) {
+        try {
+            delegate.updateUser(user);
+        } finally {
+            cache.invalidate(user.getId());
+        }
+    }
+
+    @Override
+    public Optional<User> findUserById(int userId) {
+        return delegate.findUserById(userId);
+    }
+
+    @Override
+    public boolean exists(int userId) {
+        return delegate.exists(userId);
+    }
+
+    @Override
+    public User getById(int userId) {
+        return cache.get(userId, delegate::getById);
+    }
+
+    /**
+     * Users without friends aren't cached, only the whole user is.
+     */
+    @Override
+    public User getById(int userId, boolean withFriends) {
+        return withFriends ? getById(userId) : delegate.getById(userId, false);
+    }
+
+    @Override
+    public List<User> getByIds(List<Integer> userIds) {
+        return delegate.getByIds(userIds);
+    }
+
+    @Override
+    public void addFriend(int from, int to) {
+        try {
+            delegate.addFriend(from, to);
+        } finally {
+            cache.invalidate(from);
+        }
+    }
+
+    @Override
+    public void deleteFriend(Integer userId, Integer friendId) {
+        try {
+            delegate.deleteFriend(userId, friendId);
+        } finally {
+            cache.invalidate(userId);
+        }
+    }
+
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    private static User copy(User user) {
+        return User.builder()
+                .id(user.getId())
+                .email(user.getEmail())
+                .login(user.getLogin())
+                .name(user.getName())
+                .birthday(user.getBirthday())
+                .friends(user.getFriends() == null ? null : new IntSet(user.getFriends()))
+                .build();
+    }
+}
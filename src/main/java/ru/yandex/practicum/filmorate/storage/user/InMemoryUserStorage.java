@@ -2,78 +2,256 @@ package ru.yandex.practicum.filmorate.storage.user;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.IntSet;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+import static ru.yandex.practicum.filmorate.storage.Snapshots.*;
+
+/**
+ * Keeps users in a concurrent map and the friends of every user in a separate set. A friend set is only read
+ * or changed while holding the lock of its stripe, so friendships of different users rarely contend.
+ * Returned users are copies, changing them doesn't change the storage.
+ */
 @Component
 @Slf4j
 @Qualifier("InMemoryUserStorage")
 public class InMemoryUserStorage implements UserStorage {
+    private static final int LOCK_STRIPES = 64;
 
-    private Map<Integer, User> users = new HashMap<>();
+    private final Map<Integer, User> users = new ConcurrentHashMap<>();
+    private final Map<Integer, IntSet> friends = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final AtomicInteger lastId = new AtomicInteger(1);
 
-    public Map<Integer, User> getUsers() {
-        return users;
+    public InMemoryUserStorage() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
     }
 
-    public void setUsers(Map<Integer, User> users) {
-        this.users = users;
+    public int getLastId() {
+        return lastId.get();
     }
 
-    private int lastId = 1;
+    public void setLastId(int lastId) {
+        this.lastId.set(lastId);
+    }
 
     @Override
     public Collection<User> getAllUsers() {
-        log.debug(users.toString().toUpperCase());
-        log.debug("users {} has been added", users.toString().toUpperCase());
-        return users.values();
+        return getAllUsers(true);
+    }
+
+    @Override
+    public Collection<User> getAllUsers(boolean withFriends) {
+        return users.values().stream()
+                .sorted(Comparator.comparingInt(User::getId))
+                .map(user -> withFriends ? withFriends(user) : copy(user, null))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<User> getUsersPage(int afterId, int limit) {
+        return getUsersPage(afterId, limit, true);
+    }
+
+    @Override
+    public List<User> getUsersPage(int afterId, int limit, boolean withFriends) {
+        return users.values().stream()
+                .filter(user -> user.getId() > afterId)
+                .sorted(Comparator.comparingInt(User::getId))
+                .limit(limit)
+                .map(user -> withFriends ? withFriends(user) : copy(user, null))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void forEachUser(Consumer<User> action) {
+        users.values().stream()
+                .sorted(Comparator.comparingInt(User::getId))
+                .map(this::withFriends)
+                .forEach(action);
     }
 
     @Override
     public User addUser(User user) {
         validate(user);
-        user.setId(lastId++);
-        users.put(user.getId(), user);
-        log.debug("user {} has been added", users.toString().toUpperCase());
-        return user;
+        user.setId(lastId.getAndIncrement());
+        friends.put(user.getId(), new IntSet());
+        users.put(user.getId(), copy(user, null));
+        log.debug("user {} has been added", user.getLogin());
+        return withFriends(user);
+    }
+
+    @Override
+    public List<Integer> addUsers(List<User> users) {
+        return users.stream()
+                .map(user -> addUser(user).getId())
+                .collect(Collectors.toList());
     }
 
     @Override
     public void updateUser(User user) {
         validate(user);
-        getById(user.getId());
-        users.put(user.getId(), user);
-        log.debug("users {} has been updated", users.toString().toUpperCase());
+        if (users.replace(user.getId(), copy(user, null)) == null) {
+            throw new NoSuchElementException();
+        }
+        log.debug("user {} has been updated", user.getLogin());
     }
 
     @Override
     public User getById(int userId) {
-        if (!users.containsKey(userId)) {
+        return getById(userId, true);
+    }
+
+    @Override
+    public User getById(int userId, boolean withFriends) {
+        var user = users.get(userId);
+        if (user == null) {
             throw new NoSuchElementException();
         }
-        return users.get(userId);
+        return withFriends ? withFriends(user) : copy(user, null);
+    }
+
+    @Override
+    public List<User> getByIds(List<Integer> userIds) {
+        return userIds.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(this::withFriends)
+                .collect(Collectors.toList());
     }
 
     @Override
     public void addFriend(int from, int to) {
-        throw new NoSuchElementException();
+        var userFriends = friends.get(from);
+        if (userFriends == null || !users.containsKey(to)) {
+            throw new NoSuchElementException();
+        }
+        synchronized (lockFor(from)) {
+            if (!userFriends.addInt(to)) {
+                throw new DuplicateKeyException("user " + to + " is already a friend of user " + from);
+            }
+        }
     }
 
     @Override
     public void deleteFriend(Integer userId, Integer friendId) {
-        throw new NoSuchElementException();
+        var userFriends = friends.get(userId);
+        if (userFriends == null) {
+            return;
+        }
+        synchronized (lockFor(userId)) {
+            userFriends.removeInt(friendId);
+        }
     }
 
     @Override
     public Optional<User> findUserById(int userId) {
-        return Optional.empty();
+        return Optional.ofNullable(users.get(userId)).map(this::withFriends);
+    }
+
+    @Override
+    public boolean exists(int userId) {
+        return users.containsKey(userId);
+    }
+
+    /**
+     * Writes every user with their friends to the snapshot. Users are written one by one while the storage
+     * keeps serving requests, so every user is consistent on their own but users aren't taken at the same moment.
+     */
+    public void writeSnapshot(DataOutput out) throws IOException {
+        for (var user : users.values()) {
+            IntSet userFriends;
+            synchronized (lockFor(user.getId())) {
+                userFriends = new IntSet(friends.getOrDefault(user.getId(), new IntSet()));
+            }
+            out.writeBoolean(true);
+            out.writeInt(user.getId());
+            writeString(out, user.getEmail());
+            writeString(out, user.getLogin());
+            writeString(out, user.getName());
+            writeDate(out, user.getBirthday());
+            writeInts(out, userFriends);
+        }
+        out.writeBoolean(false);
+        // taken after the users, so it's above the id of any user written
+        out.writeInt(lastId.get());
+    }
+
+    /**
+     * Replaces the users of the storage with the ones from a snapshot written by {@link #writeSnapshot}.
+     * Friends missing from the snapshot are dropped.
+     *
+     * @return the number of users read
+     */
+    public int readSnapshot(DataInput in) throws IOException {
+        users.clear();
+        friends.clear();
+        while (in.readBoolean()) {
+            var user = User.builder()
+                    .id(in.readInt())
+                    .email(readString(in))
+                    .login(readString(in))
+                    .name(readString(in))
+                    .birthday(readDate(in))
+                    .build();
+            friends.put(user.getId(), readInts(in));
+            users.put(user.getId(), user);
+        }
+        // a friend may only be known once all the users have been read
+        friends.replaceAll((userId, userFriends) -> {
+            var kept = new IntSet();
+            for (var iterator = userFriends.intIterator(); iterator.hasNext(); ) {
+                var friendId = iterator.nextInt();
+                if (users.containsKey(friendId)) {
+                    kept.addInt(friendId);
+                }
+            }
+            return kept;
+        });
+        lastId.set(in.readInt());
+        return users.size();
+    }
+
+    private Object lockFor(int userId) {
+        return locks[Math.floorMod(userId, LOCK_STRIPES)];
     }
 
-    private void validate(User user) {
+    private User withFriends(User user) {
+        IntSet userFriends;
+        synchronized (lockFor(user.getId())) {
+            userFriends = new IntSet(friends.getOrDefault(user.getId(), new IntSet()));
+        }
+        return copy(user, userFriends);
+    }
+
+    private static User copy(User user, Set<Integer> friends) {
+        return User.builder()
+                .id(user.getId())
+                .email(user.getEmail())
+                .login(user.getLogin())
+                .name(user.getName())
+                .birthday(user.getBirthday())
+                .friends(friends)
+                .build();
+    }
+
+    @Override
+    public void validate(User user) {
         if (user.getEmail() == null || user.getEmail().contains(" ") || !(user.getEmail().contains("@"))) {
             throw new ValidationException("The user email must include @, should be without spaces " +
                     "and shouldn't be blank");
@@ -3,25 +3,38 @@ package ru.yandex.practicum.filmorate.storage.user;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.IntSet;
 import ru.yandex.practicum.filmorate.model.User;
 
 import javax.validation.Valid;
 import java.sql.*;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Repository
 @Qualifier("UserDbStorage")
 public class UserDbStorage implements UserStorage {
 
+    // keeps IN lists short enough for the database to plan them as index lookups
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
     private final JdbcTemplate jdbcTemplate;
 
     @Autowired
@@ -30,7 +43,60 @@ public class UserDbStorage implements UserStorage {
     }
 
     public Collection<User> getAllUsers() {
-        return jdbcTemplate.query("select * from users", this::mapRowToUser);
+        return getAllUsers(true);
+    }
+
+    @Override
+    public Collection<User> getAllUsers(boolean withFriends) {
+        var users = jdbcTemplate.query("select * from users order by id", this::mapRowToUser);
+        if (!withFriends) {
+            return users;
+        }
+        var friends = loadAllFriends();
+        users.forEach(user -> user.setFriends(friends.getOrDefault(user.getId(), new IntSet())));
+        return users;
+    }
+
+    @Override
+    public List<User> getUsersPage(int afterId, int limit) {
+        return getUsersPage(afterId, limit, true);
+    }
+
+    @Override
+    public List<User> getUsersPage(int afterId, int limit, boolean withFriends) {
+        final String sql = "select * from users where id > ? order by id limit ?";
+        var users = jdbcTemplate.query(sql, this::mapRowToUser, afterId, limit);
+        return withFriends ? withFriends(users) : users;
+    }
+
+    /**
+     * Reads users together with their friends in one ordered query and hands each user over as soon as its
+     * last friendship row has been read, so only one user is held in memory at a time.
+     */
+    @Override
+    public void forEachUser(Consumer<User> action) {
+        final String sql = "select u.*, fr.to_id from users u " +
+                "left join friendship_requests fr on u.id = fr.from_id " +
+                "order by u.id";
+        var current = new User[1];
+        var currentFriends = new IntSet[1];
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            if (current[0] == null || current[0].getId() != rs.getInt("id")) {
+                if (current[0] != null) {
+                    action.accept(current[0]);
+                }
+                current[0] = mapRowToUser(rs, 0);
+                currentFriends[0] = new IntSet();
+                current[0].setFriends(currentFriends[0]);
+            }
+            var friendId = rs.getInt("to_id");
+            if (!rs.wasNull()) {
+                currentFriends[0].addInt(friendId);
+            }
+        });
+        if (current[0] != null) {
+            action.accept(current[0]);
+        }
     }
 
     public User addUser(@Valid User user) {
@@ -50,6 +116,31 @@ public class UserDbStorage implements UserStorage {
         return getById((Integer) keyHolder.getKey());
     }
 
+    @Override
+    @Transactional
+    public List<Integer> addUsers(List<User> users) {
+        final String sql = "insert into users(email, birthday, name, login) values (?, ?, ?, ?)";
+        return jdbcTemplate.execute((ConnectionCallback<List<Integer>>) connection -> {
+            try (var preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (var user : users) {
+                    preparedStatement.setString(1, user.getEmail());
+                    preparedStatement.setDate(2, Date.valueOf(user.getBirthday()));
+                    preparedStatement.setString(3, user.getName());
+                    preparedStatement.setString(4, user.getLogin());
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+                var ids = new ArrayList<Integer>();
+                try (var keys = preparedStatement.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.add(keys.getInt(1));
+                    }
+                }
+                return ids;
+            }
+        });
+    }
+
     public void updateUser(User user) {
         getById(user.getId());
         validate(user);
@@ -66,17 +157,48 @@ public class UserDbStorage implements UserStorage {
     @Override
     public Optional<User> findUserById(int userId) {
         final String sql = "select * from users where id = ?";
-        var users = jdbcTemplate.query(sql, this::mapRowToUser, userId);
+        var users = jdbcTemplate.query(sql, this::mapRowToUserWithFriends, userId);
         if (users.isEmpty()) {
             return Optional.empty();
         }
         return Optional.of(users.get(0));
     }
 
+    @Override
+    public boolean exists(int userId) {
+        final String sql = "select 1 from users where id = ?";
+        return !jdbcTemplate.queryForList(sql, Integer.class, userId).isEmpty();
+    }
+
     @Override
     public User getById(int userId) {
+        return getById(userId, true);
+    }
+
+    @Override
+    public User getById(int userId, boolean withFriends) {
         final String sql = "select * from users where id = ?";
-        return jdbcTemplate.queryForObject(sql, this::mapRowToUser, userId);
+        return jdbcTemplate.queryForObject(sql, withFriends ? this::mapRowToUserWithFriends : this::mapRowToUser,
+                userId);
+    }
+
+    /**
+     * Loads the users {@value #MAX_IDS_PER_QUERY} at a time, two statements per chunk: one for the users
+     * and one for their friends.
+     */
+    @Override
+    public List<User> getByIds(List<Integer> userIds) {
+        var users = new HashMap<Integer, User>();
+        for (int from = 0; from < userIds.size(); from += MAX_IDS_PER_QUERY) {
+            var chunk = userIds.subList(from, Math.min(userIds.size(), from + MAX_IDS_PER_QUERY));
+            final String sql = "select * from users where id in (" + placeholders(chunk.size()) + ")";
+            withFriends(jdbcTemplate.query(sql, this::mapRowToUser, chunk.toArray()))
+                    .forEach(user -> users.put(user.getId(), user));
+        }
+        return userIds.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -92,26 +214,60 @@ public class UserDbStorage implements UserStorage {
     }
 
     private User mapRowToUser(ResultSet resultSet, int i) throws SQLException {
-        var userId = resultSet.getInt("id");
-
         return User.builder()
-                .id(userId)
+                .id(resultSet.getInt("id"))
                 .name(resultSet.getString("name"))
                 .email(resultSet.getString("email"))
                 .birthday(resultSet.getDate("birthday").toLocalDate())
                 .login(resultSet.getString("login"))
-                .friends(loadFriends(userId))
                 .build();
     }
 
-    private Set<Integer> loadFriends(int userId) {
+    private User mapRowToUserWithFriends(ResultSet resultSet, int i) throws SQLException {
+        var user = mapRowToUser(resultSet, i);
+        user.setFriends(loadFriends(user.getId()));
+        return user;
+    }
+
+    private List<User> withFriends(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        final String sql = "select from_id, to_id from friendship_requests where from_id in (" +
+                placeholders(users.size()) + ")";
+        var friends = new HashMap<Integer, IntSet>();
+        for (var user : users) {
+            var userFriends = new IntSet();
+            user.setFriends(userFriends);
+            friends.put(user.getId(), userFriends);
+        }
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs ->
+                        friends.get(rs.getInt("from_id")).addInt(rs.getInt("to_id")),
+                friends.keySet().toArray());
+        return users;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private Map<Integer, IntSet> loadAllFriends() {
+        final String sql = "select from_id, to_id from friendship_requests";
+        var friends = new HashMap<Integer, IntSet>();
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs ->
+                friends.computeIfAbsent(rs.getInt("from_id"), id -> new IntSet()).addInt(rs.getInt("to_id")));
+        return friends;
+    }
+
+    private IntSet loadFriends(int userId) {
         final String sql = "select * from friendship_requests where from_id = ? ";
-        var rows = jdbcTemplate.query(sql,
-                (resultSet, i) -> resultSet.getInt("to_id"), userId);
-        return new HashSet<>(rows);
+        var friends = new IntSet();
+        jdbcTemplate.query(sql, (RowCallbackHandler) resultSet -> friends.addInt(resultSet.getInt("to_id")), userId);
+        return friends;
     }
 
-    private void validate(User user) {
+    @Override
+    public void validate(User user) {
         if (user.getEmail() == null || user.getEmail().contains(" ") || !(user.getEmail().contains("@"))) {
             throw new ValidationException("The user email must include @, should be without spaces " +
                     "and shouldn't be blank");
@@ -3,20 +3,74 @@ package ru.yandex.practicum.filmorate.storage.user;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface UserStorage {
 
     public Collection<User> getAllUsers();
 
+    /**
+     * Same as {@link #getAllUsers()}, but the friends are only loaded if {@code withFriends} is set, otherwise
+     * they are left null.
+     */
+    Collection<User> getAllUsers(boolean withFriends);
+
+    /**
+     * Returns up to {@code limit} users with ids greater than {@code afterId}, ordered by id.
+     */
+    List<User> getUsersPage(int afterId, int limit);
+
+    /**
+     * Same as {@link #getUsersPage(int, int)}, but the friends are only loaded if {@code withFriends} is set,
+     * otherwise they are left null.
+     */
+    List<User> getUsersPage(int afterId, int limit, boolean withFriends);
+
+    /**
+     * Passes every user to the action in id order without collecting them in memory.
+     */
+    void forEachUser(Consumer<User> action);
+
     public User addUser(User user);
 
+    /**
+     * Adds all the users at once. The users are expected to have passed {@link #validate}.
+     *
+     * @return ids of the users in the order of the list
+     */
+    List<Integer> addUsers(List<User> users);
+
+    /**
+     * Checks the user against the rules {@link #addUser} applies. A user without a name gets their login as one.
+     *
+     * @throws ru.yandex.practicum.filmorate.exceptions.ValidationException if the user breaks one of them
+     */
+    void validate(User user);
+
     public void updateUser(User user);
 
     Optional<User> findUserById(int userId);
 
+    /**
+     * Tells whether the user exists without loading them.
+     */
+    boolean exists(int userId);
+
     User getById(int userId);
 
+    /**
+     * Same as {@link #getById(int)}, but the friends are only loaded if {@code withFriends} is set, otherwise
+     * they are left null.
+     */
+    User getById(int userId, boolean withFriends);
+
+    /**
+     * Returns users with the given ids in the order of the ids, skipping ids that don't exist.
+     */
+    List<User> getByIds(List<Integer> userIds);
+
     void addFriend(int from, int to);
 
     void deleteFriend(Integer userId, Integer friendId);
@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.metrics.CacheMetrics;
+import ru.yandex.practicum.filmorate.storage.StorageMode;
+
+import java.time.Duration;
+
+@Configuration
+public class UserStorageConfiguration {
+
+    /**
+     * The storage the application works with: the in-memory storage if {@code filmorate.storage} is
+     * {@link StorageMode#MEMORY}, otherwise the database storage, with users cached in front of it
+     * if {@code filmorate.cache.enabled} is set, with the cache counters published as {@link CacheMetrics}.
+     */
+    @Bean
+    @Qualifier("UserStorage")
+    public UserStorage userStorage(@Value("${filmorate.storage}") StorageMode storageMode,
+                                   @Qualifier("UserDbStorage") UserStorage userDbStorage,
+                                   @Qualifier("InMemoryUserStorage") UserStorage inMemoryUserStorage,
+                                   @Value("${filmorate.cache.enabled}") boolean cache,
+                                   @Value("${filmorate.cache.max-size}") int cacheSize,
+                                   @Value("${filmorate.cache.ttl}") Duration cacheTtl,
+                                   MeterRegistry meterRegistry) {
+        var userStorage = storageMode == StorageMode.MEMORY ? inMemoryUserStorage : userDbStorage;
+        if (!cache) {
+            return userStorage;
+        }
+        var cachingUserStorage = new CachingUserStorage(userStorage, cacheSize, cacheTtl);
+        CacheMetrics.register(meterRegistry, "users", cachingUserStorage, CachingUserStorage::getStats);
+        return cachingUserStorage;
+    }
+}
@@ -18,9 +18,12 @@ create table if not exists films
     release_date datetime     not null,
     duration     int          not null,
     mpa_id       int,
+    like_count   int          not null default 0,
     foreign key (mpa_id) references mpa (id)
 );
 
+create index if not exists films_like_count_idx on films (like_count desc, id);
+
 create table if not exists users
 (
     id       int auto_increment primary key,
@@ -32,13 +35,16 @@ create table if not exists users
 
 create table if not exists likes
 (
-    film_id int not null,
-    user_id int not null,
+    film_id    int       not null,
+    user_id    int       not null,
+    created_at timestamp not null default current_timestamp,
     foreign key (film_id) references films (id),
     foreign key (user_id) references users (id),
     primary key (film_id, user_id)
 );
 
+create index if not exists likes_created_at_idx on likes (created_at);
+
 create table if not exists friendship_requests
 (
     from_id int not null,
@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.util.function.Supplier;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The number of statements a request may run, whatever the amount of data. A budget is meant to be checked
+ * on a small dataset and again on a larger one: a request that runs a statement per row stays within its
+ * budget on one of them at most.
+ */
+public class QueryBudget {
+
+    private final String name;
+    private final int statements;
+    private final Supplier<RequestBuilder> request;
+
+    private QueryBudget(String name, int statements, Supplier<RequestBuilder> request) {
+        this.name = name;
+        this.statements = statements;
+        this.request = request;
+    }
+
+    /**
+     * @param request builds the request, it is called for every check, so the request may depend on the data
+     */
+    public static QueryBudget of(String name, int statements, Supplier<RequestBuilder> request) {
+        return new QueryBudget(name, statements, request);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Performs the request, which must succeed, and returns the number of statements it has run.
+     */
+    public int measure(MockMvc mockMvc, QueryCounter queryCounter) throws Exception {
+        queryCounter.reset();
+        mockMvc.perform(request.get()).andExpect(status().is2xxSuccessful());
+        return queryCounter.get();
+    }
+
+    /**
+     * Performs the request and describes how it has overrun the budget, if it has.
+     *
+     * @return the description of the overrun, or {@code null} if the request has kept within the budget
+     */
+    public String check(MockMvc mockMvc, QueryCounter queryCounter, String dataset) throws Exception {
+        var actual = measure(mockMvc, queryCounter);
+        if (actual <= statements) {
+            return null;
+        }
+        return String.format("%s has run %d statements on the %s dataset, its budget is %d",
+                name, actual, dataset, statements);
+    }
+}
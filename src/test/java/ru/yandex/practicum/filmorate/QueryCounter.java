@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import ru.yandex.practicum.filmorate.metrics.StatementCountingDataSource;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wraps the application {@link DataSource} and counts every statement prepared or created on it.
+ * Import it into a Spring test to check how many queries a piece of code runs.
+ */
+@TestConfiguration
+public class QueryCounter implements BeanPostProcessor, StatementCountingDataSource.Listener {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    public int get() {
+        return count.get();
+    }
+
+    public void reset() {
+        count.set(0);
+    }
+
+    @Override
+    public void statementIssued() {
+        count.incrementAndGet();
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource) {
+            return new StatementCountingDataSource((DataSource) bean, () -> this);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.ExportRecord;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+class ExportControllerTest {
+
+    @Autowired
+    @Qualifier("FilmDbStorage")
+    private FilmStorage filmStorage;
+
+    @Autowired
+    @Qualifier("UserDbStorage")
+    private UserStorage userStorage;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void testExport() throws Exception {
+        var user = UserControllerTest.getValidUser();
+        user.setId(userStorage.addUser(user).getId());
+        userStorage.addUser(UserControllerTest.getValidUser());
+        userStorage.addFriend(2, 1);
+        var film = FilmControllerTest.getValidFilm();
+        film.setId(filmStorage.addFilm(film));
+        filmStorage.addLike(film.getId(), 2);
+        var result = this
+                .mockMvc
+                .perform(get("/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        var body = this
+                .mockMvc
+                .perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(CollectionResponses.APPLICATION_GZIP))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + ExportController.FILENAME + "\""))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+
+        List<String> lines;
+        try (var reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(body)), StandardCharsets.UTF_8))) {
+            lines = reader.lines().collect(Collectors.toList());
+        }
+        assertEquals(5, lines.size());
+        user.setFriends(null);
+        film.setLikes(null);
+        assertEquals(user, objectMapper.readValue(lines.get(0), ExportRecord.class).getUser());
+        assertEquals(film, objectMapper.readValue(lines.get(2), ExportRecord.class).getFilm());
+        var like = objectMapper.readTree(lines.get(3)).get("like");
+        assertEquals(film.getId(), like.get("filmId").asInt());
+        assertEquals(2, like.get("userId").asInt());
+        assertTrue(like.get("createdAt").isTextual());
+        assertEquals("{\"friendship\":{\"from\":2,\"to\":1}}", lines.get(4));
+    }
+}
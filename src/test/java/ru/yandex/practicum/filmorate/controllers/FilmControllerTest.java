@@ -13,17 +13,20 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.ResultMatcher;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.time.LocalDate;
 import java.util.HashSet;
+import java.util.List;
 
+import static org.hamcrest.Matchers.contains;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 @SpringBootTest
@@ -35,6 +38,10 @@ class FilmControllerTest {
     @Qualifier("FilmDbStorage")
     private FilmStorage filmStorage;
 
+    @Autowired
+    @Qualifier("UserDbStorage")
+    private UserStorage userStorage;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -42,7 +49,7 @@ class FilmControllerTest {
     private ObjectMapper objectMapper;
 
 
-    private Film getValidFilm() {
+    public static Film getValidFilm() {
         var film = Film.builder()
                 .name("qwe")
                 .description("descr")
@@ -121,6 +128,189 @@ class FilmControllerTest {
 
     }
 
+    @Test
+    public void testPagination() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            filmStorage.addFilm(getValidFilm());
+        }
+        this
+                .mockMvc
+                .perform(get("/films").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "2"))
+                .andExpect(jsonPath("$[*].id").value(contains(1, 2)));
+
+        this
+                .mockMvc
+                .perform(get("/films").param("after", "4").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$[*].id").value(contains(5)));
+
+        this
+                .mockMvc
+                .perform(get("/films").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testFieldProjection() throws Exception {
+        var filmId = filmStorage.addFilm(getValidFilm());
+
+        this
+                .mockMvc
+                .perform(get("/films").param("fields", "name,mpa"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"name\": \"qwe\", \"mpa\": {\"id\": 1, \"name\": \"G\"}}]", true));
+        this
+                .mockMvc
+                .perform(get("/films/{id}", filmId).param("fields", "id,likes"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\": " + filmId + ", \"likes\": []}", true));
+        this
+                .mockMvc
+                .perform(get("/films").param("fields", ","))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        var film = getValidFilm();
+        film.setId(filmStorage.addFilm(film));
+        var otherFilm = getValidFilm();
+        otherFilm.setId(filmStorage.addFilm(otherFilm));
+        var result = this
+                .mockMvc
+                .perform(get("/films/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this
+                .mockMvc
+                .perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(objectMapper.writeValueAsString(film) + "\n"
+                        + objectMapper.writeValueAsString(otherFilm) + "\n"));
+    }
+
+    @Test
+    public void testGetSimilar() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            filmStorage.addFilm(getValidFilm());
+            userStorage.addUser(UserControllerTest.getValidUser());
+        }
+        for (var like : List.of(List.of(1, 1), List.of(2, 1), List.of(1, 2), List.of(2, 2), List.of(3, 2))) {
+            this.mockMvc.perform(put("/films/{id}/like/{userId}", like.get(0), like.get(1)))
+                    .andExpect(status().isOk());
+        }
+
+        this.mockMvc.perform(get("/films/1/similar"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(2, 3)));
+        this.mockMvc.perform(get("/films/3/similar?count=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(1)));
+        this.mockMvc.perform(get("/films/1/similar?count=0"))
+                .andExpect(status().isBadRequest());
+        this.mockMvc.perform(get("/films/9/similar"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testGetTrending() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            filmStorage.addFilm(getValidFilm());
+            userStorage.addUser(UserControllerTest.getValidUser());
+        }
+        for (var like : List.of(List.of(1, 1), List.of(2, 1), List.of(2, 2))) {
+            this.mockMvc.perform(put("/films/{id}/like/{userId}", like.get(0), like.get(1)))
+                    .andExpect(status().isOk());
+        }
+
+        this.mockMvc.perform(get("/films/trending").param("window", "PT1H"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(2, 1)));
+        this.mockMvc.perform(get("/films/trending").param("count", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(2)));
+        this.mockMvc.perform(get("/films/trending").param("window", "PT5M"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        var film = getValidFilm();
+        film.setName("Blade Runner");
+        this.mockMvc.perform(post("/films")
+                        .content(objectMapper.writeValueAsString(film))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        film.setId(1);
+        film.setName("Blade Runner 2049");
+        this.mockMvc.perform(put("/films")
+                        .content(objectMapper.writeValueAsString(film))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        this.mockMvc.perform(get("/films/search").param("q", "run 2049"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", contains("Blade Runner 2049")));
+        this.mockMvc.perform(get("/films/search").param("q", "alien"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+        this.mockMvc.perform(get("/films/search").param("q", " "))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testAddLikes() throws Exception {
+        var filmId = filmStorage.addFilm(getValidFilm());
+        userStorage.addUser(UserControllerTest.getValidUser());
+        var likes = List.of(new Like(filmId, 1), new Like(filmId, 1), new Like(filmId, 2));
+        this
+                .mockMvc
+                .perform(put("/films/likes")
+                        .content(objectMapper.writeValueAsString(likes))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].status").value(contains("ADDED", "DUPLICATE", "NOT_FOUND")));
+
+        this
+                .mockMvc
+                .perform(get("/films/popular"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].likes").value(contains(1)));
+    }
+
+    @Test
+    public void testImportFilms() throws Exception {
+        var invalid = getValidFilm();
+        invalid.setDescription("");
+        var body = objectMapper.writeValueAsString(getValidFilm()) + "\n" +
+                objectMapper.writeValueAsString(invalid) + "\n";
+        this
+                .mockMvc
+                .perform(post("/films/import")
+                        .content(body)
+                        .contentType(MediaType.APPLICATION_NDJSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(2))
+                .andExpect(jsonPath("$.errors[0].message").value("The film description should be greater than 0"));
+        assertEquals(1, filmStorage.getAllFilms().size());
+
+        this
+                .mockMvc
+                .perform(post("/films/import")
+                        .content(body)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isUnsupportedMediaType());
+    }
+
     @Test
     public void validationTest() throws Exception {
         var film = getValidFilm();
@@ -139,6 +329,10 @@ class FilmControllerTest {
         film.setReleaseDate(LocalDate.of(1800, 12, 28));
         testStatus(film, status().is4xxClientError());
 
+        film = getValidFilm();
+        film.setMpa(new Mpa(9, null));
+        testStatus(film, status().is4xxClientError());
+
     }
 
     private void testStatus(Film film, ResultMatcher resultMatcher) throws Exception {
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class MpaControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testGetAll() throws Exception {
+        this
+                .mockMvc
+                .perform(get("/mpa"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().json("[{\"id\":1,\"name\":\"G\"},{\"id\":2,\"name\":\"PG\"}," +
+                        "{\"id\":3,\"name\":\"PG13\"},{\"id\":4,\"name\":\"R\"},{\"id\":5,\"name\":\"NC17\"}]", true));
+    }
+
+    @Test
+    public void testGetById() throws Exception {
+        this
+                .mockMvc
+                .perform(get("/mpa/4"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\":4,\"name\":\"R\"}", true));
+
+        this
+                .mockMvc
+                .perform(get("/mpa/9"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        jdbcTemplate.update("insert into mpa values (6, 'X')");
+        this
+                .mockMvc
+                .perform(get("/mpa/6"))
+                .andExpect(status().isNotFound());
+
+        this
+                .mockMvc
+                .perform(post("/mpa/reload"))
+                .andExpect(status().isOk());
+
+        this
+                .mockMvc
+                .perform(get("/mpa/6"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\":6,\"name\":\"X\"}", true));
+    }
+}
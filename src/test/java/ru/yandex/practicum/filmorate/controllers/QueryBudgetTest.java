@@ -0,0 +1,190 @@
+package ru.yandex.practicum.filmorate.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.QueryBudget;
+import ru.yandex.practicum.filmorate.QueryCounter;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.service.CoLikeIndex;
+import ru.yandex.practicum.filmorate.service.FriendshipGraph;
+import ru.yandex.practicum.filmorate.service.PopularityIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+
+/**
+ * Every endpoint declares how many statements it may run. The budgets are checked on a small and on a ten times
+ * larger dataset, so an endpoint that runs a statement per film, user, like or friend doesn't fit into its budget.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@Import(QueryCounter.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class QueryBudgetTest {
+    private static final int SMALL = 3;
+    private static final int LARGE = 30;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private QueryCounter queryCounter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PopularityIndex popularityIndex;
+
+    @Autowired
+    private FriendshipGraph friendshipGraph;
+
+    @Autowired
+    private CoLikeIndex coLikeIndex;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private int size;
+    // the mutating requests pick a new film or user on every call, so that every call succeeds
+    private int liked;
+    private int unliked;
+    private int befriending;
+    private int unfriending;
+
+    private final List<QueryBudget> budgets = List.of(
+            QueryBudget.of("GET /films", 2, () -> get("/films")),
+            QueryBudget.of("GET /films?limit", 2, () -> get("/films").param("limit", "100")),
+            QueryBudget.of("GET /films/{id}", 2, () -> get("/films/{id}", 1)),
+            QueryBudget.of("GET /films?fields", 1, () -> get("/films").param("fields", "id,name")),
+            QueryBudget.of("GET /films/{id}?fields", 1, () -> get("/films/{id}", 1).param("fields", "name")),
+            QueryBudget.of("GET /films/popular", 2, () -> get("/films/popular").param("count", "100")),
+            QueryBudget.of("POST /films", 3, () -> post("/films")
+                    .content(json(FilmControllerTest.getValidFilm()))
+                    .contentType(MediaType.APPLICATION_JSON)),
+            QueryBudget.of("PUT /films/likes", 4, () -> put("/films/likes")
+                    .content(json(IntStream.rangeClosed(1, size)
+                            .mapToObj(filmId -> new Like(filmId, 1))
+                            .collect(Collectors.toList())))
+                    .contentType(MediaType.APPLICATION_JSON)),
+            // no user likes the film with their own id, see grow(), user 1 likes films through PUT /films/likes
+            QueryBudget.of("PUT /films/{id}/like/{userId}", 2,
+                    () -> put("/films/{id}/like/{userId}", ++liked + 1, liked + 1)),
+            QueryBudget.of("DELETE /films/{id}/like/{userId}", 2,
+                    () -> delete("/films/{id}/like/{userId}", ++unliked + 1, unliked + 1)),
+            QueryBudget.of("POST /films/import", 1, () -> post("/films/import")
+                    .content(IntStream.rangeClosed(1, size)
+                            .mapToObj(i -> json(FilmControllerTest.getValidFilm()))
+                            .collect(Collectors.joining("\n")))
+                    .contentType(MediaType.APPLICATION_NDJSON)),
+            QueryBudget.of("GET /users", 2, () -> get("/users")),
+            QueryBudget.of("GET /users?limit", 2, () -> get("/users").param("limit", "100")),
+            QueryBudget.of("GET /users/{id}", 2, () -> get("/users/{id}", 1)),
+            QueryBudget.of("GET /users?fields", 1, () -> get("/users").param("fields", "id,name")),
+            QueryBudget.of("GET /users?limit&fields", 1, () -> get("/users")
+                    .param("limit", "100")
+                    .param("fields", "id,login")),
+            QueryBudget.of("GET /users/{id}?fields", 1, () -> get("/users/{id}", 1).param("fields", "name")),
+            QueryBudget.of("GET /users/{id}/friends", 4, () -> get("/users/{id}/friends", 1)),
+            QueryBudget.of("GET /users/{id}/friends/common/{otherId}", 6,
+                    () -> get("/users/{id}/friends/common/{otherId}", 1, 2)),
+            QueryBudget.of("GET /users/{id}/suggestions", 4, () -> get("/users/{id}/suggestions", 1)),
+            QueryBudget.of("POST /users", 3, () -> post("/users")
+                    .content(json(UserControllerTest.getValidUser()))
+                    .contentType(MediaType.APPLICATION_JSON)),
+            // user 1 is friends with every other user, but none of them is friends with user 1, see grow()
+            QueryBudget.of("PUT /users/{id}/friends/{friendId}", 3,
+                    () -> put("/users/{id}/friends/{friendId}", ++befriending + 1, 1)),
+            QueryBudget.of("DELETE /users/{id}/friends/{friendId}", 3,
+                    () -> delete("/users/{id}/friends/{friendId}", ++unfriending + 1, 1)),
+            QueryBudget.of("POST /users/import", 1, () -> post("/users/import")
+                    .content(IntStream.rangeClosed(1, size)
+                            .mapToObj(i -> json(UserControllerTest.getValidUser()))
+                            .collect(Collectors.joining("\n")))
+                    .contentType(MediaType.APPLICATION_NDJSON)),
+            QueryBudget.of("GET /mpa", 0, () -> get("/mpa")),
+            QueryBudget.of("GET /mpa/{id}", 0, () -> get("/mpa/{id}", 1))
+    );
+
+    @Test
+    public void testEndpointsKeepWithinBudgetsWhateverTheDataSize() throws Exception {
+        var overruns = new ArrayList<String>();
+        grow(SMALL);
+        var small = new ArrayList<Integer>();
+        for (var budget : budgets) {
+            overruns.add(budget.check(mockMvc, queryCounter, "small"));
+            small.add(budget.measure(mockMvc, queryCounter));
+        }
+        grow(LARGE);
+        for (int i = 0; i < budgets.size(); i++) {
+            overruns.add(budgets.get(i).check(mockMvc, queryCounter, "large"));
+            var large = budgets.get(i).measure(mockMvc, queryCounter);
+            if (large != small.get(i)) {
+                overruns.add(String.format("%s has run %d statements on the small dataset and %d on the large one",
+                        budgets.get(i).getName(), small.get(i), large));
+            }
+        }
+
+        overruns.removeIf(Objects::isNull);
+        assertTrue(overruns.isEmpty(), String.join("\n", overruns));
+    }
+
+    @Test
+    public void testOverrunIsReported() throws Exception {
+        grow(SMALL);
+        var tooTight = QueryBudget.of("GET /films/{id}", 1, () -> get("/films/{id}", 1));
+
+        assertEquals("GET /films/{id} has run 2 statements on the small dataset, its budget is 1",
+                tooTight.check(mockMvc, queryCounter, "small"));
+    }
+
+    /**
+     * Adds users and films up to the given number, every film is liked by the users that follow its id
+     * and every user is friends with the users that follow theirs.
+     */
+    private void grow(int newSize) throws InterruptedException {
+        // its statements would be counted against the requests measured next
+        coLikeIndex.awaitLoad();
+        jdbcTemplate.update("insert into users (name, email, birthday, login) " +
+                "select 'user' || x, 'user' || x || '@mail.com', date '1990-01-01', 'login' || x " +
+                "from system_range(?, ?)", size + 1, newSize);
+        jdbcTemplate.update("insert into films (name, description, release_date, duration, mpa_id) " +
+                "select 'film' || x, 'description' || x, date '2000-01-01', 90, mod(x, 5) + 1 " +
+                "from system_range(?, ?)", size + 1, newSize);
+        jdbcTemplate.update("insert into likes (film_id, user_id) " +
+                "select f.x, u.x from system_range(?, ?) f join system_range(1, ?) u on u.x > f.x",
+                size + 1, newSize, newSize);
+        jdbcTemplate.update("insert into friendship_requests (from_id, to_id) " +
+                "select u.x, f.x from system_range(1, ?) u join system_range(?, ?) f on u.x < f.x",
+                newSize, size + 1, newSize);
+        jdbcTemplate.update("update films set like_count = (select count(*) from likes where film_id = films.id)");
+        popularityIndex.reload();
+        friendshipGraph.reload();
+        size = newSize;
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.controllers;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpMethod;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Streams and exports tables that wouldn't fit in the heap if they were collected. Runs in the {@code small-heap}
+ * surefire execution with a reduced -Xmx, against a file database so the table itself isn't on the heap.
+ */
+@Tag("small-heap")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.datasource.url=jdbc:h2:file:./target/streaming-test/filmorate")
+class StreamingControllerTest {
+    private static final int ROWS = 300_000;
+    private static final int CHUNK = 50_000;
+    private static final long MAX_HEAP = 128 * 1024 * 1024;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void testStreamTablesLargerThanHeap() {
+        assertTrue(Runtime.getRuntime().maxMemory() <= MAX_HEAP, "the test should run with a small heap");
+        for (int from = 1; from <= ROWS; from += CHUNK) {
+            var to = from + CHUNK - 1;
+            jdbcTemplate.update("insert into users (name, email, birthday, login) " +
+                    "select 'user' || x, 'user' || x || '@mail.com', date '1990-01-01', 'login' || x " +
+                    "from system_range(?, ?)", from, to);
+            jdbcTemplate.update("insert into films (name, description, release_date, duration, mpa_id) " +
+                    "select 'film' || x, 'a generated film number ' || x, date '2000-01-01', 90, mod(x, 5) + 1 " +
+                    "from system_range(?, ?)", from, to);
+        }
+        for (int from = 1; from <= ROWS; from += CHUNK) {
+            var to = from + CHUNK - 1;
+            for (int shift : new int[]{1, 7}) {
+                jdbcTemplate.update("insert into friendship_requests (from_id, to_id) " +
+                        "select x, mod(x + ?, ?) + 1 from system_range(?, ?)", shift, ROWS, from, to);
+                jdbcTemplate.update("insert into likes (film_id, user_id) " +
+                        "select x, mod(x + ?, ?) + 1 from system_range(?, ?)", shift, ROWS, from, to);
+            }
+        }
+
+        assertEquals(ROWS, countLines("/users/stream", false));
+        assertEquals(ROWS, countLines("/films/stream", false));
+        assertEquals(6 * ROWS, countLines("/export", true));
+    }
+
+    private long countLines(String path, boolean gzipped) {
+        return restTemplate.execute(path, HttpMethod.GET, null, response -> {
+            var body = gzipped ? new GZIPInputStream(response.getBody()) : response.getBody();
+            try (var reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                return reader.lines().count();
+            }
+        });
+    }
+}
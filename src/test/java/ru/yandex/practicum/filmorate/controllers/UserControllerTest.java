@@ -17,11 +17,11 @@ import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 import java.time.LocalDate;
 import java.util.HashSet;
 
+import static org.hamcrest.Matchers.contains;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -109,6 +109,148 @@ public class UserControllerTest {
                 .andExpect(content().string("[" + objectMapper.writeValueAsString(user) + "]"));
     }
 
+    @Test
+    public void testPagination() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            userStorage.addUser(getValidUser());
+        }
+        this
+                .mockMvc
+                .perform(get("/users").param("after", "1").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "2"))
+                .andExpect(jsonPath("$[*].id").value(contains(2)));
+
+        this
+                .mockMvc
+                .perform(get("/users").param("after", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$[*].id").value(contains(3)));
+    }
+
+    @Test
+    public void testFriendsAndCommonFriendsComeInIdOrder() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            userStorage.addUser(getValidUser());
+        }
+        for (int friendId : new int[]{5, 3, 4}) {
+            userStorage.addFriend(1, friendId);
+        }
+        for (int friendId : new int[]{4, 5}) {
+            userStorage.addFriend(2, friendId);
+        }
+
+        this
+                .mockMvc
+                .perform(get("/users/1/friends"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(3, 4, 5)));
+        this
+                .mockMvc
+                .perform(get("/users/1/friends/common/2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(4, 5)));
+    }
+
+    @Test
+    public void testSuggestions() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            userStorage.addUser(getValidUser());
+        }
+        this.mockMvc.perform(put("/users/1/friends/2")).andExpect(status().isOk());
+        this.mockMvc.perform(put("/users/1/friends/3")).andExpect(status().isOk());
+        this.mockMvc.perform(put("/users/2/friends/4")).andExpect(status().isOk());
+        this.mockMvc.perform(put("/users/3/friends/4")).andExpect(status().isOk());
+        this.mockMvc.perform(put("/users/3/friends/5")).andExpect(status().isOk());
+
+        this
+                .mockMvc
+                .perform(get("/users/1/suggestions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(4, 5)));
+        this.mockMvc.perform(delete("/users/1/friends/3")).andExpect(status().isOk());
+        this
+                .mockMvc
+                .perform(get("/users/1/suggestions").param("count", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(4)));
+        this
+                .mockMvc
+                .perform(get("/users/1/suggestions").param("count", "0"))
+                .andExpect(status().isBadRequest());
+        this
+                .mockMvc
+                .perform(get("/users/42/suggestions"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testFieldProjection() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            userStorage.addUser(getValidUser());
+        }
+        userStorage.addFriend(1, 2);
+
+        this
+                .mockMvc
+                .perform(get("/users").param("fields", "id, login"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"id\": 1, \"login\": \"vvv\"}, {\"id\": 2, \"login\": \"vvv\"}]",
+                        true));
+        this
+                .mockMvc
+                .perform(get("/users").param("limit", "1").param("fields", "friends"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(CollectionResponses.NEXT_CURSOR_HEADER, "1"))
+                .andExpect(content().json("[{\"friends\": [2]}]", true));
+        this
+                .mockMvc
+                .perform(get("/users/1").param("fields", "name"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"name\": \"qwe\"}", true));
+        this
+                .mockMvc
+                .perform(get("/users").param("fields", "id,password"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        var user = userStorage.addUser(getValidUser());
+        var friend = userStorage.addUser(getValidUser());
+        userStorage.addFriend(user.getId(), friend.getId());
+        user.getFriends().add(friend.getId());
+        var result = this
+                .mockMvc
+                .perform(get("/users/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this
+                .mockMvc
+                .perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(objectMapper.writeValueAsString(user) + "\n"
+                        + objectMapper.writeValueAsString(friend) + "\n"));
+    }
+
+    @Test
+    public void testImportUsers() throws Exception {
+        this
+                .mockMvc
+                .perform(post("/users/import")
+                        .content("email,login,name,birthday\n1@mail.com,vvv,,1990-01-01\n2@mail.com,v v,,1990-01-01\n")
+                        .contentType("text/csv"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(3));
+        assertEquals("vvv", userStorage.getById(1).getName());
+    }
+
     @Test
     public void validationTest() throws Exception {
         var user = getValidUser();
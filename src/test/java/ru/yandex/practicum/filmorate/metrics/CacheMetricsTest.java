@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.controllers.UserControllerTest;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "filmorate.cache.enabled=true")
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class CacheMetricsTest {
+    private static final String COUNT = "$.measurements[?(@.statistic == 'COUNT')].value";
+    private static final String VALUE = "$.measurements[?(@.statistic == 'VALUE')].value";
+
+    @Autowired
+    @Qualifier("UserDbStorage")
+    private UserStorage userStorage;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void testCacheCountersAreServed() throws Exception {
+        userStorage.addUser(UserControllerTest.getValidUser());
+        mockMvc.perform(get("/users/{id}", 1)).andExpect(status().isOk());
+        mockMvc.perform(get("/users/{id}", 1)).andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/metrics/filmorate.cache.gets")
+                        .param("tag", "cache:users", "result:miss"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath(COUNT).value(contains(1.0)));
+        mockMvc.perform(get("/actuator/metrics/filmorate.cache.gets")
+                        .param("tag", "cache:users", "result:hit"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath(COUNT).value(contains(1.0)));
+        mockMvc.perform(get("/actuator/metrics/filmorate.cache.evictions")
+                        .param("tag", "cache:users"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath(COUNT).value(contains(0.0)));
+        mockMvc.perform(get("/actuator/metrics/filmorate.cache.size")
+                        .param("tag", "cache:users"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath(VALUE).value(contains(1.0)));
+        mockMvc.perform(get("/actuator/metrics/filmorate.cache.size")
+                        .param("tag", "cache:films"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath(VALUE).value(contains(0.0)));
+    }
+}
@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.controllers.UserControllerTest;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class QueryMetricsTest {
+    private static final String TOTAL = "$.measurements[?(@.statistic == 'TOTAL')].value";
+    private static final String COUNT = "$.measurements[?(@.statistic == 'COUNT')].value";
+
+    @Autowired
+    @Qualifier("UserDbStorage")
+    private UserStorage userStorage;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void testStatementsArePerQueryAndPerRequest() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            userStorage.addUser(UserControllerTest.getValidUser());
+        }
+        mockMvc.perform(get("/users")).andExpect(status().isOk());
+        mockMvc.perform(get("/users")).andExpect(status().isOk());
+
+        // the users and the friends
+        mockMvc.perform(get("/actuator/metrics/filmorate.http.queries")
+                        .param("tag", "method:GET", "uri:/users"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath(COUNT).value(contains(2.0)))
+                .andExpect(jsonPath(TOTAL).value(contains(4.0)));
+        mockMvc.perform(get("/actuator/metrics/filmorate.query.statements")
+                        .param("tag", "query:UserDbStorage.getAllUsers"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath(TOTAL).value(contains(4.0)));
+        mockMvc.perform(get("/actuator/metrics/filmorate.query")
+                        .param("tag", "query:UserDbStorage.getAllUsers", "outcome:success"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath(COUNT).value(contains(2.0)));
+    }
+
+    @Test
+    public void testValidationIsNotAQuery() throws Exception {
+        userStorage.validate(UserControllerTest.getValidUser());
+
+        mockMvc.perform(get("/actuator/metrics/filmorate.query")
+                        .param("tag", "query:UserDbStorage.validate"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testFailedQueriesAreTaggedAsErrors() throws Exception {
+        mockMvc.perform(get("/films/{id}", 9999)).andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/actuator/metrics/filmorate.query")
+                        .param("tag", "query:FilmDbStorage.getById", "outcome:error"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath(COUNT).value(contains(1.0)));
+        mockMvc.perform(get("/actuator/metrics/filmorate.http.queries")
+                        .param("tag", "uri:/films/{id}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath(TOTAL).value(contains(1.0)));
+    }
+}
@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntSetTest {
+    private static final int FILMS = 1000;
+    private static final int LIKES_PER_FILM = 1000;
+    private static final int USERS = 100_000;
+
+    @Test
+    public void testBehavesLikeHashSet() {
+        var random = new Random(42);
+        // small and large ranges cover both the array and the bitmap chunks and the switches between them
+        for (int range : new int[]{100, 10_000, 200_000, Integer.MAX_VALUE}) {
+            var expected = new HashSet<Integer>();
+            var actual = new IntSet();
+            for (int i = 0; i < 100_000; i++) {
+                var value = random.nextInt(range);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(value), actual.removeInt(value));
+                } else {
+                    assertEquals(expected.add(value), actual.addInt(value));
+                }
+                assertEquals(expected.size(), actual.size());
+            }
+            assertEquals(expected, actual);
+            assertEquals(actual, expected);
+            assertEquals(expected.hashCode(), actual.hashCode());
+            assertEquals(new TreeSet<>(expected), new TreeSet<>(actual));
+            assertArrayEquals(expected.stream().mapToInt(Integer::intValue).sorted().toArray(), actual.toIntArray());
+            assertEquals(actual, new IntSet(actual));
+            assertEquals(actual, new IntSet(expected));
+        }
+    }
+
+    @Test
+    public void testIntersectionMatchesRetainAll() {
+        var random = new Random(42);
+        // sizes and ranges cover arrays merged, arrays looked up in much longer ones, arrays probed in bitmaps
+        // and bitmaps intersected into both bitmaps and arrays
+        int[][] cases = {{100, 1000, 100, 1000}, {10, 100_000, 5000, 100_000}, {300, 65_536, 20_000, 65_536},
+                {30_000, 65_536, 30_000, 65_536}, {40_000, 65_536, 60_000, 65_536}, {5000, 1_000_000, 5000, 200_000}};
+        for (var sizes : cases) {
+            var first = new IntSet();
+            var second = new IntSet();
+            for (int i = 0; i < sizes[0]; i++) {
+                first.addInt(random.nextInt(sizes[1]));
+            }
+            for (int i = 0; i < sizes[2]; i++) {
+                second.addInt(random.nextInt(sizes[3]));
+            }
+            var expected = new HashSet<>(first);
+            expected.retainAll(second);
+
+            var intersection = IntSet.intersection(first, second);
+            assertEquals(expected, intersection);
+            assertEquals(expected.size(), intersection.size());
+            assertEquals(intersection, IntSet.intersection(second, first));
+            intersection.addInt(Integer.MAX_VALUE);
+            intersection.removeInt(intersection.ceiling(0));
+            assertEquals(expected.size(), intersection.size());
+        }
+        assertTrue(IntSet.intersection(IntSet.of(1, 2), IntSet.of(70_000)).isEmpty());
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        var set = IntSet.of(1, 2, 3, 70_000, 70_001);
+        set.removeIf(value -> value % 2 == 1);
+        assertEquals(Set.of(2, 70_000), set);
+        assertFalse(set.contains(-1));
+        assertThrows(IllegalArgumentException.class, () -> set.addInt(-1));
+        assertEquals(70_000, set.ceiling(3));
+        assertEquals(-1, set.ceiling(70_001));
+    }
+
+    @Test
+    public void testJsonIsPlainArray() throws Exception {
+        var objectMapper = new ObjectMapper();
+        var film = Film.builder().id(1).likes(IntSet.of(5, 3, 100_000)).build();
+        var json = objectMapper.writeValueAsString(film);
+        assertTrue(json.contains("\"likes\":[3,5,100000]"), json);
+
+        var read = objectMapper.readValue(json, Film.class);
+        assertEquals(IntSet.class, read.getLikes().getClass());
+        assertEquals(Set.of(3, 5, 100_000), read.getLikes());
+    }
+
+    /**
+     * Compares the heap a million likes spread over a thousand films take when every film keeps them in a
+     * {@link HashSet} of boxed integers and in an {@link IntSet}, estimated from their layouts.
+     */
+    @Test
+    public void testMillionLikesFootprint() {
+        var random = new Random(7);
+        long boxed = 0;
+        long compact = 0;
+        for (int film = 0; film < FILMS; film++) {
+            var filmLikes = random.ints(1, USERS + 1).distinct().limit(LIKES_PER_FILM).toArray();
+            boxed += estimateHashSetHeapSize(filmLikes.length);
+            compact += IntSet.of(filmLikes).estimateHeapSize();
+        }
+
+        assertTrue(compact * 5 < boxed, "IntSet should take at least five times less memory, but takes "
+                + compact + " bytes against " + boxed);
+    }
+
+    /**
+     * Estimates the heap taken by a {@link HashSet} of distinct boxed integers with the same assumptions as
+     * {@link IntSet#estimateHeapSize()}: the set and its map, a table of at least {@code size / 0.75} slots
+     * and, for every value, a 32-byte map node and a 16-byte {@link Integer}.
+     */
+    private static long estimateHashSetHeapSize(int size) {
+        long slots = Integer.highestOneBit(Math.max(1, (int) Math.ceil(size / 0.75) - 1)) * 2L;
+        return 16 + 48 + 16 + 4 * slots + 48L * size;
+    }
+}
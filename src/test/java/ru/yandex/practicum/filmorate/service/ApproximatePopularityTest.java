@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ApproximatePopularityTest {
+    private static final int FILMS = 10_000;
+    private static final int OPERATIONS = 200_000;
+    private static final double ZIPF_EXPONENT = 1.1;
+    private static final int WIDTH = 2048;
+    private static final int DEPTH = 4;
+
+    @Test
+    public void testEstimatesStayWithinBoundsOnZipfianLikes() {
+        var storage = mock(FilmStorage.class);
+        when(storage.getLikeCounts()).thenReturn(Map.of());
+        var popularity = new ApproximatePopularity(storage, WIDTH, DEPTH, 100);
+        var random = new Random(42);
+        // the film of every rank is picked at random, so that popular films don't get neighbouring ids
+        var filmByRank = IntStream.rangeClosed(1, FILMS).boxed().collect(Collectors.toList());
+        Collections.shuffle(filmByRank, random);
+        var cumulative = new double[FILMS];
+        var sum = 0.0;
+        for (int rank = 0; rank < FILMS; rank++) {
+            sum += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+            cumulative[rank] = sum;
+        }
+
+        var likes = new int[FILMS + 1];
+        var total = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            var rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            var filmId = filmByRank.get(rank < 0 ? -rank - 1 : rank);
+            if (random.nextInt(10) == 0 && likes[filmId] > 0) {
+                likes[filmId]--;
+                total--;
+                popularity.deleteLike(filmId);
+            } else {
+                likes[filmId]++;
+                total++;
+                popularity.addLike(filmId);
+            }
+        }
+
+        // the most liked films lose all their likes and the ones after them take their places
+        var mostLiked = IntStream.rangeClosed(1, FILMS).boxed()
+                .sorted(Comparator.comparingInt((Integer filmId) -> likes[filmId]).reversed())
+                .limit(5)
+                .collect(Collectors.toList());
+        for (var filmId : mostLiked) {
+            for (; likes[filmId] > 0; likes[filmId]--, total--) {
+                popularity.deleteLike(filmId);
+            }
+        }
+
+        var bound = Math.E / WIDTH * total;
+        var exceeding = 0;
+        for (int filmId = 1; filmId <= FILMS; filmId++) {
+            var estimate = popularity.getLikes(filmId);
+            assertTrue(estimate >= likes[filmId], "film " + filmId + " is underestimated");
+            if (estimate - likes[filmId] > bound) {
+                exceeding++;
+            }
+        }
+        assertTrue(exceeding <= Math.exp(-DEPTH) * FILMS, exceeding + " films exceed the error bound");
+
+        List<Integer> exactTop = IntStream.rangeClosed(1, FILMS).boxed()
+                .sorted(Comparator.comparingInt((Integer filmId) -> likes[filmId]).reversed())
+                .limit(10)
+                .collect(Collectors.toList());
+        assertEquals(exactTop, popularity.getTop(10));
+    }
+
+    @Test
+    public void testFilmGetsInOnceCandidatesLoseLikes() {
+        var storage = mock(FilmStorage.class);
+        when(storage.getLikeCounts()).thenReturn(Map.of(1, 10, 2, 9, 3, 5));
+        var popularity = new ApproximatePopularity(storage, WIDTH, DEPTH, 2);
+        assertEquals(List.of(1, 2), popularity.getTop(3));
+
+        // film 3 only gets in with a like after film 2 has fallen behind it
+        for (int i = 0; i < 8; i++) {
+            popularity.deleteLike(2);
+        }
+        assertEquals(List.of(1, 2), popularity.getTop(3));
+        popularity.addLike(3);
+        assertEquals(List.of(1, 3), popularity.getTop(3));
+
+        // a film without likes stops being a candidate and makes room for any liked film
+        for (int i = 0; i < 10; i++) {
+            popularity.deleteLike(1);
+        }
+        assertEquals(List.of(3), popularity.getTop(3));
+        popularity.addLike(2);
+        assertEquals(List.of(3, 2), popularity.getTop(3));
+    }
+}
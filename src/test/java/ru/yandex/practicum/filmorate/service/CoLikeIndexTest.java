@@ -0,0 +1,133 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class CoLikeIndexTest {
+
+    @Test
+    public void testSeedingAndChangesCountTheSame() {
+        // users 1 and 2 liked films 1, 2 and 3, user 3 liked films 1 and 3
+        var seeded = new CoLikeIndex(storage(
+                film(1, 1, 2, 3),
+                film(2, 1, 2),
+                film(3, 1, 2, 3)), 5, 10);
+        seeded.reload();
+        var changed = new CoLikeIndex(storage(), 5, 10);
+        for (int userId = 1; userId <= 3; userId++) {
+            changed.addLike(1, userId);
+            changed.addLike(3, userId);
+            changed.addLike(4, userId);
+        }
+        changed.addLike(2, 1);
+        changed.addLike(2, 2);
+        changed.addLike(2, 2);
+        for (int userId = 1; userId <= 3; userId++) {
+            changed.deleteLike(4, userId);
+        }
+        changed.deleteLike(4, 1);
+
+        for (var index : List.of(seeded, changed)) {
+            assertEquals(List.of(3, 2), index.getSimilar(1, 10));
+            assertEquals(List.of(1, 3), index.getSimilar(2, 10));
+            assertEquals(List.of(1), index.getSimilar(3, 1));
+            assertEquals(List.of(), index.getSimilar(4, 10));
+        }
+    }
+
+    @Test
+    public void testFrequentNeighboursSurviveInBoundedCounters() {
+        var index = new CoLikeIndex(storage(), 2, 10);
+        var userId = 0;
+        // film 1 is liked together with film 2 by 50 users and with film 3 by 30 users
+        for (int i = 0; i < 80; i++) {
+            userId++;
+            index.addLike(1, userId);
+            index.addLike(i < 50 ? 2 : 3, userId);
+        }
+        // and with 20 other films by a user each, more than the 4 counters film 1 has; a film counted more
+        // than 100 / 4 times out of the 100 pairs can't lose its counter
+        for (int filmId = 100; filmId < 120; filmId++) {
+            userId++;
+            index.addLike(1, userId);
+            index.addLike(filmId, userId);
+        }
+
+        assertEquals(List.of(2, 3), index.getSimilar(1, 10));
+        assertEquals(List.of(1), index.getSimilar(110, 10));
+    }
+
+    @Test
+    public void testFilmsOfAUserAreCountedUpToTheLimit() {
+        // user 1 liked films 1 to 4, only the first 3 are counted
+        var seeded = new CoLikeIndex(storage(
+                film(1, 1),
+                film(2, 1),
+                film(3, 1),
+                film(4, 1)), 5, 3);
+        seeded.reload();
+        var changed = new CoLikeIndex(storage(), 5, 3);
+        for (int filmId = 1; filmId <= 4; filmId++) {
+            changed.addLike(filmId, 1);
+        }
+
+        for (var index : List.of(seeded, changed)) {
+            assertEquals(List.of(2, 3), index.getSimilar(1, 10));
+            assertEquals(List.of(), index.getSimilar(4, 10));
+            // unliking a counted film makes room for the next like
+            index.deleteLike(3, 1);
+            index.addLike(4, 1);
+            assertEquals(List.of(2, 4), index.getSimilar(1, 10));
+        }
+    }
+
+    @Test
+    public void testLikesChangedDuringReloadAreKept() {
+        var storage = mock(FilmStorage.class);
+        var index = new CoLikeIndex(storage, 5, 10);
+        // the storage has read film 1 liked by users 1 and 2 when user 1 likes film 3 and user 2 unlikes film 1
+        doAnswer(invocation -> {
+            Consumer<Film> action = invocation.getArgument(0);
+            index.addLike(3, 1);
+            index.deleteLike(1, 2);
+            action.accept(film(1, 1, 2));
+            action.accept(film(2, 1, 2));
+            return null;
+        }).when(storage).forEachFilm(any());
+
+        index.reload();
+
+        // user 1 likes films 1, 2 and 3, user 2 only film 2
+        assertEquals(List.of(2, 3), index.getSimilar(1, 10));
+        assertEquals(List.of(1, 2), index.getSimilar(3, 10));
+        index.deleteLike(1, 1);
+        assertEquals(List.of(3), index.getSimilar(2, 10));
+    }
+
+    private static FilmStorage storage(Film... films) {
+        var storage = mock(FilmStorage.class);
+        doAnswer(invocation -> {
+            Consumer<Film> action = invocation.getArgument(0);
+            List.of(films).forEach(action);
+            return null;
+        }).when(storage).forEachFilm(any());
+        return storage;
+    }
+
+    private static Film film(int id, int... likes) {
+        return Film.builder()
+                .id(id)
+                .likes(IntSet.of(likes))
+                .build();
+    }
+}
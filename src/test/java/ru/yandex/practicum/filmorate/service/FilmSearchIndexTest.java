@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FilmSearchIndexTest {
+
+    @Test
+    public void testRanking() {
+        var storage = mock(FilmStorage.class);
+        when(storage.getLikeCounts()).thenReturn(Map.of(1, 0, 2, 0, 3, 5, 4, 0, 5, 1));
+        var index = new FilmSearchIndex(storage, new PopularityIndex(storage));
+        index.addFilm(film(1, "The Matrix", "A hacker learns the truth about reality"));
+        index.addFilm(film(2, "Matrix Reloaded", "Neo and the rebels fight the machines"));
+        index.addFilm(film(3, "Hackers", "Teenage hackers and a matrix of conspiracy"));
+        index.addFilm(film(4, "Reality Bites", "Graduates drift through life"));
+        index.addFilm(film(5, "Ghost in the Shell", "A cyborg hunts a hacker"));
+
+        // whole words of names first, the more liked film first when the score is the same
+        assertEquals(List.of(1, 2, 3), index.search("matrix", 10));
+        // a word beginning with the query word matches as well, weighing less than a whole word
+        assertEquals(List.of(3, 5, 1), index.search("hack", 10));
+        assertEquals(List.of(3), index.search("HACKERS", 10));
+        // every word has to match
+        assertEquals(List.of(1), index.search("matrix, reality!", 10));
+        assertEquals(List.of(1, 2), index.search("matrix", 2));
+        assertEquals(List.of(), index.search("matrix ghost", 10));
+        assertEquals(List.of(), index.search("...", 10));
+    }
+
+    @Test
+    public void testChangedFilmIsReindexed() {
+        var storage = mock(FilmStorage.class);
+        var index = new FilmSearchIndex(storage, new PopularityIndex(storage));
+        index.addFilm(film(1, "Solaris", "A psychologist is sent to a station orbiting a planet"));
+
+        index.addFilm(film(1, "Stalker", "A guide leads two men through the Zone"));
+
+        assertEquals(List.of(), index.search("solaris", 10));
+        assertEquals(List.of(), index.search("planet", 10));
+        assertEquals(List.of(1), index.search("zone stalk", 10));
+    }
+
+    @Test
+    public void testTokenize() {
+        assertEquals(List.of("ёжик", "в", "тумане", "1975", "don", "t"),
+                FilmSearchIndex.tokenize(" Ёжик в тумане (1975), don't"));
+    }
+
+    private static Film film(int id, String name, String description) {
+        return Film.builder()
+                .id(id)
+                .name(name)
+                .description(description)
+                .build();
+    }
+}
@@ -5,16 +5,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
@@ -33,10 +37,26 @@ class FilmServiceTest {
     public void testGetTop10() {
         createUsers(100);
         addFilms(filmStorage, 100);
-        var service = new FilmService(filmStorage);
+        var service = createService(PopularitySource.INDEX);
         var films = service.getMostPopular(10).collect(Collectors.toUnmodifiableList());
         assertEquals(10, films.size());
         assertTrue(films.stream().allMatch(x -> x.obtainLikesCount() > 88));
+
+        var databaseService = createService(PopularitySource.DATABASE);
+        assertEquals(films, databaseService.getMostPopular(10).collect(Collectors.toUnmodifiableList()));
+
+        var approximateService = createService(PopularitySource.APPROXIMATE);
+        assertEquals(films, approximateService.getMostPopular(10).collect(Collectors.toUnmodifiableList()));
+        // no more films than the candidates can be ranked
+        assertThrows(ValidationException.class, () -> approximateService.getMostPopular(101));
+    }
+
+    private FilmService createService(PopularitySource popularitySource) {
+        var popularityIndex = new PopularityIndex(filmStorage);
+        return new FilmService(filmStorage, popularityIndex, popularitySource,
+                new ApproximatePopularity(filmStorage, 1024, 4, 100), new CoLikeIndex(filmStorage, 20, 200),
+                new FilmSearchIndex(filmStorage, popularityIndex),
+                new TrendingIndex(filmStorage, Duration.ofMinutes(1), List.of(Duration.ofHours(1))));
     }
 
     private void createUsers(int n) {
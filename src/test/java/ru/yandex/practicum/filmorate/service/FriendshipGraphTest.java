@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.controllers.UserControllerTest;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+class FriendshipGraphTest {
+    private static final int USERS = 3000;
+    private static final int CHANGES = 20_000;
+
+    @Test
+    public void testSuggestionsAreRankedByMutualFriends() {
+        var graph = new FriendshipGraph(storage(Map.of(
+                1, IntSet.of(2, 3, 4),
+                2, IntSet.of(1, 5, 6),
+                3, IntSet.of(5, 6, 7),
+                4, IntSet.of(3, 6),
+                8, IntSet.of(1))));
+
+        assertEquals(List.of(6, 5, 7), graph.getSuggestions(1, 10));
+        assertEquals(List.of(6), graph.getSuggestions(1, 1));
+
+        graph.addFriend(1, 6);
+        graph.addFriend(4, 7);
+        assertEquals(List.of(5, 7), graph.getSuggestions(1, 10));
+        graph.deleteFriend(1, 3);
+        assertEquals(List.of(3, 5, 7), graph.getSuggestions(1, 10));
+        assertEquals(List.of(2, 4, 6), graph.getSuggestions(8, 10));
+        assertEquals(List.of(), graph.getSuggestions(42, 10));
+    }
+
+    @Test
+    public void testChangeOfAPairWaitsForTheGraphToCatchUp() throws Exception {
+        var userStorage = spy(new InMemoryUserStorage());
+        for (int i = 0; i < 2; i++) {
+            userStorage.addUser(UserControllerTest.getValidUser());
+        }
+        var graph = new FriendshipGraph(userStorage);
+        var userService = new UserService(userStorage, graph);
+        var deleting = new Thread(() -> userService.deleteFriend(1, 2));
+        // the friend is deleted by another thread right after being added to the storage, before the graph
+        doAnswer(invocation -> {
+            invocation.callRealMethod();
+            deleting.start();
+            deleting.join(100);
+            return null;
+        }).when(userStorage).addFriend(1, 2);
+
+        userService.addFriend(1, 2);
+        deleting.join();
+
+        assertEquals(Set.of(), userStorage.getById(1).getFriends());
+        assertArrayEquals(new int[0], graph.getFriends(1));
+    }
+
+    @Test
+    public void testChangesMatchTheFriendsWhileBeingRead() throws Exception {
+        var random = new Random(42);
+        var friends = new HashMap<Integer, TreeSet<Integer>>();
+        for (int userId = 1; userId <= USERS; userId += 2) {
+            friends.put(userId, new TreeSet<>(List.of(random.nextInt(USERS) + 1, random.nextInt(USERS) + 1)));
+        }
+        var seed = new HashMap<Integer, IntSet>();
+        friends.forEach((userId, userFriends) -> seed.put(userId, new IntSet(userFriends)));
+        var graph = new FriendshipGraph(storage(seed));
+
+        var done = new AtomicBoolean();
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            // a reader must always see sorted friend lists whatever is being changed meanwhile
+            var reader = executor.submit(() -> {
+                var readerRandom = new Random(7);
+                while (!done.get()) {
+                    var userFriends = graph.getFriends(readerRandom.nextInt(USERS + 10));
+                    for (int i = 1; i < userFriends.length; i++) {
+                        assertTrue(userFriends[i - 1] < userFriends[i]);
+                    }
+                    graph.getSuggestions(readerRandom.nextInt(USERS) + 1, 10);
+                }
+            });
+            // ids past the users the graph was built with get friends too
+            for (int i = 0; i < CHANGES; i++) {
+                var userId = random.nextInt(USERS + 100) + 1;
+                var friendId = random.nextInt(USERS) + 1;
+                var userFriends = friends.computeIfAbsent(userId, id -> new TreeSet<>());
+                if (random.nextInt(4) == 0 && !userFriends.isEmpty()) {
+                    friendId = userFriends.first();
+                    userFriends.remove(friendId);
+                    graph.deleteFriend(userId, friendId);
+                } else {
+                    userFriends.add(friendId);
+                    graph.addFriend(userId, friendId);
+                }
+            }
+            done.set(true);
+            reader.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int userId = 0; userId <= USERS + 100; userId++) {
+            var expected = friends.getOrDefault(userId, new TreeSet<>()).stream().mapToInt(Integer::intValue).toArray();
+            assertArrayEquals(expected, graph.getFriends(userId), "friends of " + userId);
+        }
+    }
+
+    private static UserStorage storage(Map<Integer, IntSet> friends) {
+        var storage = mock(UserStorage.class);
+        doAnswer(invocation -> {
+            Consumer<User> action = invocation.getArgument(0);
+            new ArrayList<>(new TreeSet<>(friends.keySet())).forEach(userId ->
+                    action.accept(User.builder().id(userId).friends(friends.get(userId)).build()));
+            return null;
+        }).when(storage).forEachUser(any());
+        return storage;
+    }
+}
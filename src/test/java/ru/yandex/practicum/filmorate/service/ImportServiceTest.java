@@ -0,0 +1,154 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.ImportError;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@AutoConfigureTestDatabase
+@SpringBootTest
+class ImportServiceTest {
+
+    @Autowired
+    private ImportService importService;
+
+    @Autowired
+    @Qualifier("FilmDbStorage")
+    private FilmStorage filmStorage;
+
+    @Autowired
+    @Qualifier("UserDbStorage")
+    private UserStorage userStorage;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void testImportFilmsFromNdjson() throws Exception {
+        var body = new StringBuilder();
+        for (int i = 1; i <= 2500; i++) {
+            var film = getFilm();
+            film.setName("film" + i);
+            if (i == 1200) {
+                film.setDuration(0);
+            }
+            if (i == 2001) {
+                film.getMpa().setId(42);
+            }
+            body.append(objectMapper.writeValueAsString(film)).append('\n');
+            if (i == 10) {
+                body.append("{\"name\": \n\n");
+            }
+        }
+
+        var result = importService.importFilms(stream(body.toString()), MediaType.APPLICATION_NDJSON);
+
+        assertEquals(2498, result.getImported());
+        assertEquals(3, result.getRejected());
+        assertEquals(List.of(11, 1202, 2003), result.getErrors().stream()
+                .map(ImportError::getLine)
+                .collect(Collectors.toList()));
+        assertEquals("Film duration should be positive ", result.getErrors().get(1).getMessage());
+        assertEquals("MPA rate 42 doesn't exist", result.getErrors().get(2).getMessage());
+        var films = filmStorage.getAllFilms();
+        assertEquals(2498, films.size());
+        assertEquals("film2500", films.stream().map(Film::getName).reduce((first, second) -> second).get());
+    }
+
+    @Test
+    public void testLinesWithoutAnEntityAreReported() throws Exception {
+        var film = objectMapper.writeValueAsString(getFilm());
+        var body = String.join("\n",
+                film,
+                "null",
+                film);
+
+        var result = importService.importFilms(stream(body), MediaType.APPLICATION_NDJSON);
+
+        assertEquals(2, result.getImported());
+        assertEquals(List.of(new ImportError(2, "The line should hold a single entity")), result.getErrors());
+        assertEquals(2, filmStorage.getAllFilms().size());
+    }
+
+    @Test
+    public void testImportUsersFromCsv() throws Exception {
+        var body = String.join("\n",
+                "login,email,birthday,name",
+                "neo,neo@matrix.io,1964-09-02,\"Anderson, Thomas\"",
+                "trinity,trinity@matrix.io,1967-08-21,",
+                "morpheus,morpheus@matrix.io,,Morpheus",
+                "smith,smith@matrix.io,1961-13-04,Agent",
+                "oracle,oracle.matrix.io,1935-01-01,Oracle",
+                "cypher,cypher@matrix.io,1960-01-01");
+
+        var result = importService.importUsers(stream(body), MediaType.valueOf("text/csv"));
+
+        assertEquals(2, result.getImported());
+        assertEquals(List.of(4, 5, 6, 7), result.getErrors().stream()
+                .map(ImportError::getLine)
+                .collect(Collectors.toList()));
+        assertEquals("birthday is missing", result.getErrors().get(0).getMessage());
+        assertEquals("Expected 4 values, found 3", result.getErrors().get(3).getMessage());
+        assertEquals(List.of("Anderson, Thomas", "trinity"), userStorage.getAllUsers().stream()
+                .map(User::getName)
+                .collect(Collectors.toList()));
+        assertEquals(LocalDate.of(1964, 9, 2), userStorage.getById(1).getBirthday());
+    }
+
+    @Test
+    public void testLinesTheDatabaseRefusesAreReported() throws Exception {
+        var tooLong = getFilm();
+        tooLong.setName("x".repeat(300));
+        var body = new StringBuilder();
+        for (var film : List.of(getFilm(), tooLong, getFilm())) {
+            body.append(objectMapper.writeValueAsString(film)).append('\n');
+        }
+
+        var result = importService.importFilms(stream(body.toString()), MediaType.APPLICATION_NDJSON);
+
+        assertEquals(2, result.getImported());
+        assertEquals(1, result.getRejected());
+        assertEquals(2, result.getErrors().get(0).getLine());
+        assertEquals(2, filmStorage.getAllFilms().size());
+    }
+
+    @Test
+    public void testParseCsv() {
+        assertEquals(Arrays.asList("a", null, "b,c", "say \"hi\"", ""),
+                ImportService.parseCsv("a,,\"b,c\",\"say \"\"hi\"\"\",\"\""));
+    }
+
+    private static Film getFilm() {
+        return Film.builder()
+                .name("qwe")
+                .description("descr")
+                .releaseDate(LocalDate.of(1900, 12, 1))
+                .duration(10)
+                .mpa(new Mpa(1, "G"))
+                .build();
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,106 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PopularityIndexTest {
+    private static final int FILMS = 50;
+    private static final int USERS = 200;
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 20_000;
+
+    @Test
+    public void testRankingAgreesWithRecountUnderConcurrentLikes() throws Exception {
+        var seed = IntStream.rangeClosed(1, FILMS).boxed().collect(Collectors.toMap(id -> id, id -> 0));
+        var storage = mock(FilmStorage.class);
+        when(storage.getLikeCounts()).thenReturn(seed);
+        var index = new PopularityIndex(storage);
+        // plays the role of the likes table: a like is counted only if the pair was actually inserted or deleted
+        Set<List<Integer>> likes = ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        try {
+            var writers = new ArrayList<Future<?>>();
+            for (int t = 0; t < THREADS; t++) {
+                writers.add(executor.submit(() -> {
+                    var random = ThreadLocalRandom.current();
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        // skew towards low ids so the ranking keeps changing at the top
+                        var filmId = 1 + Math.min(random.nextInt(FILMS), random.nextInt(FILMS));
+                        var like = List.of(filmId, 1 + random.nextInt(USERS));
+                        if (random.nextInt(3) > 0) {
+                            if (likes.add(like)) {
+                                index.addLike(filmId);
+                            }
+                        } else if (likes.remove(like)) {
+                            index.deleteLike(filmId);
+                        }
+                    }
+                }));
+            }
+            var reader = executor.submit(() -> {
+                while (!writers.stream().allMatch(Future::isDone)) {
+                    var top = index.getTop(10);
+                    assertEquals(10, top.size());
+                    assertEquals(10, new HashSet<>(top).size());
+                }
+            });
+            for (var writer : writers) {
+                writer.get();
+            }
+            reader.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        var recount = new HashMap<Integer, Integer>(seed);
+        likes.forEach(like -> recount.merge(like.get(0), 1, Integer::sum));
+        recount.forEach((filmId, count) -> assertEquals(count, index.getLikes(filmId)));
+
+        var expectedTop = recount.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        assertEquals(expectedTop, index.getTop(FILMS));
+        assertEquals(FILMS, index.getTop(FILMS + 10).size());
+    }
+
+    @Test
+    public void testNewFilmsAreRankedWithoutLikes() {
+        var storage = mock(FilmStorage.class);
+        when(storage.getLikeCounts()).thenReturn(Map.of(1, 2, 2, 0));
+        var index = new PopularityIndex(storage);
+        index.addFilm(3);
+        index.addLike(3);
+        index.addFilm(3);
+
+        assertEquals(List.of(1, 3, 2), index.getTop(5));
+        assertEquals(1, index.getLikes(3));
+    }
+
+    @Test
+    public void testRepairSetsDriftedCounts() {
+        var storage = mock(FilmStorage.class);
+        when(storage.getLikeCounts()).thenReturn(Map.of(1, 0, 2, 0, 3, 0));
+        var index = new PopularityIndex(storage);
+        index.addLike(1);
+        index.addLike(1);
+
+        assertEquals(Set.of(1, 2, 4), Set.copyOf(index.repair(Map.of(1, 1, 2, 3, 3, 0, 4, 1))));
+        assertEquals(List.of(2, 1, 4, 3), index.getTop(5));
+        assertEquals(List.of(), index.repair(Map.of(1, 1, 2, 3, 3, 0, 4, 1)));
+    }
+}
@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class TrendingIndexTest {
+    private static final Duration HOUR = Duration.ofHours(1);
+    private static final Duration DAY = Duration.ofDays(1);
+    private static final LocalDateTime START = LocalDateTime.of(2022, 5, 1, 12, 0);
+
+    @Test
+    public void testLikesLeaveWindowsAsTheyGetOlder() {
+        var clock = new TestClock();
+        var index = new TrendingIndex(mock(FilmStorage.class), Duration.ofMinutes(1), List.of(HOUR, DAY), clock);
+        for (int userId = 1; userId <= 3; userId++) {
+            index.addLike(1, userId);
+        }
+        clock.advance(Duration.ofMinutes(30));
+        index.addLike(2, 1);
+        index.addLike(2, 2);
+        index.addLike(3, 1);
+        assertEquals(List.of(1, 2, 3), index.getTop(HOUR, 10));
+
+        clock.advance(Duration.ofMinutes(30));
+        assertEquals(List.of(2, 3), index.getTop(HOUR, 10));
+        assertEquals(List.of(1, 2), index.getTop(DAY, 2));
+
+        index.deleteLike(2, 1);
+        index.deleteLike(2, 2);
+        index.addLike(2, 2);
+        assertEquals(List.of(2, 3), index.getTop(HOUR, 10));
+        assertEquals(List.of(1, 2, 3), index.getTop(DAY, 10));
+
+        clock.advance(Duration.ofMinutes(61));
+        index.expire();
+        assertEquals(List.of(), index.getTop(HOUR, 10));
+        assertEquals(List.of(1, 2, 3), index.getTop(DAY, 10));
+
+        clock.advance(DAY.minusMinutes(100));
+        assertEquals(List.of(2, 3), index.getTop(DAY, 10));
+        clock.advance(Duration.ofDays(2));
+        assertEquals(List.of(), index.getTop(DAY, 10));
+        index.addLike(1, 1);
+        assertEquals(List.of(1), index.getTop(HOUR, 10));
+    }
+
+    @Test
+    public void testSeededWithRecentLikesOfTheStorage() {
+        var storage = mock(FilmStorage.class);
+        doAnswer(invocation -> {
+            assertEquals(START.minusDays(1).plusMinutes(1), invocation.getArgument(0));
+            Consumer<Like> action = invocation.getArgument(1);
+            action.accept(new Like(1, 1, START.minusHours(3)));
+            action.accept(new Like(2, 1, START.minusMinutes(10)));
+            action.accept(new Like(2, 2, START.plusMinutes(5)));
+            return null;
+        }).when(storage).forEachLikeSince(any(), any());
+
+        var index = new TrendingIndex(storage, Duration.ofMinutes(1), List.of(HOUR, DAY), new TestClock());
+
+        assertEquals(List.of(2), index.getTop(HOUR, 10));
+        assertEquals(List.of(2, 1), index.getTop(DAY, 10));
+        index.deleteLike(1, 1);
+        assertEquals(List.of(2), index.getTop(DAY, 10));
+    }
+
+    @Test
+    public void testUnknownWindow() {
+        var index = new TrendingIndex(mock(FilmStorage.class), Duration.ofMinutes(1), List.of(HOUR), new TestClock());
+
+        assertThrows(ValidationException.class, () -> index.getTop(DAY, 10));
+    }
+
+    private static class TestClock extends Clock {
+        private Instant now = START.toInstant(ZoneOffset.UTC);
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.controllers.UserControllerTest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.film.CachingFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.user.CachingUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class CachingStorageTest {
+
+    private InMemoryUserStorage userDelegate;
+    private InMemoryFilmStorage filmDelegate;
+    private CachingUserStorage userStorage;
+    private CachingFilmStorage filmStorage;
+
+    @BeforeEach
+    public void createStorages() {
+        var mpaStorage = mock(MpaStorage.class);
+        when(mpaStorage.contains(anyInt())).thenReturn(true);
+        when(mpaStorage.getById(anyInt())).thenReturn(new Mpa(1, "G"));
+        userDelegate = spy(new InMemoryUserStorage());
+        filmDelegate = spy(new InMemoryFilmStorage(mpaStorage, userDelegate));
+        userStorage = new CachingUserStorage(userDelegate, 100, Duration.ofHours(1));
+        filmStorage = new CachingFilmStorage(filmDelegate, 100, Duration.ofHours(1));
+        for (int i = 0; i < 3; i++) {
+            userStorage.addUser(UserControllerTest.getValidUser());
+            filmStorage.addFilm(Film.builder()
+                    .name("film" + i)
+                    .description("descr" + i)
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .duration(i + 1)
+                    .mpa(new Mpa(1, null))
+                    .build());
+        }
+    }
+
+    @Test
+    public void testFilmIsReadOnceUntilItChanges() {
+        filmStorage.getById(1);
+        filmStorage.getById(1).getLikes().add(3);
+        assertEquals(Set.of(), filmStorage.getById(1).getLikes());
+        verify(filmDelegate, times(1)).getById(1);
+
+        filmStorage.addLike(1, 1);
+        assertEquals(Set.of(1), filmStorage.getById(1).getLikes());
+        filmStorage.addLikes(List.of(new Like(1, 2)));
+        assertEquals(Set.of(1, 2), filmStorage.getById(1).getLikes());
+        filmStorage.deleteLike(1, 1);
+        assertEquals(Set.of(2), filmStorage.getById(1).getLikes());
+        var film = filmStorage.getById(1);
+        film.setName("renamed");
+        filmStorage.updateFilm(film);
+        assertEquals("renamed", filmStorage.getById(1).getName());
+        filmStorage.getById(1);
+
+        assertEquals(new CacheStats(4, 5, 0, 1), filmStorage.getStats());
+    }
+
+    @Test
+    public void testUserIsReadOnceUntilItChanges() {
+        userStorage.getById(1);
+        userStorage.getById(1);
+        verify(userDelegate, times(1)).getById(1);
+
+        userStorage.addFriend(1, 2);
+        assertEquals(Set.of(2), userStorage.getById(1).getFriends());
+        userStorage.getById(2);
+        userStorage.addFriend(1, 3);
+        assertEquals(Set.of(2, 3), userStorage.getById(1).getFriends());
+        assertEquals(Set.of(), userStorage.getById(2).getFriends());
+        userStorage.deleteFriend(1, 2);
+        assertEquals(Set.of(3), userStorage.getById(1).getFriends());
+
+        verify(userDelegate, times(4)).getById(1);
+        verify(userDelegate, times(1)).getById(2);
+    }
+}
@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EntityCacheTest {
+
+    private final List<Integer> loads = new ArrayList<>();
+    private final IntFunction<List<Integer>> loader = id -> {
+        loads.add(id);
+        return new ArrayList<>(List.of(id));
+    };
+
+    @Test
+    public void testLeastRecentlyReadEntityIsEvicted() {
+        var cache = new EntityCache<List<Integer>>(2, Duration.ofHours(1), ArrayList::new);
+        cache.get(1, loader);
+        cache.get(2, loader);
+        cache.get(1, loader);
+        cache.get(3, loader);
+        cache.get(1, loader);
+        cache.get(2, loader);
+
+        assertEquals(List.of(1, 2, 3, 2), loads);
+        assertEquals(new CacheStats(2, 4, 2, 2), cache.getStats());
+    }
+
+    @Test
+    public void testExpiredEntityIsLoadedAgain() throws InterruptedException {
+        var cache = new EntityCache<List<Integer>>(10, Duration.ofMillis(20), ArrayList::new);
+        cache.get(1, loader);
+        Thread.sleep(50);
+        cache.get(1, loader);
+
+        assertEquals(List.of(1, 1), loads);
+        assertEquals(new CacheStats(0, 2, 1, 1), cache.getStats());
+    }
+
+    @Test
+    public void testInvalidatedEntityIsLoadedAgain() {
+        var cache = new EntityCache<List<Integer>>(10, Duration.ofHours(1), ArrayList::new);
+        cache.get(1, loader);
+        cache.get(2, loader);
+        cache.invalidate(1);
+        cache.get(1, loader);
+        cache.get(2, loader);
+        cache.invalidateAll();
+        cache.get(2, loader);
+
+        assertEquals(List.of(1, 2, 1, 2), loads);
+    }
+
+    @Test
+    public void testEntityLoadedDuringInvalidationIsNotCached() {
+        var cache = new EntityCache<List<Integer>>(10, Duration.ofHours(1), ArrayList::new);
+        cache.get(1, id -> {
+            // the entity changes after it has been read, but before the read value reaches the cache
+            var stale = loader.apply(id);
+            cache.invalidate(id);
+            return stale;
+        });
+        cache.get(1, loader);
+        cache.get(1, loader);
+
+        assertEquals(List.of(1, 1), loads);
+    }
+
+    @Test
+    public void testCallersGetCopies() {
+        var cache = new EntityCache<List<Integer>>(10, Duration.ofHours(1), ArrayList::new);
+        var first = cache.get(1, loader);
+        first.add(2);
+        var second = cache.get(1, loader);
+
+        assertEquals(List.of(1), second);
+        assertNotSame(second, cache.get(1, loader));
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() {
+        var cache = new EntityCache<List<Integer>>(10, Duration.ofHours(1), ArrayList::new);
+        assertThrows(NoSuchElementException.class, () -> cache.get(1, id -> {
+            throw new NoSuchElementException();
+        }));
+        cache.get(1, loader);
+
+        assertEquals(List.of(1), loads);
+        assertEquals(new CacheStats(0, 2, 0, 1), cache.getStats());
+    }
+}
@@ -0,0 +1,176 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.ExportRecord;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendshipRequest;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikeLogFilmStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DirtiesContext
+@AutoConfigureTestDatabase
+@SpringBootTest
+class ExportDbStorageTest {
+
+    @Autowired
+    private ExportDbStorage exportStorage;
+
+    @Autowired
+    @Qualifier("FilmDbStorage")
+    private FilmStorage filmStorage;
+
+    @Autowired
+    @Qualifier("UserDbStorage")
+    private UserStorage userStorage;
+
+    @Autowired
+    @Qualifier("InMemoryFilmStorage")
+    private FilmStorage inMemoryFilmStorage;
+
+    @Autowired
+    @Qualifier("InMemoryUserStorage")
+    private UserStorage inMemoryUserStorage;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    @Qualifier("MpaDbStorage")
+    private MpaStorage mpaStorage;
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    public void testChangesDuringExportAreNotExported() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            userStorage.addUser(getUser());
+            filmStorage.addFilm(getFilm());
+        }
+        filmStorage.addLike(1, 1);
+        var records = new ArrayList<ExportRecord>();
+
+        exportStorage.export(record -> {
+            if (records.isEmpty()) {
+                // committed by another transaction after the export has started reading
+                var writer = new Thread(() -> {
+                    userStorage.addUser(getUser());
+                    var filmId = filmStorage.addFilm(getFilm());
+                    filmStorage.addLike(filmId, 2);
+                    filmStorage.addLike(2, 3);
+                    userStorage.addFriend(1, 2);
+                });
+                writer.start();
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            records.add(record);
+        });
+
+        assertEquals(7, records.size());
+        assertEquals(1, records.stream().filter(record -> record.getLike() != null).count());
+        assertEquals(0, records.stream().filter(record -> record.getFriendship() != null).count());
+        assertEquals(4, userStorage.getAllUsers().size());
+        assertEquals(4, filmStorage.getAllFilms().size());
+    }
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    public void testLikesAreExportedFromTheLog(@TempDir Path directory) throws Exception {
+        for (int i = 0; i < 2; i++) {
+            userStorage.addUser(getUser());
+            filmStorage.addFilm(getFilm());
+        }
+        filmStorage.addLike(1, 1);
+
+        try (var likeLog = new LikeLogFilmStorage(filmStorage, userStorage, directory.resolve("likes.log"),
+                Duration.ofHours(1))) {
+            likeLog.addLike(2, 2);
+            likeLog.deleteLike(1, 1);
+            var likes = new ArrayList<Like>();
+            new ExportDbStorage(jdbcTemplate, mpaStorage, likeLog, true, inMemoryFilmStorage, inMemoryUserStorage,
+                    StorageMode.DATABASE).export(record -> {
+                if (record.getLike() != null) {
+                    likes.add(record.getLike());
+                }
+            });
+
+            assertEquals(1, likes.size());
+            assertEquals(2, likes.get(0).getFilmId());
+            assertEquals(2, likes.get(0).getUserId());
+            assertNotNull(likes.get(0).getCreatedAt());
+        }
+    }
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    public void testInMemoryStoragesAreExportedInMemoryMode() {
+        for (int i = 0; i < 2; i++) {
+            inMemoryUserStorage.addUser(getUser());
+            inMemoryFilmStorage.addFilm(getFilm());
+        }
+        inMemoryFilmStorage.addLike(2, 1);
+        inMemoryUserStorage.addFriend(1, 2);
+        // the database is left out
+        userStorage.addUser(getUser());
+        var records = new ArrayList<ExportRecord>();
+
+        new ExportDbStorage(jdbcTemplate, mpaStorage, filmStorage, false, inMemoryFilmStorage, inMemoryUserStorage,
+                StorageMode.MEMORY).export(records::add);
+
+        assertEquals(6, records.size());
+        assertEquals(List.of(1, 2), records.stream()
+                .filter(record -> record.getUser() != null)
+                .map(record -> record.getUser().getId())
+                .collect(Collectors.toList()));
+        assertTrue(records.stream().filter(record -> record.getUser() != null)
+                .allMatch(record -> record.getUser().getFriends() == null));
+        assertTrue(records.stream().filter(record -> record.getFilm() != null)
+                .allMatch(record -> record.getFilm().getLikes() == null));
+        assertEquals(new Like(2, 1), records.get(4).getLike());
+        assertEquals(new FriendshipRequest(1, 2), records.get(5).getFriendship());
+    }
+
+    private static User getUser() {
+        return User.builder()
+                .email("user@mail.ru")
+                .login("login")
+                .name("name")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+
+    private static Film getFilm() {
+        return Film.builder()
+                .name("film")
+                .description("descr")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Mpa(1, "G"))
+                .build();
+    }
+}
@@ -0,0 +1,246 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.QueryCounter;
+import ru.yandex.practicum.filmorate.controllers.UserControllerTest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.service.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@Import(QueryCounter.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class FilmStorageTest {
+    private static final int USERS = 20;
+
+    @Autowired
+    @Qualifier("FilmDbStorage")
+    private FilmStorage filmStorage;
+
+    @Autowired
+    @Qualifier("UserDbStorage")
+    private UserStorage userStorage;
+
+    @Autowired
+    private FilmDbStorage filmDbStorage;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private QueryCounter queryCounter;
+
+    @Autowired
+    private CoLikeIndex coLikeIndex;
+
+    @Test
+    public void testGetAllFilmsQueryCountDoesNotDependOnCatalogSize() throws InterruptedException {
+        coLikeIndex.awaitLoad();
+        createUsers(USERS);
+        addFilms(5);
+        queryCounter.reset();
+        assertEquals(5, filmStorage.getAllFilms().size());
+        var smallCatalogQueries = queryCounter.get();
+        assertEquals(2, smallCatalogQueries, "films and likes are read, MPA rates come from the dictionary");
+
+        addFilms(50);
+        queryCounter.reset();
+        var films = filmStorage.getAllFilms();
+        assertEquals(55, films.size());
+        assertEquals(smallCatalogQueries, queryCounter.get());
+        assertEquals(19, films.stream().mapToInt(Film::obtainLikesCount).max().orElse(0));
+        assertEquals("G", films.iterator().next().getMpa().getName());
+    }
+
+    @Test
+    public void testGetByIdQueryCountDoesNotDependOnLikes() {
+        createUsers(USERS);
+        addFilms(20);
+        queryCounter.reset();
+        filmStorage.getById(1);
+        var unlikedFilmQueries = queryCounter.get();
+
+        queryCounter.reset();
+        var film = filmStorage.getById(20);
+        assertEquals(unlikedFilmQueries, queryCounter.get());
+        assertEquals(19, film.obtainLikesCount());
+    }
+
+    @Test
+    public void testReconcileLikeCountsRepairsDrift() {
+        createUsers(USERS);
+        addFilms(5);
+        jdbcTemplate.update("update films set like_count = 100 where id in (2, 4)");
+
+        assertEquals(List.of(2, 4), filmDbStorage.reconcileLikeCounts());
+        assertEquals(Map.of(1, 0, 2, 1, 3, 2, 4, 3, 5, 4), filmStorage.getLikeCounts());
+        assertEquals(List.of(), filmDbStorage.reconcileLikeCounts());
+    }
+
+    @Test
+    public void testLikeCountFollowsLikes() {
+        createUsers(USERS);
+        addFilms(3);
+        filmStorage.addLike(1, 5);
+        filmStorage.deleteLike(3, 1);
+        assertThrows(NoSuchElementException.class, () -> filmStorage.deleteLike(3, 1));
+
+        assertEquals(Map.of(1, 1, 2, 1, 3, 1), filmStorage.getLikeCounts());
+        assertEquals(List.of(1, 2, 3), filmStorage.getMostPopular(5).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testAddLikesInBatch() {
+        createUsers(USERS);
+        addFilms(2);
+        var results = filmStorage.addLikes(List.of(
+                new Like(1, 1), new Like(2, 1), new Like(1, 1), new Like(9, 1), new Like(1, 99), new Like(2, 3)));
+
+        assertEquals(List.of(LikeStatus.ADDED, LikeStatus.DUPLICATE, LikeStatus.DUPLICATE,
+                        LikeStatus.NOT_FOUND, LikeStatus.NOT_FOUND, LikeStatus.ADDED),
+                results.stream().map(LikeResult::getStatus).collect(Collectors.toList()));
+        assertEquals(Set.of(1), filmStorage.getById(1).getLikes());
+        assertEquals(Set.of(1, 3), filmStorage.getById(2).getLikes());
+        assertEquals(Map.of(1, 1, 2, 2), filmStorage.getLikeCounts());
+        assertEquals(List.of(), filmDbStorage.reconcileLikeCounts());
+    }
+
+    @Test
+    public void testLikesAddedConcurrentlyWithABatchAreDuplicates() throws Exception {
+        createUsers(USERS);
+        addFilms(2);
+        var inserted = new CountDownLatch(1);
+        var writer = new Thread(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.update("insert into likes (film_id, user_id) values (1, 2)");
+            jdbcTemplate.update("update films set like_count = like_count + 1 where id = 1");
+            inserted.countDown();
+            // the batch checks for the like before it's committed and inserts it after
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        writer.start();
+        inserted.await();
+
+        var results = filmStorage.addLikes(List.of(new Like(1, 1), new Like(1, 2), new Like(2, 2)));
+        writer.join();
+
+        assertEquals(List.of(LikeStatus.ADDED, LikeStatus.DUPLICATE, LikeStatus.ADDED),
+                results.stream().map(LikeResult::getStatus).collect(Collectors.toList()));
+        assertEquals(Set.of(1, 2), filmStorage.getById(1).getLikes());
+        assertEquals(Map.of(1, 2, 2, 2), filmStorage.getLikeCounts());
+        assertEquals(List.of(), filmDbStorage.reconcileLikeCounts());
+    }
+
+    /**
+     * Adds likes one by one and in batches, the throughput of both is compared by {@code LikeBatchBenchmark}.
+     */
+    @Test
+    public void testBatchAndSingleLikesKeepLikeCounts() {
+        final int users = 500;
+        final int films = 2 * USERS;
+        createUsers(users);
+        addFilms(films);
+        var single = new ArrayList<Like>();
+        var batched = new ArrayList<Like>();
+        for (int userId = USERS; userId <= users; userId++) {
+            for (int filmId = 1; filmId <= films; filmId++) {
+                (filmId <= USERS ? single : batched).add(new Like(filmId, userId));
+            }
+        }
+        var countsBefore = filmStorage.getLikeCounts();
+
+        single.forEach(like -> filmStorage.addLike(like.getFilmId(), like.getUserId()));
+        var results = new ArrayList<LikeResult>();
+        for (int from = 0; from < batched.size(); from += 1000) {
+            results.addAll(filmStorage.addLikes(batched.subList(from, Math.min(from + 1000, batched.size()))));
+        }
+
+        assertEquals(batched.size(), results.size());
+        assertTrue(results.stream().allMatch(result -> result.getStatus() == LikeStatus.ADDED));
+        var counts = filmStorage.getLikeCounts();
+        var added = users - USERS + 1;
+        for (int filmId = 1; filmId <= films; filmId++) {
+            assertEquals(countsBefore.get(filmId) + added, counts.get(filmId));
+            assertTrue(filmStorage.hasLike(filmId, users));
+        }
+        assertEquals(List.of(), filmDbStorage.reconcileLikeCounts());
+    }
+
+    @Test
+    public void testForEachLikeSince() {
+        createUsers(3);
+        addFilms(3);
+        jdbcTemplate.update("update likes set created_at = dateadd('DAY', -2, created_at) where film_id = 2");
+
+        var likes = new ArrayList<Like>();
+        filmStorage.forEachLikeSince(LocalDateTime.now().minusDays(1), likes::add);
+
+        assertEquals(Set.of(List.of(3, 1), List.of(3, 2)), likes.stream()
+                .map(like -> List.of(like.getFilmId(), like.getUserId()))
+                .collect(Collectors.toSet()));
+        assertTrue(likes.get(0).getCreatedAt().isAfter(LocalDateTime.now().minusMinutes(1)));
+    }
+
+    private void createUsers(int n) {
+        for (int i = 0; i < n; i++) {
+            userStorage.addUser(UserControllerTest.getValidUser());
+        }
+    }
+
+    /**
+     * Adds films where the film number k (counting from 1 within the call) is liked by users 1..k-1,
+     * but by no more than {@code USERS - 1} users.
+     */
+    private void addFilms(int n) {
+        for (int i = 0; i < n; i++) {
+            var filmId = filmStorage.addFilm(Film.builder()
+                    .name("film" + i)
+                    .description("descr" + i)
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .duration(i + 1)
+                    .mpa(new Mpa(1, "G"))
+                    .build());
+            for (int userId = 1; userId <= Math.min(i, USERS - 1); userId++) {
+                filmStorage.addLike(filmId, userId);
+            }
+        }
+    }
+}
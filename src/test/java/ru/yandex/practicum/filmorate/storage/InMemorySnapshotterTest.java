@@ -0,0 +1,167 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.controllers.UserControllerTest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IntSet;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class InMemorySnapshotterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRestoresWhatWasSnapshotted() {
+        var path = directory.resolve("in-memory.snapshot");
+        var userStorage = new InMemoryUserStorage();
+        var filmStorage = createFilmStorage(userStorage);
+        for (int i = 0; i < 5; i++) {
+            userStorage.addUser(UserControllerTest.getValidUser());
+            filmStorage.addFilm(getFilm(i));
+        }
+        userStorage.addFriend(1, 2);
+        userStorage.addFriend(1, 5);
+        filmStorage.addLike(3, 1);
+        filmStorage.addLike(3, 4);
+        new InMemorySnapshotter(filmStorage, userStorage, path, StorageMode.MEMORY).snapshot();
+
+        var restoredUsers = new InMemoryUserStorage();
+        var restoredFilms = createFilmStorage(restoredUsers);
+        new InMemorySnapshotter(restoredFilms, restoredUsers, path, StorageMode.MEMORY).restore();
+
+        assertEquals(new ArrayList<>(userStorage.getAllUsers()), new ArrayList<>(restoredUsers.getAllUsers()));
+        assertEquals(new ArrayList<>(filmStorage.getAllFilms()), new ArrayList<>(restoredFilms.getAllFilms()));
+        assertEquals(6, restoredUsers.addUser(UserControllerTest.getValidUser()).getId());
+        assertEquals(6, restoredFilms.addFilm(getFilm(5)));
+        assertFalse(Files.exists(directory.resolve("in-memory.snapshot.writing")));
+    }
+
+    @Test
+    public void testSnapshotsDontStopChanges() throws Exception {
+        var path = directory.resolve("in-memory.snapshot");
+        var userStorage = new InMemoryUserStorage();
+        var filmStorage = createFilmStorage(userStorage);
+        for (int i = 0; i < 2000; i++) {
+            userStorage.addUser(UserControllerTest.getValidUser());
+            filmStorage.addFilm(getFilm(i));
+        }
+        var snapshotter = new InMemorySnapshotter(filmStorage, userStorage, path, StorageMode.MEMORY);
+        var done = new AtomicBoolean();
+        var liker = new Thread(() -> {
+            for (int userId = 1; userId <= 2000; userId++) {
+                for (int filmId = 1; filmId <= 50; filmId++) {
+                    filmStorage.addLike(filmId, userId);
+                }
+            }
+            done.set(true);
+        });
+        liker.start();
+        var snapshots = 0;
+        while (!done.get()) {
+            snapshotter.snapshot();
+            snapshots++;
+        }
+        liker.join();
+        snapshotter.snapshot();
+
+        var restoredUsers = new InMemoryUserStorage();
+        var restoredFilms = createFilmStorage(restoredUsers);
+        new InMemorySnapshotter(restoredFilms, restoredUsers, path, StorageMode.MEMORY).restore();
+        assertTrue(snapshots > 0);
+        assertEquals(2000, restoredFilms.getById(50).getLikes().size());
+        assertEquals(filmStorage.getLikeCounts(), restoredFilms.getLikeCounts());
+    }
+
+    @Test
+    public void testLikesAndFriendsOfMissingUsersAreDropped() throws Exception {
+        var path = directory.resolve("in-memory.snapshot");
+        // user 2 was added, befriended and liked a film while the users were already written
+        try (var out = new DataOutputStream(Files.newOutputStream(path))) {
+            out.writeInt(0x464c534e);
+            out.writeInt(1);
+            out.writeBoolean(true);
+            out.writeInt(1);
+            Snapshots.writeString(out, "user@mail.ru");
+            Snapshots.writeString(out, "login");
+            Snapshots.writeString(out, "name");
+            Snapshots.writeDate(out, LocalDate.of(1990, 1, 1));
+            Snapshots.writeInts(out, IntSet.of(2));
+            out.writeBoolean(false);
+            out.writeInt(2);
+            out.writeBoolean(true);
+            out.writeInt(1);
+            Snapshots.writeString(out, "film");
+            Snapshots.writeString(out, "descr");
+            Snapshots.writeDate(out, LocalDate.of(2000, 1, 1));
+            out.writeInt(100);
+            out.writeInt(1);
+            Snapshots.writeString(out, "G");
+            Snapshots.writeInts(out, IntSet.of(1, 2));
+            out.writeBoolean(false);
+            out.writeInt(2);
+        }
+
+        var userStorage = new InMemoryUserStorage();
+        var filmStorage = createFilmStorage(userStorage);
+        new InMemorySnapshotter(filmStorage, userStorage, path, StorageMode.MEMORY).restore();
+
+        assertEquals(Set.of(), userStorage.getById(1).getFriends());
+        assertEquals(Set.of(1), filmStorage.getById(1).getLikes());
+    }
+
+    @Test
+    public void testSnapshotsAreRefusedOutsideMemoryMode() {
+        var userStorage = new InMemoryUserStorage();
+        var filmStorage = createFilmStorage(userStorage);
+        assertThrows(IllegalArgumentException.class, () -> new InMemorySnapshotter(filmStorage, userStorage,
+                directory.resolve("in-memory.snapshot"), StorageMode.DATABASE));
+    }
+
+    @Test
+    public void testMissingSnapshotLeavesStoragesEmpty() {
+        var userStorage = new InMemoryUserStorage();
+        var filmStorage = createFilmStorage(userStorage);
+        new InMemorySnapshotter(filmStorage, userStorage, directory.resolve("missing"), StorageMode.MEMORY).restore();
+
+        assertTrue(userStorage.getAllUsers().isEmpty());
+        assertTrue(filmStorage.getAllFilms().isEmpty());
+    }
+
+    private static InMemoryFilmStorage createFilmStorage(InMemoryUserStorage userStorage) {
+        var mpaStorage = mock(MpaStorage.class);
+        when(mpaStorage.contains(anyInt())).thenReturn(true);
+        when(mpaStorage.getById(anyInt())).thenAnswer(invocation -> new Mpa(invocation.getArgument(0), "G"));
+        return new InMemoryFilmStorage(mpaStorage, userStorage);
+    }
+
+    private static Film getFilm(int i) {
+        return Film.builder()
+                .name("film" + i)
+                .description("descr" + i)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(i + 1)
+                .mpa(new Mpa(i % 5 + 1, null))
+                .build();
+    }
+}
@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.controllers.UserControllerTest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DirtiesContext
+@AutoConfigureTestDatabase
+@SpringBootTest(properties = "filmorate.storage=memory")
+class InMemoryStorageModeTest {
+
+    @Autowired
+    @Qualifier("FilmStorage")
+    private FilmStorage filmStorage;
+
+    @Autowired
+    @Qualifier("UserStorage")
+    private UserStorage userStorage;
+
+    @Autowired
+    @Qualifier("FilmDbStorage")
+    private FilmStorage filmDbStorage;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Test
+    public void testFilmsAndUsersAreKeptInMemory() {
+        assertTrue(filmStorage instanceof InMemoryFilmStorage);
+        assertTrue(userStorage instanceof InMemoryUserStorage);
+
+        var userId = userStorage.addUser(UserControllerTest.getValidUser()).getId();
+        var filmId = filmService.addFilm(getFilm());
+        filmService.addLike(filmId, userId);
+
+        assertEquals(List.of(filmId), filmService.getMostPopular(1)
+                .map(Film::getId)
+                .collect(Collectors.toList()));
+        assertEquals(0, filmDbStorage.getAllFilms().size());
+    }
+
+    private static Film getFilm() {
+        return Film.builder()
+                .name("film")
+                .description("descr")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Mpa(1, "G"))
+                .build();
+    }
+}
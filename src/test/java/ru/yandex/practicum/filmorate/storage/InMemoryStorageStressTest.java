@@ -0,0 +1,159 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import ru.yandex.practicum.filmorate.controllers.UserControllerTest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class InMemoryStorageStressTest {
+    private static final int THREADS = 16;
+    private static final int USERS = 100;
+    private static final int FILMS = 100;
+    private static final int OPERATIONS_PER_THREAD = 50_000;
+
+    private InMemoryUserStorage userStorage;
+    private InMemoryFilmStorage filmStorage;
+
+    @BeforeEach
+    public void createStorages() {
+        var mpaStorage = mock(MpaStorage.class);
+        when(mpaStorage.contains(anyInt())).thenReturn(true);
+        when(mpaStorage.getById(anyInt())).thenReturn(new Mpa(1, "G"));
+        userStorage = new InMemoryUserStorage();
+        filmStorage = new InMemoryFilmStorage(mpaStorage, userStorage);
+    }
+
+    @Test
+    public void testConcurrentInsertsGetDistinctIds() throws Exception {
+        Set<Integer> userIds = ConcurrentHashMap.newKeySet();
+        Set<Integer> filmIds = ConcurrentHashMap.newKeySet();
+        runConcurrently(thread -> {
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(userIds.add(userStorage.addUser(UserControllerTest.getValidUser()).getId()));
+                assertTrue(filmIds.add(filmStorage.addFilm(getFilm(i))));
+            }
+        });
+
+        assertEquals(THREADS * 1000, userStorage.getAllUsers().size());
+        assertEquals(THREADS * 1000, filmStorage.getAllFilms().size());
+        assertEquals(THREADS * 1000 + 1, filmStorage.getLastId());
+        assertEquals(THREADS * 1000 + 1, userStorage.getLastId());
+    }
+
+    @Test
+    public void testConcurrentLikesAndFriendshipsKeepInvariants() throws Exception {
+        for (int i = 0; i < USERS; i++) {
+            userStorage.addUser(UserControllerTest.getValidUser());
+        }
+        for (int i = 0; i < FILMS; i++) {
+            filmStorage.addFilm(getFilm(i));
+        }
+        // successful adds minus successful deletes of every film/user pair, must end up as 0 or 1
+        var likeBalance = new ConcurrentHashMap<List<Integer>, AtomicInteger>();
+        // every thread changes friends only of users with id % THREADS equal to its number, so it knows
+        // exactly which friends they have, while the storage sees all threads at once
+        var expectedFriends = new ConcurrentHashMap<Integer, Set<Integer>>();
+        var rejected = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            var random = ThreadLocalRandom.current();
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                var filmId = 1 + random.nextInt(FILMS);
+                var userId = 1 + random.nextInt(USERS);
+                var ownUserId = 1 + thread + THREADS * random.nextInt(USERS / THREADS);
+                var own = expectedFriends.computeIfAbsent(ownUserId, id -> new HashSet<>());
+                try {
+                    switch (random.nextInt(5)) {
+                        case 0:
+                            filmStorage.addLike(filmId, userId);
+                            likeBalance.computeIfAbsent(List.of(filmId, userId), k -> new AtomicInteger())
+                                    .incrementAndGet();
+                            break;
+                        case 1:
+                            filmStorage.deleteLike(filmId, userId);
+                            likeBalance.computeIfAbsent(List.of(filmId, userId), k -> new AtomicInteger())
+                                    .decrementAndGet();
+                            break;
+                        case 2:
+                            userStorage.addFriend(ownUserId, userId);
+                            assertTrue(own.add(userId));
+                            break;
+                        case 3:
+                            userStorage.deleteFriend(ownUserId, userId);
+                            own.remove(userId);
+                            break;
+                        default:
+                            assertTrue(filmStorage.getById(filmId).obtainLikesCount() <= USERS);
+                            assertEquals(own, userStorage.getById(ownUserId).getFriends());
+                    }
+                } catch (DuplicateKeyException | NoSuchElementException e) {
+                    rejected.incrementAndGet();
+                }
+            }
+        });
+
+        assertTrue(rejected.get() > 0);
+        var counts = filmStorage.getLikeCounts();
+        for (var film : filmStorage.getAllFilms()) {
+            for (int userId = 1; userId <= USERS; userId++) {
+                var balance = likeBalance.getOrDefault(List.of(film.getId(), userId), new AtomicInteger()).get();
+                assertEquals(film.getLikes().contains(userId) ? 1 : 0, balance);
+            }
+            assertEquals(film.obtainLikesCount(), counts.get(film.getId()));
+        }
+
+        Map<Integer, User> users = userStorage.getAllUsers().stream().collect(Collectors.toMap(User::getId, u -> u));
+        for (var user : users.values()) {
+            assertEquals(expectedFriends.getOrDefault(user.getId(), Set.of()), user.getFriends());
+        }
+    }
+
+    private void runConcurrently(IntConsumer task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            var futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < THREADS; t++) {
+                var thread = t;
+                futures.add(executor.submit(() -> task.accept(thread)));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Film getFilm(int i) {
+        return Film.builder()
+                .name("film" + i)
+                .description("descr" + i)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(i + 1)
+                .mpa(new Mpa(1, null))
+                .build();
+    }
+}
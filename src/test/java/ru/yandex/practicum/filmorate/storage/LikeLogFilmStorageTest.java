@@ -0,0 +1,317 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+import ru.yandex.practicum.filmorate.controllers.UserControllerTest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikeLogFilmStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LikeLogFilmStorageTest {
+    private static final Duration NEVER = Duration.ofHours(1);
+    private static final LocalDateTime EPOCH = LocalDateTime.ofInstant(Instant.EPOCH, ZoneId.systemDefault());
+
+    @TempDir
+    Path directory;
+    private Path path;
+    private InMemoryUserStorage userStorage;
+    private InMemoryFilmStorage delegate;
+    private LikeLogFilmStorage filmStorage;
+
+    @BeforeEach
+    public void createStorages() {
+        createEmptyStorages();
+        for (int i = 0; i < 3; i++) {
+            userStorage.addUser(UserControllerTest.getValidUser());
+            delegate.addFilm(getFilm(i));
+        }
+        path = directory.resolve("likes.log");
+    }
+
+    @AfterEach
+    public void closeStorage() throws Exception {
+        if (filmStorage != null) {
+            filmStorage.close();
+        }
+    }
+
+    @Test
+    public void testLikesSurviveReopening() throws Exception {
+        delegate.addLike(1, 1);
+        filmStorage = open();
+        assertEquals(Set.of(1), filmStorage.getById(1).getLikes());
+
+        filmStorage.addLike(1, 2);
+        filmStorage.addLike(2, 3);
+        filmStorage.deleteLike(1, 1);
+        var filmId = filmStorage.addFilm(getFilm(3));
+        filmStorage.addLike(filmId, 1);
+        filmStorage.close();
+
+        filmStorage = open();
+        assertEquals(List.of(Set.of(2), Set.of(3), Set.of(), Set.of(1)), filmStorage.getAllFilms().stream()
+                .map(Film::getLikes)
+                .collect(Collectors.toList()));
+        assertEquals(Map.of(1, 1, 2, 1, 3, 0, 4, 1), filmStorage.getLikeCounts());
+        assertEquals(List.of(1, 2, 4), filmStorage.getMostPopular(3).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList()));
+        assertEquals(5, filmStorage.getRecordCount());
+        // the likes live in the log only
+        assertEquals(Set.of(1), delegate.getById(1).getLikes());
+    }
+
+    @Test
+    public void testInvalidChangesAreRejected() {
+        filmStorage = open();
+        filmStorage.addLike(1, 1);
+
+        assertThrows(DuplicateKeyException.class, () -> filmStorage.addLike(1, 1));
+        assertThrows(NoSuchElementException.class, () -> filmStorage.deleteLike(1, 2));
+        assertThrows(NoSuchElementException.class, () -> filmStorage.addLike(9, 1));
+        assertThrows(NoSuchElementException.class, () -> filmStorage.addLike(1, 9));
+        assertThrows(NoSuchElementException.class, () -> filmStorage.hasLike(1, 9));
+        assertTrue(filmStorage.hasLike(1, 1));
+        assertEquals(List.of(LikeStatus.DUPLICATE, LikeStatus.ADDED, LikeStatus.NOT_FOUND),
+                filmStorage.addLikes(List.of(new Like(1, 1), new Like(1, 2), new Like(9, 1))).stream()
+                        .map(LikeResult::getStatus)
+                        .collect(Collectors.toList()));
+        filmStorage.deleteLikes(List.of(new Like(1, 1), new Like(1, 3)));
+        assertEquals(Set.of(2), filmStorage.getById(1).getLikes());
+        assertEquals(3, filmStorage.getRecordCount());
+    }
+
+    @Test
+    public void testCompactionKeepsOnlyLiveLikes() throws Exception {
+        filmStorage = open();
+        for (int i = 0; i < 1000; i++) {
+            filmStorage.addLike(1, 1);
+            filmStorage.deleteLike(1, 1);
+        }
+        filmStorage.addLike(1, 2);
+        filmStorage.addLike(3, 1);
+        assertEquals(2002, filmStorage.getRecordCount());
+
+        filmStorage.compact();
+        assertEquals(2, filmStorage.getRecordCount());
+        filmStorage.addLike(2, 2);
+        filmStorage.close();
+
+        filmStorage = open();
+        assertEquals(3, filmStorage.getRecordCount());
+        assertEquals(Map.of(1, 1, 2, 1, 3, 1), filmStorage.getLikeCounts());
+        assertEquals(Set.of(2), filmStorage.getById(1).getLikes());
+    }
+
+    @Test
+    public void testLogGrowsBeyondItsMapping() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            userStorage.addUser(UserControllerTest.getValidUser());
+        }
+        filmStorage = open();
+        // a megabyte holds about 116 thousand records
+        for (int round = 0; round < 300; round++) {
+            for (int userId = 1; userId <= 203; userId++) {
+                filmStorage.addLike(1, userId);
+            }
+            for (int userId = 1; userId <= 203; userId++) {
+                filmStorage.deleteLike(1, userId);
+            }
+        }
+        filmStorage.addLike(1, 7);
+        filmStorage.close();
+
+        filmStorage = open();
+        assertEquals(300 * 203 * 2 + 1, filmStorage.getRecordCount());
+        assertEquals(Set.of(7), filmStorage.getById(1).getLikes());
+    }
+
+    @Test
+    public void testTornRecordEndsTheLog() throws Exception {
+        filmStorage = open();
+        filmStorage.addLike(1, 1);
+        filmStorage.addLike(1, 2);
+        filmStorage.close();
+        // a crash in the middle of the third record leaves its ids and time without the operation
+        try (var file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(8 + 2 * 17);
+            file.writeInt(1);
+            file.writeInt(3);
+            file.writeLong(System.currentTimeMillis());
+        }
+
+        filmStorage = open();
+        assertEquals(2, filmStorage.getRecordCount());
+        assertEquals(Set.of(1, 2), filmStorage.getById(1).getLikes());
+        filmStorage.addLike(1, 3);
+        filmStorage.close();
+
+        filmStorage = open();
+        assertEquals(Set.of(1, 2, 3), filmStorage.getById(1).getLikes());
+    }
+
+    @Test
+    public void testLikesOfRecreatedStorageAreDropped() throws Exception {
+        filmStorage = open();
+        filmStorage.addLike(1, 1);
+        filmStorage.addLike(2, 2);
+        filmStorage.addLike(3, 3);
+        filmStorage.close();
+        // the database is recreated on startup, so ids start again from 1
+        createEmptyStorages();
+
+        filmStorage = open();
+        assertEquals(Map.of(), filmStorage.getLikeCounts());
+        assertEquals(0, filmStorage.getRecordCount());
+        userStorage.addUser(UserControllerTest.getValidUser());
+        var filmId = filmStorage.addFilm(getFilm(0));
+        assertEquals(Set.of(), filmStorage.getById(filmId).getLikes());
+        filmStorage.addLike(filmId, 1);
+        filmStorage.close();
+
+        filmStorage = open();
+        assertEquals(Map.of(filmId, 1), filmStorage.getLikeCounts());
+        assertEquals(1, filmStorage.getRecordCount());
+    }
+
+    @Test
+    public void testLikesKeepTheirTime() throws Exception {
+        filmStorage = open();
+        var before = LocalDateTime.now().minusSeconds(1);
+        filmStorage.addLike(1, 1);
+        filmStorage.addLike(2, 1);
+        filmStorage.addLike(2, 2);
+        filmStorage.deleteLike(2, 1);
+        filmStorage.compact();
+        filmStorage.close();
+
+        filmStorage = open();
+        var likes = new ArrayList<Like>();
+        filmStorage.forEachLikeSince(before, likes::add);
+        assertEquals(List.of(new Like(2, 2), new Like(1, 1)), likes.stream()
+                .map(like -> new Like(like.getFilmId(), like.getUserId()))
+                .collect(Collectors.toList()));
+        assertTrue(likes.stream().noneMatch(like -> like.getCreatedAt().isBefore(before)));
+        likes.clear();
+        filmStorage.forEachLikeSince(LocalDateTime.now().plusMinutes(1), likes::add);
+        assertEquals(List.of(), likes);
+    }
+
+    @Test
+    public void testFirstVersionLogIsRewritten() throws Exception {
+        try (var file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.writeInt(0x464c4b4c);
+            file.writeInt(1);
+            for (var record : new int[][]{{1, 1, 1}, {1, 2, 1}, {1, 1, 2}, {3, 3, 1}}) {
+                file.writeInt(record[0]);
+                file.writeInt(record[1]);
+                file.writeByte(record[2]);
+            }
+        }
+
+        filmStorage = open();
+        assertEquals(Map.of(1, 1, 2, 0, 3, 1), filmStorage.getLikeCounts());
+        assertEquals(2, filmStorage.getRecordCount());
+        var likes = new ArrayList<Like>();
+        filmStorage.forEachLikeSince(LocalDateTime.MIN, likes::add);
+        assertEquals(Set.of(new Like(1, 2, EPOCH), new Like(3, 3, EPOCH)), Set.copyOf(likes));
+        filmStorage.addLike(2, 1);
+        filmStorage.close();
+
+        filmStorage = open();
+        assertEquals(Map.of(1, 1, 2, 1, 3, 1), filmStorage.getLikeCounts());
+        assertEquals(3, filmStorage.getRecordCount());
+    }
+
+    @Test
+    public void testFilmsAreReadWithoutTheirStoredLikes() {
+        delegate = spy(delegate);
+        filmStorage = open();
+        filmStorage.addLike(1, 1);
+        // a new log is seeded with the stored likes
+        clearInvocations(delegate);
+
+        assertEquals(Set.of(1), filmStorage.getById(1).getLikes());
+        assertEquals(Set.of(1), filmStorage.getByIds(List.of(1)).get(0).getLikes());
+        assertEquals(Set.of(1), filmStorage.getFilmsPage(0, 1).get(0).getLikes());
+        assertEquals(3, filmStorage.getAllFilms().size());
+        filmStorage.forEachFilm(film -> assertEquals(film.getId() == 1 ? Set.of(1) : Set.of(), film.getLikes()));
+        // a film added behind the log's back is looked up before its first like
+        var filmId = delegate.addFilm(getFilm(3));
+        filmStorage.addLike(filmId, 2);
+        assertEquals(Set.of(2), filmStorage.getById(filmId).getLikes());
+        verify(delegate, never()).getById(anyInt());
+        verify(delegate, never()).getByIds(anyList());
+        verify(delegate, never()).getFilmsPage(anyInt(), anyInt());
+        verify(delegate, never()).getAllFilms();
+        verify(delegate, never()).forEachFilm(any());
+    }
+
+    @Test
+    public void testForeignFileIsRejected() throws IOException {
+        try (var file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.writeLong(42);
+        }
+        assertThrows(UncheckedIOException.class, this::open);
+    }
+
+    private void createEmptyStorages() {
+        var mpaStorage = mock(MpaStorage.class);
+        when(mpaStorage.contains(anyInt())).thenReturn(true);
+        when(mpaStorage.getById(anyInt())).thenReturn(new Mpa(1, "G"));
+        userStorage = new InMemoryUserStorage();
+        delegate = new InMemoryFilmStorage(mpaStorage, userStorage);
+    }
+
+    private LikeLogFilmStorage open() {
+        return new LikeLogFilmStorage(delegate, userStorage, path, NEVER);
+    }
+
+    private static Film getFilm(int i) {
+        return Film.builder()
+                .name("film" + i)
+                .description("descr" + i)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(i + 1)
+                .mpa(new Mpa(1, null))
+                .build();
+    }
+}
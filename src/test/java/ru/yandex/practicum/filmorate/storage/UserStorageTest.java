@@ -9,6 +9,8 @@ import ru.yandex.practicum.filmorate.controllers.UserControllerTest;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -33,4 +35,21 @@ public class UserStorageTest {
                         assertThat(u).hasFieldOrPropertyWithValue("id", 1)
                 );
     }
+
+    @Test
+    public void testGetByIdsKeepsTheOrderOfIds() {
+        var ids = new ArrayList<Integer>();
+        for (int i = 0; i < 2500; i++) {
+            ids.add(userStorage.addUser(UserControllerTest.getValidUser()).getId());
+        }
+        userStorage.addFriend(ids.get(2000), ids.get(0));
+        Collections.reverse(ids);
+        ids.add(1000, -1);
+
+        var users = userStorage.getByIds(ids);
+
+        ids.remove(1000);
+        assertThat(users).extracting(User::getId).containsExactlyElementsOf(ids);
+        assertThat(users.get(ids.size() - 1 - 2000).getFriends()).containsExactly(ids.get(ids.size() - 1));
+    }
 }
@@ -0,0 +1,201 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import ru.yandex.practicum.filmorate.controllers.UserControllerTest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.WriteBehindFilmStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class WriteBehindFilmStorageTest {
+    private static final Duration NEVER = Duration.ofHours(1);
+
+    private InMemoryFilmStorage delegate;
+    private WriteBehindFilmStorage filmStorage;
+
+    @BeforeEach
+    public void createStorages() {
+        var mpaStorage = mock(MpaStorage.class);
+        when(mpaStorage.contains(anyInt())).thenReturn(true);
+        when(mpaStorage.getById(anyInt())).thenReturn(new Mpa(1, "G"));
+        var userStorage = new InMemoryUserStorage();
+        delegate = spy(new InMemoryFilmStorage(mpaStorage, userStorage));
+        for (int i = 0; i < 3; i++) {
+            userStorage.addUser(UserControllerTest.getValidUser());
+            delegate.addFilm(getFilm(i));
+        }
+    }
+
+    @AfterEach
+    public void closeStorage() throws Exception {
+        if (filmStorage != null) {
+            filmStorage.close();
+        }
+    }
+
+    @Test
+    public void testReadsSeeBufferedLikes() {
+        filmStorage = new WriteBehindFilmStorage(delegate, NEVER, 1000);
+        delegate.addLike(2, 2);
+        filmStorage.addLike(1, 1);
+        filmStorage.addLike(2, 1);
+        filmStorage.deleteLike(2, 2);
+
+        assertEquals(Set.of(), delegate.getById(1).getLikes());
+        assertEquals(Set.of(1), filmStorage.getById(1).getLikes());
+        assertEquals(Set.of(1), filmStorage.getById(2).getLikes());
+        assertEquals(List.of(Set.of(1), Set.of(1), Set.of()), filmStorage.getAllFilms().stream()
+                .map(Film::getLikes)
+                .collect(Collectors.toList()));
+        assertTrue(filmStorage.hasLike(2, 1));
+        assertFalse(filmStorage.hasLike(2, 2));
+
+        filmStorage.flush();
+        assertEquals(Set.of(1), delegate.getById(1).getLikes());
+        assertEquals(Set.of(1), delegate.getById(2).getLikes());
+        assertEquals(Set.of(1), filmStorage.getById(2).getLikes());
+    }
+
+    @Test
+    public void testRepeatedChangesAreWrittenOnce() {
+        filmStorage = new WriteBehindFilmStorage(delegate, NEVER, 1000);
+        delegate.addLike(1, 2);
+        for (int i = 0; i < 1000; i++) {
+            filmStorage.addLike(1, 1);
+            filmStorage.deleteLike(1, 1);
+            filmStorage.deleteLike(1, 2);
+            filmStorage.addLike(1, 2);
+        }
+        filmStorage.addLike(1, 3);
+        filmStorage.flush();
+
+        assertEquals(Set.of(2, 3), delegate.getById(1).getLikes());
+        verify(delegate, times(1)).addLikes(anyList());
+        verify(delegate, times(1)).deleteLikes(anyList());
+        verify(delegate, never()).addLike(1, 1);
+        verify(delegate, never()).hasLike(anyInt(), anyInt());
+    }
+
+    @Test
+    public void testInvalidChangesAreRejectedByBufferOrDroppedOnFlush() {
+        filmStorage = new WriteBehindFilmStorage(delegate, NEVER, 1000);
+        delegate.addLike(2, 1);
+        filmStorage.addLike(1, 1);
+        filmStorage.deleteLike(1, 2);
+
+        // only the buffer is looked at
+        assertThrows(DuplicateKeyException.class, () -> filmStorage.addLike(1, 1));
+        assertThrows(NoSuchElementException.class, () -> filmStorage.deleteLike(1, 2));
+        filmStorage.addLike(2, 1);
+        filmStorage.addLike(9, 1);
+        filmStorage.addLike(1, 9);
+        assertEquals(List.of(LikeStatus.DUPLICATE, LikeStatus.ADDED, LikeStatus.ADDED),
+                filmStorage.addLikes(List.of(new Like(1, 1), new Like(1, 2), new Like(9, 2))).stream()
+                        .map(LikeResult::getStatus)
+                        .collect(Collectors.toList()));
+        verify(delegate, never()).hasLike(anyInt(), anyInt());
+
+        // the underlying storage refuses the duplicate and the likes of missing films and users
+        filmStorage.flush();
+        assertEquals(Map.of(1, 2, 2, 1, 3, 0), delegate.getLikeCounts());
+        assertEquals(Map.of(1, 2, 2, 1, 3, 0), filmStorage.getLikeCounts());
+        assertEquals(Set.of(1, 2), filmStorage.getById(1).getLikes());
+    }
+
+    @Test
+    public void testFailedFlushIsRetried() {
+        filmStorage = new WriteBehindFilmStorage(delegate, NEVER, 1000);
+        filmStorage.addLike(1, 1);
+        doThrow(new IllegalStateException("storage is down")).doCallRealMethod().when(delegate).addLikes(anyList());
+
+        filmStorage.flush();
+        assertEquals(Set.of(), delegate.getById(1).getLikes());
+        assertEquals(Set.of(1), filmStorage.getById(1).getLikes());
+        filmStorage.deleteLike(1, 1);
+        filmStorage.addLike(1, 2);
+
+        filmStorage.flush();
+        assertEquals(Set.of(2), delegate.getById(1).getLikes());
+        assertEquals(Set.of(2), filmStorage.getById(1).getLikes());
+    }
+
+    @Test
+    public void testBatchIsDroppedAfterFailedFlushes() {
+        filmStorage = new WriteBehindFilmStorage(delegate, NEVER, 1000);
+        filmStorage.addLike(1, 1);
+        doThrow(new IllegalStateException("storage is down")).when(delegate).addLikes(anyList());
+
+        for (int i = 0; i < 4; i++) {
+            filmStorage.flush();
+            assertEquals(Set.of(1), filmStorage.getById(1).getLikes());
+        }
+        filmStorage.flush();
+        assertEquals(Set.of(), filmStorage.getById(1).getLikes());
+
+        doCallRealMethod().when(delegate).addLikes(anyList());
+        filmStorage.addLike(1, 2);
+        filmStorage.flush();
+        assertEquals(Set.of(2), delegate.getById(1).getLikes());
+        verify(delegate, times(6)).addLikes(anyList());
+    }
+
+    @Test
+    public void testFlushesWhenBufferIsFull() throws Exception {
+        filmStorage = new WriteBehindFilmStorage(delegate, NEVER, 3);
+        filmStorage.addLike(1, 1);
+        filmStorage.addLike(1, 2);
+        filmStorage.addLike(2, 1);
+
+        verify(delegate, timeout(5000)).addLikes(anyList());
+        // flushes don't overlap, so this one returns once the triggered flush has finished
+        filmStorage.flush();
+        assertEquals(Set.of(1, 2), delegate.getById(1).getLikes());
+        assertEquals(Set.of(1), delegate.getById(2).getLikes());
+    }
+
+    @Test
+    public void testFlushesPeriodicallyAndOnClose() throws Exception {
+        filmStorage = new WriteBehindFilmStorage(delegate, Duration.ofMillis(50), 1000);
+        filmStorage.addLike(1, 1);
+        verify(delegate, timeout(5000)).addLikes(List.of(new Like(1, 1)));
+
+        filmStorage.close();
+        filmStorage.addLike(3, 3);
+        filmStorage.close();
+        assertEquals(Set.of(3), delegate.getById(3).getLikes());
+    }
+
+    private static Film getFilm(int i) {
+        return Film.builder()
+                .name("film" + i)
+                .description("descr" + i)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(i + 1)
+                .mpa(new Mpa(1, null))
+                .build();
+    }
+}